@@ -28,6 +28,9 @@
 # Parcelables
 -keep class * implements android.os.Parcelable{ *; }
 
+# Stored by Paper, which reads fields and the no-arg constructor reflectively
+-keep class arun.com.chromer.util.parser.RedirectCache$Redirect { *; }
+
 # Glide
 -keep class arun.com.chromer.util.glide.*
 -keep public class * implements com.bumptech.glide.module.GlideModule
@@ -24,6 +24,7 @@ import android.content.Context
 import android.util.Log
 import androidx.appcompat.app.AppCompatDelegate
 import androidx.multidex.MultiDex
+import arun.com.chromer.data.history.HistoryCompactionJob
 import arun.com.chromer.di.app.AppComponent
 import arun.com.chromer.di.app.AppModule
 import arun.com.chromer.di.app.DaggerAppComponent
@@ -68,6 +69,7 @@ open class Chromer : Application() {
             Timber.plant(CrashlyticsTree())
         }
         ServiceManager.takeCareOfServices(applicationContext)
+        HistoryCompactionJob.enqueueIfDue(this)
 
         initMaterialDrawer()
 
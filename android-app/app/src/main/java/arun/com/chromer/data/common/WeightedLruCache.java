@@ -0,0 +1,64 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.data.common;
+
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+
+/**
+ * In memory {@link LruCache} keyed by url whose budget is expressed in approximate bytes, used as a
+ * front tier for disk backed stores.
+ */
+public class WeightedLruCache<V> extends LruCache<String, V> {
+    private final Weigher<V> weigher;
+
+    public WeightedLruCache(int maxBytes, @NonNull Weigher<V> weigher) {
+        super(maxBytes);
+        this.weigher = weigher;
+    }
+
+    /**
+     * Approximate number of bytes of a string held in memory, including object overhead.
+     */
+    public static int sizeOf(String string) {
+        return string == null ? 0 : 40 + string.length() * 2;
+    }
+
+    @Override
+    protected int sizeOf(String key, V value) {
+        return Math.max(1, sizeOf(key) + weigher.weigh(value));
+    }
+
+    @NonNull
+    public synchronized String stats() {
+        return String.format(Locale.US, "hits=%d, misses=%d, evictions=%d, size=%d/%d bytes",
+                hitCount(), missCount(), evictionCount(), size(), maxSize());
+    }
+
+    /**
+     * Estimates the memory held by a cached value.
+     */
+    public interface Weigher<V> {
+        int weigh(@NonNull V value);
+    }
+}
@@ -42,7 +42,7 @@ internal constructor(
         private val pagedHistoryDataSourceFactory: PagedHistoryDataSource.Factory
 ) : HistoryRepository {
 
-    override fun changes(): io.reactivex.Observable<Int> = historyStore.changes()
+    override fun changes(): io.reactivex.Observable<List<HistoryChange>> = historyStore.changes()
 
     override fun get(website: Website): Observable<Website> {
         return historyStore.get(website)
@@ -97,6 +97,19 @@ internal constructor(
             offset: Int
     ) = historyStore.loadHistoryRange(limit, offset)
 
+    override fun loadOlderHistory(
+            key: HistoryKey?,
+            limit: Int,
+            inclusive: Boolean
+    ) = historyStore.loadOlderHistory(key, limit, inclusive)
+
+    override fun loadNewerHistory(
+            key: HistoryKey,
+            limit: Int
+    ) = historyStore.loadNewerHistory(key, limit)
+
+    override fun compact(retention: HistoryRetention) = historyStore.compact(retention)
+
     override fun delete(website: Website) = historyStore.delete(website)
 
     override fun exists(website: Website) = historyStore.exists(website)
@@ -0,0 +1,52 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.data.history
+
+/**
+ * A row of history that was written or removed. [url] is null only for a [Type.DELETED] change
+ * that cleared every row, which also has a [rowId] of -1.
+ */
+data class HistoryChange(
+        val type: Type,
+        val url: String?,
+        val rowId: Long,
+        /**
+         * Time of the visit for [Type.INSERTED] and [Type.UPDATED], so the row's new [key] is known
+         * without reading it back. 0 for [Type.DELETED].
+         */
+        val createdAt: Long = 0
+) {
+    enum class Type {
+        INSERTED,
+        UPDATED,
+        DELETED
+    }
+
+    val clearsAll get() = url == null
+
+    /**
+     * Position of the row after this change, or null if it was deleted.
+     */
+    val key get() = if (type == Type.DELETED || url == null) null else HistoryKey(createdAt, url)
+
+    companion object {
+        fun deletedAll() = HistoryChange(Type.DELETED, null, -1)
+    }
+}
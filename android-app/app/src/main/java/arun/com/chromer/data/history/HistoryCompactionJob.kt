@@ -0,0 +1,63 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.data.history
+
+import android.content.Context
+import android.content.Intent
+import androidx.core.app.JobIntentService
+import arun.com.chromer.Chromer
+import arun.com.chromer.settings.Preferences
+import timber.log.Timber
+import java.util.concurrent.TimeUnit
+import javax.inject.Inject
+
+/**
+ * Enforces the [HistoryRetention] set in [Preferences], at most once every [INTERVAL_MS]. History
+ * is kept in full until a limit is set.
+ */
+class HistoryCompactionJob : JobIntentService() {
+
+    @Inject
+    lateinit var historyRepository: HistoryRepository
+    @Inject
+    lateinit var preferences: Preferences
+
+    override fun onHandleWork(intent: Intent) {
+        (application as Chromer).appComponent.inject(this)
+        val report = historyRepository.compact(HistoryRetention.from(preferences))
+        preferences.lastHistoryCompaction(System.currentTimeMillis())
+        Timber.i("History compacted: %d rows deleted, %d bytes reclaimed", report.rowsDeleted, report.bytesReclaimed)
+    }
+
+    companion object {
+        const val JOB_ID = 113
+        private val INTERVAL_MS = TimeUnit.DAYS.toMillis(1)
+
+        fun enqueueIfDue(context: Context) {
+            val preferences = Preferences.get(context)
+            if (HistoryRetention.from(preferences).keepsAll) {
+                return
+            }
+            if (System.currentTimeMillis() - preferences.lastHistoryCompaction() >= INTERVAL_MS) {
+                enqueueWork(context, HistoryCompactionJob::class.java, JOB_ID, Intent())
+            }
+        }
+    }
+}
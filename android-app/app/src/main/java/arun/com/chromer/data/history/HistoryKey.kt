@@ -0,0 +1,41 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.data.history
+
+import arun.com.chromer.data.website.model.Website
+
+/**
+ * Position of a history entry in recency order. [url] is unique and breaks ties between entries
+ * visited in the same millisecond.
+ */
+data class HistoryKey(val createdAt: Long, val url: String) : Comparable<HistoryKey> {
+
+    /**
+     * Orders keys oldest first, the reverse of how history is listed.
+     */
+    override fun compareTo(other: HistoryKey): Int {
+        val byTime = createdAt.compareTo(other.createdAt)
+        return if (byTime != 0) byTime else url.compareTo(other.url)
+    }
+
+    companion object {
+        fun of(website: Website) = HistoryKey(website.createdAt, website.url)
+    }
+}
@@ -48,7 +48,27 @@ interface HistoryRepository {
      */
     fun loadHistoryRange(limit: Int, offset: Int): List<Website>
 
+    /**
+     * Loads up to [limit] entries visited before [key], most recent first, or the most recent
+     * entries when [key] is null. When [inclusive], the entry at [key] is included.
+     */
+    fun loadOlderHistory(key: HistoryKey?, limit: Int, inclusive: Boolean): List<Website>
+
+    /**
+     * Loads up to [limit] entries visited after [key], most recent first.
+     */
+    fun loadNewerHistory(key: HistoryKey, limit: Int): List<Website>
+
     fun pagedHistory(): LiveData<PagedList<Website>>
 
-    fun changes(): io.reactivex.Observable<Int>
+    /**
+     * Deletes history that [retention] does not keep and shrinks the database file. Blocks until
+     * done.
+     */
+    fun compact(retention: HistoryRetention): CompactionReport
+
+    /**
+     * Emits the rows changed by each write, once per write.
+     */
+    fun changes(): io.reactivex.Observable<List<HistoryChange>>
 }
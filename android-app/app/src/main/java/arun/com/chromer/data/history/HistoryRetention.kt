@@ -0,0 +1,52 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.data.history
+
+import arun.com.chromer.settings.Preferences
+import java.util.concurrent.TimeUnit
+
+/**
+ * What history to keep: the latest [maxRows] entries visited within [maxAgeMs]. A limit of 0 means
+ * none. With [keepBookmarked], bookmarked entries are kept past either limit, and still count
+ * towards [maxRows].
+ */
+data class HistoryRetention(
+        val maxRows: Int,
+        val maxAgeMs: Long,
+        val keepBookmarked: Boolean
+) {
+    /**
+     * True if no limit is set, so there is nothing to compact.
+     */
+    val keepsAll get() = maxRows <= 0 && maxAgeMs <= 0
+
+    companion object {
+        fun from(preferences: Preferences) = HistoryRetention(
+                preferences.historyMaxRows(),
+                TimeUnit.DAYS.toMillis(preferences.historyMaxAgeDays().toLong()),
+                preferences.historyKeepBookmarked()
+        )
+    }
+}
+
+/**
+ * Result of enforcing a [HistoryRetention]: the entries deleted and the bytes the database shrank by.
+ */
+data class CompactionReport(val rowsDeleted: Int, val bytesReclaimed: Long)
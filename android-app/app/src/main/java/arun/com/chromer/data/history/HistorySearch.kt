@@ -0,0 +1,116 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.data.history
+
+import arun.com.chromer.data.website.model.Website
+import kotlin.math.ln
+import kotlin.math.max
+
+/**
+ * Builds full text queries for history search and ranks their matches by a blend of visit count,
+ * recency and how well the query matches the title and url.
+ */
+internal object HistorySearch {
+    /**
+     * Matches fetched from the index, by visits over age, before they are ranked.
+     */
+    const val CANDIDATES = 50
+
+    private const val DAY_MS = 24 * 60 * 60 * 1000.0
+    private const val VISITS_WEIGHT = 1.0
+    private const val RECENCY_WEIGHT = 2.0
+    private const val MATCH_WEIGHT = 3.0
+    // Age in days at which the recency component has halved.
+    private const val RECENCY_HALF_LIFE_DAYS = 7.0
+
+    /**
+     * Splits [text] into terms the way the FTS simple tokenizer does: runs of ASCII letters and
+     * digits and of non ASCII characters, with ASCII lower cased.
+     */
+    fun tokens(text: String?): List<String> {
+        val tokens = ArrayList<String>()
+        if (text == null) return tokens
+        val token = StringBuilder()
+        for (c in text) {
+            when {
+                c in 'A'..'Z' -> token.append(c + ('a' - 'A'))
+                c in 'a'..'z' || c in '0'..'9' || c.toInt() >= 128 -> token.append(c)
+                token.isNotEmpty() -> {
+                    tokens += token.toString()
+                    token.setLength(0)
+                }
+            }
+        }
+        if (token.isNotEmpty()) {
+            tokens += token.toString()
+        }
+        return tokens
+    }
+
+    /**
+     * Returns an FTS MATCH expression that requires every token as a term prefix, or null if
+     * there is nothing to search for. Tokens only hold term characters, so no FTS syntax can be
+     * injected.
+     */
+    fun matchQuery(tokens: List<String>): String? {
+        return if (tokens.isEmpty()) null else tokens.joinToString(" ") { "$it*" }
+    }
+
+    fun score(website: Website, tokens: List<String>, now: Long): Double {
+        val visits = ln(1.0 + max(website.count, 1))
+        val ageDays = max(0L, now - website.createdAt) / DAY_MS
+        val recency = 1.0 / (1.0 + ageDays / RECENCY_HALF_LIFE_DAYS)
+        return VISITS_WEIGHT * visits + RECENCY_WEIGHT * recency + MATCH_WEIGHT * matchQuality(website, tokens)
+    }
+
+    /**
+     * Returns between 0 and 1. Whole word matches count more than prefix matches, and a first
+     * token that starts the host, as in "git" for github.com, counts extra.
+     */
+    fun matchQuality(website: Website, tokens: List<String>): Double {
+        if (tokens.isEmpty()) return 0.0
+        val words = tokens(website.title) + tokens(website.url)
+        var quality = 0.0
+        for (token in tokens) {
+            var best = 0.0
+            for (word in words) {
+                if (word == token) {
+                    best = 1.0
+                    break
+                } else if (word.startsWith(token)) {
+                    best = 0.6
+                }
+            }
+            quality += best
+        }
+        if (host(website.url).startsWith(tokens[0])) {
+            quality += 0.5
+        }
+        return quality / (tokens.size + 0.5)
+    }
+
+    fun host(url: String?): String {
+        if (url == null) return ""
+        return url.substringAfter("://")
+                .substringBefore('/')
+                .toLowerCase()
+                .removePrefix("www.")
+    }
+}
@@ -20,17 +20,26 @@
 package arun.com.chromer.data.history
 
 import android.app.Application
-import android.content.ContentValues
+import android.database.Cursor
+import android.database.DatabaseUtils
 import android.database.sqlite.SQLiteDatabase
+import android.database.sqlite.SQLiteException
 import android.database.sqlite.SQLiteOpenHelper
+import android.database.sqlite.SQLiteStatement
+import android.os.Build
 import androidx.lifecycle.LiveData
 import androidx.lifecycle.MutableLiveData
 import androidx.paging.PagedList
+import arun.com.chromer.data.history.HistoryChange.Type.DELETED
+import arun.com.chromer.data.history.HistoryChange.Type.INSERTED
+import arun.com.chromer.data.history.HistoryChange.Type.UPDATED
 import arun.com.chromer.data.history.model.HistoryTable.*
 import arun.com.chromer.data.website.model.Website
 import com.jakewharton.rxrelay2.PublishRelay
 import rx.Observable
 import timber.log.Timber
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicReference
 import javax.inject.Inject
 import javax.inject.Singleton
 
@@ -47,49 +56,107 @@ internal constructor(application: Application) : SQLiteOpenHelper(
         DATABASE_VERSION
 ), HistoryStore {
 
-    private lateinit var database: SQLiteDatabase
+    private val connection = AtomicReference<Connection>()
 
-    private val isOpen @Synchronized get() = ::database.isInitialized && database.isOpen
+    /**
+     * The open database, opened on first use. Callers racing to reopen it after [close] all get the
+     * database the helper hands out, so no lock is taken once it is open.
+     */
+    private val database: SQLiteDatabase get() = connection().db
 
-    private val changesRelay = PublishRelay.create<Int>()
+    // Serialized as changes are written both from the write queue and from callers' threads.
+    private val changesRelay = PublishRelay.create<List<HistoryChange>>().toSerialized()
 
-    override fun changes(): io.reactivex.Observable<Int> = changesRelay.hide()
+    private val writeQueue = HistoryWriteQueue(
+            WRITE_WINDOW_MS,
+            WRITE_BATCH_SIZE,
+            Executors.newSingleThreadScheduledExecutor(),
+            ::commitVisits
+    )
 
-    private fun <T> changesTransformer() = Observable.Transformer<T, T> { upstream ->
-        upstream.map {
-            changesRelay.accept(0)
-            it
-        }
-    }
+    override fun changes(): io.reactivex.Observable<List<HistoryChange>> = changesRelay.hide()
 
-    private fun <T> Observable<T>.broadcastChanges(): Observable<T> = compose(changesTransformer())
+    override fun onConfigure(db: SQLiteDatabase) {
+        // Lets recents, paging and search read from their own connections while visits are written.
+        db.enableWriteAheadLogging()
+        // Takes effect for a new database, or an existing one on its next VACUUM, see compact().
+        db.execSQL("PRAGMA auto_vacuum = INCREMENTAL")
+    }
 
     override fun onCreate(db: SQLiteDatabase) {
         db.execSQL(DATABASE_CREATE)
+        db.execSQL(CREATE_URL_INDEX)
+        db.execSQL(CREATE_CREATED_AT_INDEX)
+        createFtsIndex(db)
         Timber.d("onCreate called")
     }
 
     override fun onUpgrade(db: SQLiteDatabase, oldVersion: Int, newVersion: Int) {
+        Timber.d("Upgrading history from %d to %d", oldVersion, newVersion)
+        if (oldVersion < 2) {
+            // Rows were matched by URL without an index, so merge any duplicates into the latest
+            // row before making URL unique.
+            db.execSQL("UPDATE $TABLE_NAME SET " +
+                    "$COLUMN_VISITED = (SELECT SUM($COLUMN_VISITED) FROM $TABLE_NAME AS other WHERE other.$COLUMN_URL = $TABLE_NAME.$COLUMN_URL), " +
+                    "$COLUMN_CREATED_AT = (SELECT MAX($COLUMN_CREATED_AT) FROM $TABLE_NAME AS other WHERE other.$COLUMN_URL = $TABLE_NAME.$COLUMN_URL) " +
+                    "WHERE $COLUMN_ID IN (SELECT MAX($COLUMN_ID) FROM $TABLE_NAME GROUP BY $COLUMN_URL HAVING COUNT(*) > 1)")
+            db.execSQL("DELETE FROM $TABLE_NAME WHERE $COLUMN_ID NOT IN (SELECT MAX($COLUMN_ID) FROM $TABLE_NAME GROUP BY $COLUMN_URL)")
+            db.execSQL(CREATE_URL_INDEX)
+            db.execSQL(CREATE_CREATED_AT_INDEX)
+        }
+        if (oldVersion < 3) {
+            createFtsIndex(db)
+            db.execSQL(REBUILD_FTS)
+        }
+        if (oldVersion < 4) {
+            // CREATED was declared TEXT. SQLite cannot change a column type, so copy the rows into
+            // a table declaring it INTEGER. Row ids are kept, so the FTS index stays valid.
+            val columns = "$COLUMN_ID, $COLUMN_URL, $COLUMN_TITLE, $COLUMN_FAVICON, $COLUMN_CANONICAL, " +
+                    "$COLUMN_COLOR, $COLUMN_AMP, $COLUMN_BOOKMARKED, $COLUMN_CREATED_AT, $COLUMN_VISITED"
+            val newTable = TABLE_NAME + "_new"
+            db.execSQL(createTable(newTable))
+            db.execSQL("INSERT INTO $newTable ($columns) SELECT " +
+                    columns.replace(COLUMN_CREATED_AT, "CAST($COLUMN_CREATED_AT AS INTEGER)") +
+                    " FROM $TABLE_NAME")
+            db.execSQL("DROP TABLE $TABLE_NAME")
+            db.execSQL("ALTER TABLE $newTable RENAME TO $TABLE_NAME")
+            db.execSQL(CREATE_URL_INDEX)
+            db.execSQL(CREATE_CREATED_AT_INDEX)
+            createFtsIndex(db)
+        }
+    }
 
+    private fun createFtsIndex(db: SQLiteDatabase) {
+        db.execSQL(CREATE_FTS_TABLE)
+        CREATE_FTS_TRIGGERS.forEach { db.execSQL(it) }
     }
 
-    @Synchronized
-    fun open() {
-        if (!isOpen) {
-            database = writableDatabase
+    private fun connection(): Connection {
+        val current = connection.get()
+        if (current != null && current.db.isOpen) {
+            return current
         }
+        val opened = Connection(writableDatabase)
+        return if (connection.compareAndSet(current, opened)) opened else connection.get()
+    }
+
+    /**
+     * Runs [block] with the cached statement for [sql]. A statement holds its bindings, so one
+     * caller uses it at a time. Not for use inside a transaction, whose connection the waiting
+     * callers may need.
+     */
+    private inline fun <T> withStatement(sql: String, block: (SQLiteStatement) -> T): T {
+        val statement = connection().statement(sql)
+        return synchronized(statement) { block(statement) }
     }
 
-    @Synchronized
     override fun close() {
-        if (isOpen) {
-            database.close()
-        }
+        connection.getAndSet(null)?.close()
+        super.close()
     }
 
     override fun get(website: Website): Observable<Website> {
         return Observable.fromCallable {
-            open()
             val cursor = database.rawQuery("SELECT * FROM $TABLE_NAME WHERE $COLUMN_URL=?", arrayOf(website.url))
             when {
                 cursor == null -> return@fromCallable null
@@ -107,149 +174,326 @@ internal constructor(application: Application) : SQLiteOpenHelper(
         }
     }
 
+    /**
+     * Records a visit of [website]. Visits are written in batches by [writeQueue]; the returned
+     * [Observable] emits once the batch holding this visit is saved.
+     */
     override fun insert(website: Website): Observable<Website> {
-        return exists(website)
-                .flatMap<Website> { exists ->
-                    if (exists!!) {
-                        return@flatMap update(website)
-                    } else {
-                        val values = ContentValues()
-                        values.put(COLUMN_URL, website.url)
-                        values.put(COLUMN_TITLE, website.title)
-                        values.put(COLUMN_FAVICON, website.faviconUrl)
-                        values.put(COLUMN_CANONICAL, website.canonicalUrl)
-                        values.put(COLUMN_COLOR, website.themeColor)
-                        values.put(COLUMN_AMP, website.ampUrl)
-                        values.put(COLUMN_BOOKMARKED, website.bookmarked)
-                        values.put(COLUMN_CREATED_AT, System.currentTimeMillis())
-                        values.put(COLUMN_VISITED, 1)
-                        return@flatMap if (database.insert(TABLE_NAME, null, values) != -1L) {
-                            Observable.just(website)
+        return Observable.defer { writeQueue.enqueue(website).map { website } }
+                .onErrorReturn { throwable ->
+                    Timber.e(throwable, "Insert failed for %s", website.url)
+                    null
+                }
+    }
+
+    /**
+     * Saves [visits] in one transaction: each url is inserted, or if already saved, gets its visit
+     * count increased and time updated. Emits the changes of the whole batch together.
+     */
+    private fun commitVisits(visits: Collection<HistoryWriteQueue.Visit>) {
+        val changes = ArrayList<HistoryChange>(visits.size)
+        val db = database
+        // Non exclusive, so readers carry on against the last commit while the batch is written.
+        db.beginTransactionNonExclusive()
+        try {
+            // One lookup for the batch tells inserts from updates, which the upsert does not report.
+            val savedIds = rowIds(visits.map { it.website.url })
+            val upsert = Build.VERSION.SDK_INT >= UPSERT_MIN_SDK
+            // Compiled for this transaction rather than taken from the shared cache: a cached
+            // statement's lock is held by callers waiting for the connection this transaction holds.
+            val insert = db.compileStatement(if (upsert) UPSERT_VISIT else INSERT_VISIT)
+            val update = if (upsert) null else db.compileStatement(UPDATE_VISIT)
+            try {
+                for (visit in visits) {
+                    val url = visit.website.url
+                    val savedId = savedIds[url]
+                    if (savedId != null) {
+                        if (update == null) {
+                            insert.bindVisit(visit)
+                            insert.executeInsert()
                         } else {
-                            Observable.just(null)
+                            update.bindUpdate(visit.website, visit.count, visit.visitedAt)
+                            update.executeUpdateDelete()
                         }
+                        changes += HistoryChange(UPDATED, url, savedId, visit.visitedAt)
+                    } else {
+                        insert.bindVisit(visit)
+                        changes += HistoryChange(INSERTED, url, insert.executeInsert(), visit.visitedAt)
                     }
-                }.broadcastChanges()
+                }
+            } finally {
+                insert.close()
+                update?.close()
+            }
+            db.setTransactionSuccessful()
+        } finally {
+            db.endTransaction()
+        }
+        Timber.d("Saved %d history visits", visits.size)
+        changesRelay.accept(changes)
+    }
+
+    /**
+     * Returns the row ids of those [urls] that are saved.
+     */
+    private fun rowIds(urls: List<String>): Map<String, Long> {
+        val ids = HashMap<String, Long>()
+        if (urls.isEmpty()) return ids
+        val placeholders = urls.joinToString(",") { "?" }
+        database.rawQuery("SELECT $COLUMN_ID, $COLUMN_URL FROM $TABLE_NAME WHERE $COLUMN_URL IN ($placeholders)",
+                urls.toTypedArray()
+        ).use { cursor ->
+            while (cursor.moveToNext()) {
+                ids[cursor.getString(1)] = cursor.getLong(0)
+            }
+        }
+        return ids
+    }
+
+    private fun rowId(url: String): Long = withStatement(ROW_ID_FOR_URL) { statement ->
+        statement.bindString(1, url)
+        statement.simpleQueryForLong()
     }
 
     override fun update(website: Website): Observable<Website> {
-        return get(website).flatMap { saved ->
-            if (saved != null) {
-                val values = ContentValues()
-                values.put(COLUMN_URL, saved.url)
-                values.put(COLUMN_TITLE, saved.title)
-                values.put(COLUMN_FAVICON, saved.faviconUrl)
-                values.put(COLUMN_CANONICAL, saved.canonicalUrl)
-                values.put(COLUMN_COLOR, saved.themeColor)
-                values.put(COLUMN_AMP, saved.ampUrl)
-                values.put(COLUMN_BOOKMARKED, saved.bookmarked)
-                values.put(COLUMN_CREATED_AT, System.currentTimeMillis())
-                values.put(COLUMN_VISITED, ++saved.count)
-
-                val whereClause = "$COLUMN_URL=?"
-                val whereArgs = arrayOf(saved.url)
-
-                if (database.update(TABLE_NAME, values, whereClause, whereArgs) > 0) {
-                    Timber.d("Updated %s in db", website.url)
-                    return@flatMap Observable.just(saved)
-                } else {
-                    Timber.e("Update failed for %s", website.url)
-                    return@flatMap Observable.just(website)
-                }
-            } else {
-                return@flatMap Observable.just(website)
+        return Observable.fromCallable {
+            val visitedAt = System.currentTimeMillis()
+            val rowId = rowId(website.url)
+            if (rowId != NO_ROW && updateVisit(website, 1, visitedAt) > 0) {
+                Timber.d("Updated %s in db", website.url)
+                changesRelay.accept(listOf(HistoryChange(UPDATED, website.url, rowId, visitedAt)))
             }
-        }.broadcastChanges()
+            website
+        }
+    }
+
+    /**
+     * Adds [count] visits to [website] if it is saved and returns the number of rows changed.
+     */
+    private fun updateVisit(website: Website, count: Int, createdAt: Long): Int {
+        return withStatement(UPDATE_VISIT) { statement ->
+            statement.bindUpdate(website, count, createdAt)
+            statement.executeUpdateDelete()
+        }
+    }
+
+    private fun SQLiteStatement.bindUpdate(website: Website, count: Int, createdAt: Long) {
+        bindLong(1, count.toLong())
+        bindLong(2, createdAt)
+        bindString(3, website.url)
+    }
+
+    private fun SQLiteStatement.bindVisit(visit: HistoryWriteQueue.Visit) {
+        val website = visit.website
+        bindString(1, website.url)
+        bindNullableString(2, website.title)
+        bindNullableString(3, website.faviconUrl)
+        bindNullableString(4, website.canonicalUrl)
+        bindNullableString(5, website.themeColor)
+        bindNullableString(6, website.ampUrl)
+        bindLong(7, if (website.bookmarked) 1 else 0)
+        bindLong(8, visit.visitedAt)
+        bindLong(9, visit.count.toLong())
+    }
+
+    private fun SQLiteStatement.bindNullableString(index: Int, value: String?) {
+        if (value == null) bindNull(index) else bindString(index, value)
     }
 
     override fun delete(website: Website): Observable<Website> {
         return Observable.fromCallable {
-            open()
-            val whereClause = "$COLUMN_URL=?"
-            val whereArgs = arrayOf(website.url)
-            if (database.delete(TABLE_NAME, whereClause, whereArgs) > 0) {
+            val rowId = rowId(website.url)
+            val deleted = rowId != NO_ROW && withStatement(DELETE_URL) { statement ->
+                statement.bindString(1, website.url)
+                statement.executeUpdateDelete()
+            } > 0
+            if (deleted) {
                 Timber.d("Deletion successful for %s", website.url)
+                changesRelay.accept(listOf(HistoryChange(DELETED, website.url, rowId)))
             } else {
                 Timber.e("Deletion failed for %s", website.url)
             }
             website
-        }.broadcastChanges()
+        }
     }
 
     override fun exists(website: Website): Observable<Boolean> {
         return Observable.fromCallable {
-            open()
-            val selection = " $COLUMN_URL=?"
-            val selectionArgs = arrayOf(website.url)
-            val cursor = database.query(TABLE_NAME,
-                    ALL_COLUMN_PROJECTION,
-                    selection,
-                    selectionArgs, null, null, null
-            )
-            var exists = false
-            if (cursor != null && cursor.count > 0) {
-                exists = true
+            withStatement(EXISTS_URL) { statement ->
+                statement.bindString(1, website.url)
+                statement.simpleQueryForLong() == 1L
             }
-            cursor?.close()
-            exists
         }
     }
 
     override fun deleteAll(): Observable<Int> {
         return Observable.fromCallable {
-            open()
-            database.delete(TABLE_NAME, "1", null)
-        }.broadcastChanges()
+            val deleted = database.delete(TABLE_NAME, "1", null)
+            if (deleted > 0) {
+                changesRelay.accept(listOf(HistoryChange.deletedAll()))
+            }
+            deleted
+        }
     }
 
+    /**
+     * Emits the latest [RECENTS_LIMIT] entries, then the list again after each change to it. Each
+     * change is applied to the previous list, so only rows entering it are read.
+     */
     override fun recents(): io.reactivex.Observable<List<Website>> {
-        val recentObservable = io.reactivex.Observable.fromCallable<List<Website>> {
-            open()
-            val websites = ArrayList<Website>()
-            database.query(
-                    TABLE_NAME,
-                    ALL_COLUMN_PROJECTION,
-                    null,
-                    null,
-                    null,
-                    null,
-                    ORDER_BY_TIME_DESC,
-                    "8"
-            )?.use {
-                while (it.moveToNext()) {
-                    websites.add(Website.fromCursor(it))
+        return changes()
+                .scanWith({ loadOlderHistory(null, RECENTS_LIMIT, false) }, { recents, changes -> patchRecents(recents, changes) })
+                .distinctUntilChanged()
+    }
+
+    private fun patchRecents(recents: List<Website>, changes: List<HistoryChange>): List<Website> {
+        if (changes.any { it.clearsAll }) {
+            return loadOlderHistory(null, RECENTS_LIMIT, false)
+        }
+        val changedUrls = changes.mapTo(HashSet()) { it.url }
+        if (changes.all { it.type == DELETED } && recents.none { it.url in changedUrls }) {
+            return recents
+        }
+        // Of the written rows, at most RECENTS_LIMIT of the latest can make the list.
+        val writtenIds = changes.filter { it.type != DELETED }
+                .sortedByDescending { it.key }
+                .take(RECENTS_LIMIT)
+                .map { it.rowId }
+        var merged = (recents.filter { it.url !in changedUrls } + loadRows(writtenIds))
+                .sortedByDescending { HistoryKey.of(it) }
+        if (recents.size >= RECENTS_LIMIT) {
+            // Rows older than the last entry were never loaded, so only what is newer is complete.
+            val oldestLoaded = HistoryKey.of(recents.last())
+            merged = merged.filter { HistoryKey.of(it) >= oldestLoaded }
+        }
+        val patched = ArrayList(merged.take(RECENTS_LIMIT))
+        if (patched.size < RECENTS_LIMIT && recents.size >= RECENTS_LIMIT) {
+            patched += loadOlderHistory(patched.lastOrNull()?.let(HistoryKey::of), RECENTS_LIMIT - patched.size, false)
+        }
+        return patched
+    }
+
+    /**
+     * Deletes what [retention] does not keep, oldest first, in transactions of [COMPACTION_CHUNK]
+     * rows so that visits are not held up, and emits the deletions of each. Freed pages are then
+     * returned to the file system.
+     */
+    override fun compact(retention: HistoryRetention): CompactionReport {
+        val db = database
+        val sizeBefore = databaseSize(db)
+        val cutoff = retentionCutoff(retention)
+        var deleted = 0
+        if (cutoff != null) {
+            val keep = if (retention.keepBookmarked) " AND IFNULL($COLUMN_BOOKMARKED, 0) = 0" else ""
+            val selectChunk = "SELECT $COLUMN_ID, $COLUMN_URL FROM $TABLE_NAME " +
+                    "WHERE $COLUMN_CREATED_AT <= ? AND ($COLUMN_CREATED_AT < ? OR $COLUMN_URL < ?)$keep " +
+                    "ORDER BY $ORDER_BY_KEY_ASC LIMIT $COMPACTION_CHUNK"
+            val args = arrayOf(cutoff.createdAt.toString(), cutoff.createdAt.toString(), cutoff.url)
+            do {
+                val chunk = ArrayList<HistoryChange>(COMPACTION_CHUNK)
+                db.beginTransactionNonExclusive()
+                try {
+                    db.rawQuery(selectChunk, args).use { cursor ->
+                        while (cursor.moveToNext()) {
+                            chunk += HistoryChange(DELETED, cursor.getString(1), cursor.getLong(0))
+                        }
+                    }
+                    if (chunk.isNotEmpty()) {
+                        db.execSQL("DELETE FROM $TABLE_NAME WHERE $COLUMN_ID IN (${chunk.joinToString(",") { it.rowId.toString() }})")
+                    }
+                    db.setTransactionSuccessful()
+                } finally {
+                    db.endTransaction()
+                }
+                if (chunk.isNotEmpty()) {
+                    deleted += chunk.size
+                    changesRelay.accept(chunk)
                 }
+            } while (chunk.size == COMPACTION_CHUNK)
+        }
+        reclaimSpace(db, deleted)
+        val report = CompactionReport(deleted, sizeBefore - databaseSize(db))
+        Timber.d("History compaction deleted %d rows, reclaimed %d bytes", report.rowsDeleted, report.bytesReclaimed)
+        return report
+    }
+
+    /**
+     * Returns the key below which entries are outside [retention], or null if all are kept.
+     */
+    private fun retentionCutoff(retention: HistoryRetention): HistoryKey? {
+        // Keys compare by time first, so an empty url puts every entry of that time above it.
+        val byAge = if (retention.maxAgeMs > 0) HistoryKey(System.currentTimeMillis() - retention.maxAgeMs, "") else null
+        val byRows = if (retention.maxRows > 0) {
+            database.rawQuery("SELECT $COLUMN_CREATED_AT, $COLUMN_URL FROM $TABLE_NAME " +
+                    "ORDER BY $ORDER_BY_KEY_DESC LIMIT 1 OFFSET ${retention.maxRows - 1}", null
+            ).use { cursor -> if (cursor.moveToFirst()) HistoryKey(cursor.getLong(0), cursor.getString(1)) else null }
+        } else null
+        return listOfNotNull(byAge, byRows).max()
+    }
+
+    /**
+     * Frees the pages of deleted rows. Incremental vacuum only truncates free pages, so a full
+     * VACUUM runs when a large part of the table went, and once on databases created before
+     * incremental vacuum was turned on.
+     */
+    private fun reclaimSpace(db: SQLiteDatabase, deletedRows: Int) {
+        val incremental = DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null) == AUTO_VACUUM_INCREMENTAL
+        val freePages = DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null)
+        if (freePages == 0L) {
+            return
+        }
+        val remainingRows = DatabaseUtils.queryNumEntries(db, TABLE_NAME)
+        try {
+            if (!incremental || deletedRows >= remainingRows) {
+                db.execSQL("VACUUM")
+            } else {
+                // Pages are freed as the pragma is stepped, so the cursor is read through.
+                db.rawQuery("PRAGMA incremental_vacuum", null).use { it.count }
             }
-            websites
+        } catch (e: SQLiteException) {
+            Timber.e(e, "Could not vacuum history")
         }
-        return changes().switchMap { recentObservable }.startWith(recentObservable)
     }
 
+    private fun databaseSize(db: SQLiteDatabase): Long {
+        return DatabaseUtils.longForQuery(db, "PRAGMA page_count", null) *
+                DatabaseUtils.longForQuery(db, "PRAGMA page_size", null)
+    }
+
+    private fun loadRows(ids: List<Long>): List<Website> {
+        if (ids.isEmpty()) return emptyList()
+        return database.rawQuery("SELECT * FROM $TABLE_NAME WHERE $COLUMN_ID IN (${ids.joinToString(",")})", null)
+                .use { it.toWebsites() }
+    }
+
+    /**
+     * Finds history whose url or title has a term starting with each word of [text], through the
+     * full text index. The best [HistorySearch.CANDIDATES] by visits over age are ranked with
+     * [HistorySearch.score].
+     */
     override fun search(text: String): Observable<List<Website>> {
         return Observable.fromCallable {
-            open()
-            val websites = ArrayList<Website>()
-            database.query(
-                    true,
-                    TABLE_NAME,
-                    ALL_COLUMN_PROJECTION,
-                    "($COLUMN_URL like '%$text%' OR $COLUMN_TITLE like '%$text%')",
-                    null,
-                    null,
-                    null,
-                    ORDER_BY_TIME_DESC,
-                    "5"
+            val tokens = HistorySearch.tokens(text)
+            val match = HistorySearch.matchQuery(tokens) ?: return@fromCallable emptyList<Website>()
+            val now = System.currentTimeMillis()
+            val candidates = ArrayList<Website>()
+            database.rawQuery(
+                    "SELECT $TABLE_NAME.* FROM $FTS_TABLE_NAME " +
+                            "JOIN $TABLE_NAME ON $TABLE_NAME.$COLUMN_ID = $FTS_TABLE_NAME.docid " +
+                            "WHERE $FTS_TABLE_NAME MATCH ? " +
+                            "ORDER BY $COLUMN_VISITED / (1.0 + (? - $COLUMN_CREATED_AT) / 86400000.0) DESC " +
+                            "LIMIT ${HistorySearch.CANDIDATES}",
+                    arrayOf(match, now.toString())
             )?.use { cursor ->
                 while (cursor.moveToNext()) {
-                    websites.add(Website.fromCursor(cursor))
+                    candidates.add(Website.fromCursor(cursor))
                 }
             }
-            websites
+            candidates.sortedByDescending { HistorySearch.score(it, tokens, now) }.take(SEARCH_LIMIT)
         }
     }
 
     override fun loadHistoryRange(limit: Int, offset: Int): List<Website> {
-        open()
         val cursor = database.rawQuery("SELECT * FROM $TABLE_NAME ORDER BY $ORDER_BY_TIME_DESC LIMIT $limit OFFSET $offset", null)
         cursor.moveToFirst()
         val websites = ArrayList<Website>()
@@ -261,9 +505,67 @@ internal constructor(application: Application) : SQLiteOpenHelper(
         return websites
     }
 
+    override fun loadOlderHistory(key: HistoryKey?, limit: Int, inclusive: Boolean): List<Website> {
+        val query = if (key == null) {
+            database.rawQuery("SELECT * FROM $TABLE_NAME ORDER BY $ORDER_BY_KEY_DESC LIMIT $limit", null)
+        } else {
+            // Written so that the range on CREATED can be read from the (CREATED, URL) index.
+            val urlComparison = if (inclusive) "<=" else "<"
+            database.rawQuery("SELECT * FROM $TABLE_NAME " +
+                    "WHERE $COLUMN_CREATED_AT <= ? AND ($COLUMN_CREATED_AT < ? OR $COLUMN_URL $urlComparison ?) " +
+                    "ORDER BY $ORDER_BY_KEY_DESC LIMIT $limit",
+                    arrayOf(key.createdAt.toString(), key.createdAt.toString(), key.url))
+        }
+        return query.use { it.toWebsites() }
+    }
+
+    override fun loadNewerHistory(key: HistoryKey, limit: Int): List<Website> {
+        val query = database.rawQuery("SELECT * FROM $TABLE_NAME " +
+                "WHERE $COLUMN_CREATED_AT >= ? AND ($COLUMN_CREATED_AT > ? OR $COLUMN_URL > ?) " +
+                "ORDER BY $ORDER_BY_KEY_ASC LIMIT $limit",
+                arrayOf(key.createdAt.toString(), key.createdAt.toString(), key.url))
+        return query.use { it.toWebsites() }.asReversed()
+    }
+
+    private fun Cursor.toWebsites(): List<Website> {
+        val websites = ArrayList<Website>(count)
+        while (moveToNext()) {
+            websites += Website.fromCursor(this)
+        }
+        return websites
+    }
+
     override fun pagedHistory(): LiveData<PagedList<Website>> = MutableLiveData()
 
+    /**
+     * An open database and the statements compiled against it, compiled on first use and closed
+     * with it.
+     */
+    private class Connection(val db: SQLiteDatabase) {
+        private val statements = HashMap<String, SQLiteStatement>()
+
+        fun statement(sql: String): SQLiteStatement = synchronized(statements) {
+            statements.getOrPut(sql) { db.compileStatement(sql) }
+        }
+
+        fun close() = synchronized(statements) {
+            statements.values.forEach { it.close() }
+            statements.clear()
+        }
+    }
+
     companion object {
-        private const val DATABASE_VERSION = 1
+        private const val DATABASE_VERSION = 4
+        private const val SEARCH_LIMIT = 5
+        private const val RECENTS_LIMIT = 8
+        private const val NO_ROW = -1L
+        private const val COMPACTION_CHUNK = 500
+        private const val AUTO_VACUUM_INCREMENTAL = 2L
+        // Visits are collected for this long and written together, so a burst of opened links
+        // costs one transaction and one change notification.
+        private const val WRITE_WINDOW_MS = 300L
+        private const val WRITE_BATCH_SIZE = 64
+        // First API level whose SQLite (3.28) supports INSERT ... ON CONFLICT DO UPDATE.
+        private const val UPSERT_MIN_SDK = 30
     }
 }
@@ -0,0 +1,173 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.data.history
+
+import arun.com.chromer.data.history.HistoryChange.Type.DELETED
+import arun.com.chromer.data.website.model.Website
+import dev.arunkumar.android.rxschedulers.SchedulerProvider
+import timber.log.Timber
+import java.util.Collections
+import java.util.IdentityHashMap
+import java.util.PriorityQueue
+import java.util.TreeMap
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * In memory prefix index over the host and title terms of the latest [MAX_ENTRIES] history
+ * entries, for suggestions as the user types. Loaded from [HistoryRepository] on first use and
+ * then kept up to date from [HistoryRepository.changes].
+ *
+ * Terms are kept sorted, so the entries having a term that starts with a prefix are one range of
+ * [terms]. Matches are ranked as in [HistorySqlDiskStore.search].
+ */
+@Singleton
+class HistorySuggestionIndex
+@Inject
+constructor(
+        private val historyRepository: HistoryRepository,
+        private val schedulerProvider: SchedulerProvider
+) {
+    private val lock = Any()
+    private val terms = TreeMap<String, MutableList<Website>>()
+    private val entries = HashMap<String, Website>()
+    @Volatile
+    private var loaded = false
+
+    val size get() = synchronized(lock) { entries.size }
+
+    /**
+     * Returns up to [limit] entries that have a term starting with each word of [text], best first.
+     */
+    fun search(text: String, limit: Int): List<Website> {
+        val tokens = HistorySearch.tokens(text)
+        if (tokens.isEmpty()) return emptyList()
+        load()
+        val now = System.currentTimeMillis()
+        val candidates = synchronized(lock) { candidates(tokens, now) }
+        return candidates.sortedByDescending { HistorySearch.score(it, tokens, now) }.take(limit)
+    }
+
+    /**
+     * Returns the [HistorySearch.CANDIDATES] entries matching all [tokens] with the most visits over
+     * age, the same preselection the full text search makes.
+     */
+    private fun candidates(tokens: List<String>, now: Long): List<Website> {
+        val matches = Collections.newSetFromMap(IdentityHashMap<Website, Boolean>())
+        for (posting in terms.subMap(tokens[0], true, tokens[0] + Character.MAX_VALUE, true).values) {
+            matches += posting
+        }
+        val rest = tokens.subList(1, tokens.size)
+        val candidates = PriorityQueue<Website>(HistorySearch.CANDIDATES + 1, compareBy { frecency(it, now) })
+        for (website in matches) {
+            if (rest.isNotEmpty()) {
+                val words = terms(website)
+                if (!rest.all { token -> words.any { it.startsWith(token) } }) continue
+            }
+            candidates += website
+            if (candidates.size > HistorySearch.CANDIDATES) {
+                candidates.poll()
+            }
+        }
+        return ArrayList(candidates)
+    }
+
+    private fun frecency(website: Website, now: Long) =
+            website.count / (1.0 + (now - website.createdAt) / DAY_MS)
+
+    private fun load() {
+        if (loaded) return
+        synchronized(lock) {
+            if (loaded) return
+            // Subscribed before reading so no change is missed; changes wait for the lock and
+            // applying one twice is harmless.
+            historyRepository.changes()
+                    .observeOn(schedulerProvider.io)
+                    .subscribe({ apply(it) }, { Timber.e(it) })
+            historyRepository.loadOlderHistory(null, MAX_ENTRIES, false).forEach(::put)
+            loaded = true
+            Timber.d("Indexed %d history entries for suggestions", entries.size)
+        }
+    }
+
+    private fun apply(changes: List<HistoryChange>) {
+        // Read outside the lock, written rows only carry their url.
+        val written = changes.filter { it.type != DELETED && it.url != null }.mapNotNull { change ->
+            historyRepository.get(Website(change.url!!)).toBlocking().firstOrDefault(null)
+        }
+        synchronized(lock) {
+            for (change in changes) {
+                when {
+                    change.clearsAll -> {
+                        terms.clear()
+                        entries.clear()
+                    }
+                    change.type == DELETED -> remove(change.url!!)
+                }
+            }
+            written.forEach(::put)
+            evict()
+        }
+    }
+
+    private fun put(website: Website) {
+        remove(website.url)
+        entries[website.url] = website
+        for (term in terms(website)) {
+            terms.getOrPut(term) { ArrayList(1) } += website
+        }
+    }
+
+    private fun remove(url: String) {
+        val website = entries.remove(url) ?: return
+        for (term in terms(website)) {
+            val posting = terms[term] ?: continue
+            posting.removeAll { it === website }
+            if (posting.isEmpty()) {
+                terms.remove(term)
+            }
+        }
+    }
+
+    /**
+     * Drops the oldest entries once there are [EVICTION_SLACK] more than [MAX_ENTRIES], so that
+     * entries are not sorted on every visit.
+     */
+    private fun evict() {
+        if (entries.size <= MAX_ENTRIES + EVICTION_SLACK) return
+        entries.values.sortedBy { HistoryKey.of(it) }
+                .take(entries.size - MAX_ENTRIES)
+                .forEach { remove(it.url) }
+    }
+
+    private fun terms(website: Website): Set<String> {
+        val host = HistorySearch.host(website.url)
+        return (HistorySearch.tokens(host) + HistorySearch.tokens(website.title) + host).toSet()
+    }
+
+    companion object {
+        /**
+         * Entries kept in memory. HistorySuggestionIndexBenchmark prints the heap used per 10k.
+         */
+        const val MAX_ENTRIES = 10_000
+        private const val EVICTION_SLACK = MAX_ENTRIES / 10
+        private const val DAY_MS = 86_400_000.0
+    }
+}
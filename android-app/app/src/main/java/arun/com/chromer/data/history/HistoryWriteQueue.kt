@@ -0,0 +1,103 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.data.history
+
+import arun.com.chromer.data.website.model.Website
+import rx.Observable
+import rx.subjects.AsyncSubject
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+
+/**
+ * Collects history visits for [windowMs] and hands them to [commit] as one batch. Visits of a url
+ * already in the batch are merged into its [Visit] instead of being written again.
+ */
+internal class HistoryWriteQueue(
+        private val windowMs: Long,
+        private val maxBatchSize: Int,
+        private val executor: ScheduledExecutorService,
+        private val commit: (Collection<Visit>) -> Unit
+) {
+    /**
+     * [count] visits of [website], the latest at [visitedAt].
+     */
+    class Visit(var website: Website, var count: Int, var visitedAt: Long)
+
+    private class Batch {
+        val visits = LinkedHashMap<String, Visit>()
+        val committed: AsyncSubject<Unit> = AsyncSubject.create()
+    }
+
+    private val lock = Any()
+    private var pending: Batch? = null
+
+    /**
+     * Adds a visit of [website] to the pending batch and returns an [Observable] that completes
+     * once the batch is written, or fails with the error that stopped it.
+     */
+    fun enqueue(website: Website): Observable<Unit> {
+        val batch: Batch
+        var full = false
+        synchronized(lock) {
+            batch = pending ?: Batch().also { created ->
+                pending = created
+                executor.schedule(Runnable { flush(created) }, windowMs, TimeUnit.MILLISECONDS)
+            }
+            val now = System.currentTimeMillis()
+            val visit = batch.visits[website.url]
+            if (visit == null) {
+                batch.visits[website.url] = Visit(website, 1, now)
+            } else {
+                visit.website = website
+                visit.count++
+                visit.visitedAt = now
+            }
+            if (batch.visits.size >= maxBatchSize) {
+                pending = null
+                full = true
+            }
+        }
+        if (full) {
+            executor.execute { write(batch) }
+        }
+        return batch.committed.asObservable()
+    }
+
+    private fun flush(batch: Batch) {
+        synchronized(lock) {
+            if (pending !== batch) {
+                return // Already written because it filled up.
+            }
+            pending = null
+        }
+        write(batch)
+    }
+
+    private fun write(batch: Batch) {
+        try {
+            commit(batch.visits.values)
+        } catch (e: Exception) {
+            batch.committed.onError(e)
+            return
+        }
+        batch.committed.onNext(Unit)
+        batch.committed.onCompleted()
+    }
+}
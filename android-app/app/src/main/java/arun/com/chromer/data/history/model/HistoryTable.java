@@ -36,19 +36,93 @@ public class HistoryTable {
 
     public static final String TABLE_NAME = "History";
 
-    public static final String DATABASE_CREATE = "CREATE TABLE IF NOT EXISTS "
-            + TABLE_NAME + " ( " +
-            COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
-            COLUMN_URL + " TEXT NOT NULL ," +
-            COLUMN_TITLE + " TEXT, " +
-            COLUMN_FAVICON + " TEXT, " +
-            COLUMN_CANONICAL + " TEXT, " +
-            COLUMN_COLOR + " TEXT, " +
-            COLUMN_AMP + " TEXT, " +
-            COLUMN_BOOKMARKED + " INTEGER, " +
-            COLUMN_CREATED_AT + " TEXT, " +
-            COLUMN_VISITED + " INTEGER" +
-            ");";
+    public static final String DATABASE_CREATE = createTable(TABLE_NAME);
+
+    public static final String INDEX_URL = TABLE_NAME + "_" + COLUMN_URL;
+    public static final String INDEX_CREATED_AT = TABLE_NAME + "_" + COLUMN_CREATED_AT;
+
+    public static final String CREATE_URL_INDEX = "CREATE UNIQUE INDEX IF NOT EXISTS "
+            + INDEX_URL + " ON " + TABLE_NAME + " (" + COLUMN_URL + ");";
+
+    // URL breaks ties between visits in the same millisecond when paging by CREATED.
+    public static final String CREATE_CREATED_AT_INDEX = "CREATE INDEX IF NOT EXISTS "
+            + INDEX_CREATED_AT + " ON " + TABLE_NAME + " (" + COLUMN_CREATED_AT + ", " + COLUMN_URL + ");";
+
+    /**
+     * Full text index over {@link #COLUMN_URL} and {@link #COLUMN_TITLE}. It is an FTS4 external
+     * content table whose docid is the history row id, kept in sync by the triggers below. FTS5 is
+     * not available in the platform SQLite.
+     */
+    public static final String FTS_TABLE_NAME = TABLE_NAME + "_fts";
+
+    public static final String CREATE_FTS_TABLE = "CREATE VIRTUAL TABLE IF NOT EXISTS "
+            + FTS_TABLE_NAME + " USING fts4(content=\"" + TABLE_NAME + "\", "
+            + COLUMN_URL + ", " + COLUMN_TITLE + ", prefix=\"2,3\");";
+
+    // Only URL and TITLE are indexed, so visit count and time updates leave the index alone.
+    public static final String[] CREATE_FTS_TRIGGERS = new String[]{
+            "CREATE TRIGGER IF NOT EXISTS " + FTS_TABLE_NAME + "_bu BEFORE UPDATE OF "
+                    + COLUMN_URL + ", " + COLUMN_TITLE + " ON " + TABLE_NAME + " BEGIN "
+                    + "DELETE FROM " + FTS_TABLE_NAME + " WHERE docid = old." + COLUMN_ID + "; END;",
+            "CREATE TRIGGER IF NOT EXISTS " + FTS_TABLE_NAME + "_bd BEFORE DELETE ON " + TABLE_NAME + " BEGIN "
+                    + "DELETE FROM " + FTS_TABLE_NAME + " WHERE docid = old." + COLUMN_ID + "; END;",
+            "CREATE TRIGGER IF NOT EXISTS " + FTS_TABLE_NAME + "_au AFTER UPDATE OF "
+                    + COLUMN_URL + ", " + COLUMN_TITLE + " ON " + TABLE_NAME + " BEGIN "
+                    + "INSERT INTO " + FTS_TABLE_NAME + " (docid, " + COLUMN_URL + ", " + COLUMN_TITLE + ") "
+                    + "VALUES (new." + COLUMN_ID + ", new." + COLUMN_URL + ", new." + COLUMN_TITLE + "); END;",
+            "CREATE TRIGGER IF NOT EXISTS " + FTS_TABLE_NAME + "_ai AFTER INSERT ON " + TABLE_NAME + " BEGIN "
+                    + "INSERT INTO " + FTS_TABLE_NAME + " (docid, " + COLUMN_URL + ", " + COLUMN_TITLE + ") "
+                    + "VALUES (new." + COLUMN_ID + ", new." + COLUMN_URL + ", new." + COLUMN_TITLE + "); END;"
+    };
+
+    /**
+     * Fills {@link #FTS_TABLE_NAME} from existing history rows.
+     */
+    public static final String REBUILD_FTS = "INSERT INTO " + FTS_TABLE_NAME + " ("
+            + FTS_TABLE_NAME + ") VALUES ('rebuild');";
+
+    /**
+     * Inserts visits. Columns are bound in the order URL, TITLE, FAVICON, CANONICAL, COLOR, AMP,
+     * BOOKMARKED, CREATED, VISITED.
+     */
+    public static final String INSERT_VISIT = "INSERT INTO " + TABLE_NAME + " ("
+            + COLUMN_URL + ", "
+            + COLUMN_TITLE + ", "
+            + COLUMN_FAVICON + ", "
+            + COLUMN_CANONICAL + ", "
+            + COLUMN_COLOR + ", "
+            + COLUMN_AMP + ", "
+            + COLUMN_BOOKMARKED + ", "
+            + COLUMN_CREATED_AT + ", "
+            + COLUMN_VISITED
+            + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * {@link #INSERT_VISIT} that adds to the visit count when the URL is already saved. Needs SQLite
+     * 3.24, shipped from API 30.
+     */
+    public static final String UPSERT_VISIT = INSERT_VISIT
+            + " ON CONFLICT(" + COLUMN_URL + ") DO UPDATE SET "
+            + COLUMN_VISITED + " = " + COLUMN_VISITED + " + excluded." + COLUMN_VISITED + ", "
+            + COLUMN_CREATED_AT + " = excluded." + COLUMN_CREATED_AT;
+
+    /**
+     * Adds visits to a saved URL. Binds the number of visits, CREATED, then URL.
+     */
+    public static final String UPDATE_VISIT = "UPDATE " + TABLE_NAME + " SET "
+            + COLUMN_VISITED + " = " + COLUMN_VISITED + " + ?, "
+            + COLUMN_CREATED_AT + " = ? WHERE " + COLUMN_URL + " = ?";
+
+    public static final String DELETE_URL = "DELETE FROM " + TABLE_NAME + " WHERE " + COLUMN_URL + " = ?";
+
+    /**
+     * Row id of a URL, or -1 if it is not saved.
+     */
+    public static final String ROW_ID_FOR_URL = "SELECT IFNULL((SELECT " + COLUMN_ID + " FROM " + TABLE_NAME
+            + " WHERE " + COLUMN_URL + " = ?), -1)";
+
+    public static final String EXISTS_URL = "SELECT EXISTS(SELECT 1 FROM " + TABLE_NAME
+            + " WHERE " + COLUMN_URL + " = ?)";
 
     public static final String[] ALL_COLUMN_PROJECTION = new String[]{
             COLUMN_URL,
@@ -63,4 +137,30 @@ public class HistoryTable {
     };
 
     public static final String ORDER_BY_TIME_DESC = " CREATED DESC";
+
+    /**
+     * Recency order that is total, as used for keyset paging.
+     */
+    public static final String ORDER_BY_KEY_DESC = COLUMN_CREATED_AT + " DESC, " + COLUMN_URL + " DESC";
+
+    public static final String ORDER_BY_KEY_ASC = COLUMN_CREATED_AT + " ASC, " + COLUMN_URL + " ASC";
+
+    /**
+     * Returns the statement creating the history table named {@code tableName}.
+     */
+    public static String createTable(String tableName) {
+        return "CREATE TABLE IF NOT EXISTS "
+                + tableName + " ( " +
+                COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+                COLUMN_URL + " TEXT NOT NULL ," +
+                COLUMN_TITLE + " TEXT, " +
+                COLUMN_FAVICON + " TEXT, " +
+                COLUMN_CANONICAL + " TEXT, " +
+                COLUMN_COLOR + " TEXT, " +
+                COLUMN_AMP + " TEXT, " +
+                COLUMN_BOOKMARKED + " INTEGER, " +
+                COLUMN_CREATED_AT + " INTEGER, " +
+                COLUMN_VISITED + " INTEGER" +
+                ");";
+    }
 }
@@ -20,38 +20,122 @@
 package arun.com.chromer.data.history.paging
 
 import androidx.paging.DataSource
-import androidx.paging.PositionalDataSource
+import androidx.paging.ItemKeyedDataSource
+import arun.com.chromer.data.history.HistoryKey
 import arun.com.chromer.data.history.HistoryStore
 import arun.com.chromer.data.website.model.Website
 import javax.inject.Inject
 import javax.inject.Provider
 import javax.inject.Singleton
 
-@Singleton
+/**
+ * Pages history in recency order by seeking from the last loaded entry's [HistoryKey] instead of
+ * skipping rows with an offset, so each page costs the same however deep it is.
+ *
+ * Invalidates itself when history changes inside the range it has loaded. Changes to rows that
+ * were not loaded, and would not land between loaded rows, leave the pages as they are.
+ */
 class PagedHistoryDataSource
 @Inject
-constructor(private val historyStore: HistoryStore) : PositionalDataSource<Website>() {
+constructor(private val historyStore: HistoryStore) : ItemKeyedDataSource<HistoryKey, Website>() {
 
-    override fun loadRange(
-            params: LoadRangeParams,
-            callback: LoadRangeCallback<Website>
-    ) = callback.onResult(historyStore.loadHistoryRange(params.loadSize, params.startPosition))
+    private val window = LoadedWindow()
+
+    private val changesSubscription = historyStore.changes()
+            .filter { changes -> changes.any(window::contains) }
+            .take(1)
+            .subscribe { invalidate() }
+
+    init {
+        addInvalidatedCallback { changesSubscription.dispose() }
+    }
+
+    override fun getKey(item: Website) = HistoryKey.of(item)
 
     override fun loadInitial(
-            params: LoadInitialParams,
+            params: LoadInitialParams<HistoryKey>,
             callback: LoadInitialCallback<Website>
-    ) = callback.onResult(historyStore.loadHistoryRange(
-            params.requestedLoadSize,
-            params.requestedStartPosition
-    ), 0)
+    ) {
+        val websites = historyStore.loadOlderHistory(
+                params.requestedInitialKey,
+                params.requestedLoadSize,
+                true
+        )
+        window.add(websites,
+                reachedNewest = params.requestedInitialKey == null,
+                reachedOldest = websites.size < params.requestedLoadSize)
+        callback.onResult(websites)
+    }
 
+    override fun loadAfter(
+            params: LoadParams<HistoryKey>,
+            callback: LoadCallback<Website>
+    ) {
+        val websites = historyStore.loadOlderHistory(params.key, params.requestedLoadSize, false)
+        window.add(websites, reachedOldest = websites.size < params.requestedLoadSize)
+        callback.onResult(websites)
+    }
+
+    override fun loadBefore(
+            params: LoadParams<HistoryKey>,
+            callback: LoadCallback<Website>
+    ) {
+        val websites = historyStore.loadNewerHistory(params.key, params.requestedLoadSize)
+        window.add(websites, reachedNewest = websites.size < params.requestedLoadSize)
+        callback.onResult(websites)
+    }
+
+    /**
+     * The range of history loaded so far, from [newest] to [oldest], and the urls in it.
+     */
+    internal class LoadedWindow {
+        private val urls = HashSet<String>()
+        private var loaded = false
+        private var newest: HistoryKey? = null
+        private var oldest: HistoryKey? = null
+        // Whether there is nothing left to load past either end.
+        private var reachedNewest = false
+        private var reachedOldest = false
+
+        @Synchronized
+        fun add(websites: List<Website>, reachedNewest: Boolean = false, reachedOldest: Boolean = false) {
+            loaded = true
+            this.reachedNewest = this.reachedNewest || reachedNewest
+            this.reachedOldest = this.reachedOldest || reachedOldest
+            for (website in websites) {
+                urls += website.url
+                val key = HistoryKey.of(website)
+                if (newest.let { it == null || key > it }) newest = key
+                if (oldest.let { it == null || key < it }) oldest = key
+            }
+        }
+
+        /**
+         * Returns whether [change] affects loaded rows: it removes or moves one of them, or
+         * writes a row between them. Before the first load completes every change counts, as the
+         * load may have read history from before it.
+         */
+        @Synchronized
+        fun contains(change: HistoryChange): Boolean {
+            if (!loaded || change.clearsAll || change.url in urls) {
+                return true
+            }
+            val key = change.key ?: return false
+            val belowNewest = reachedNewest || newest.let { it != null && key <= it }
+            val aboveOldest = reachedOldest || oldest.let { it != null && key >= it }
+            return belowNewest && aboveOldest
+        }
+    }
 
+    /**
+     * Creates a new data source each time, as one that has been invalidated cannot be reused.
+     */
     @Singleton
     class Factory
     @Inject
     constructor(
             private val pagedHistoryDataSourceProvider: Provider<PagedHistoryDataSource>
-    ) : DataSource.Factory<Int, Website>() {
+    ) : DataSource.Factory<HistoryKey, Website>() {
 
         override fun create(): PagedHistoryDataSource = pagedHistoryDataSourceProvider.get()
     }
@@ -46,6 +46,8 @@ import arun.com.chromer.shared.Constants;
  * faster than parsing the whole HTML content of the page.
  */
 public class WebArticle implements Parcelable {
+    // Rough bytes held in memory by a parsed element along with its attributes and text.
+    private static final int BYTES_PER_ELEMENT = 512;
     public static final Creator<WebArticle> CREATOR = new Creator<WebArticle>() {
         @Override
         public WebArticle createFromParcel(Parcel in) {
@@ -71,6 +73,8 @@ public class WebArticle implements Parcelable {
     public String faviconUrl = "";
     public List<String> keywords = new ArrayList<>();
     public Elements elements;
+    // Counted on first use; the elements are not changed once the article is built.
+    private int elementsSize = -1;
 
     public WebArticle() {
 
@@ -145,6 +149,23 @@ public class WebArticle implements Parcelable {
         return title != null && !title.isEmpty() ? title : preferredUrl();
     }
 
+    /**
+     * Approximate number of bytes {@link #elements} hold in memory, estimated from their element
+     * count without serializing them.
+     */
+    public int elementsSize() {
+        if (elementsSize < 0) {
+            int count = 0;
+            if (elements != null) {
+                for (Element element : elements) {
+                    count += element.getAllElements().size();
+                }
+            }
+            elementsSize = count * BYTES_PER_ELEMENT;
+        }
+        return elementsSize;
+    }
+
     @ColorInt
     public int themeColor() {
         try {
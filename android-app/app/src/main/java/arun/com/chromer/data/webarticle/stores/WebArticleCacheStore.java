@@ -23,16 +23,14 @@ import android.app.Application;
 
 import androidx.annotation.NonNull;
 
-import java.io.IOException;
-
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import arun.com.chromer.data.common.WeightedLruCache;
 import arun.com.chromer.data.webarticle.WebArticleStore;
 import arun.com.chromer.data.webarticle.model.WebArticle;
 import in.arunkumarsampath.diskcache.ParcelDiskCache;
 import rx.Observable;
-import timber.log.Timber;
 
 /**
  * Cache store to get/put {@link WebArticle} objects to disk cache.
@@ -42,24 +40,64 @@ public class WebArticleCacheStore implements WebArticleStore {
     private static final String TAG = WebArticleCacheStore.class.getSimpleName();
     // Cache size, currently set at 30 MB.
     private static final int DISK_CACHE_SIZE = 1024 * 1024 * 30;
+    // In memory cache size in approximate bytes, currently set at 4 MB.
+    private static final int MEMORY_CACHE_SIZE = 1024 * 1024 * 4;
     // Disk LRU cache to store articles
     private ParcelDiskCache<WebArticle> webSiteDiskCache;
+    // Parsed articles kept in memory so repeat opens skip disk, unmarshalling and Jsoup parsing.
+    private final WeightedLruCache<WebArticle> memoryCache = new WeightedLruCache<>(MEMORY_CACHE_SIZE, WebArticleCacheStore::sizeOf);
 
     @Inject
     WebArticleCacheStore(Application application) {
-        try {
-            webSiteDiskCache = ParcelDiskCache.open(application, WebArticle.class.getClassLoader(), WebArticle.class.getName(), DISK_CACHE_SIZE);
-        } catch (IOException ignored) {
-            Timber.e(ignored);
+        // Reads run on io threads, so they wait for the journal instead of refetching on a miss.
+        webSiteDiskCache = ParcelDiskCache.openInBackground(application, WebArticle.class.getClassLoader(), WebArticle.class.getName(), DISK_CACHE_SIZE, ParcelDiskCache.LoadPolicy.BLOCK);
+        webSiteDiskCache.shouldSaveInBackground();
+    }
+
+    private static int sizeOf(@NonNull WebArticle article) {
+        int size = 128 + WeightedLruCache.sizeOf(article.url)
+                + WeightedLruCache.sizeOf(article.originalUrl)
+                + WeightedLruCache.sizeOf(article.title)
+                + WeightedLruCache.sizeOf(article.description)
+                + WeightedLruCache.sizeOf(article.siteName)
+                + WeightedLruCache.sizeOf(article.themeColor)
+                + WeightedLruCache.sizeOf(article.ampUrl)
+                + WeightedLruCache.sizeOf(article.canonicalUrl)
+                + WeightedLruCache.sizeOf(article.imageUrl)
+                + WeightedLruCache.sizeOf(article.videoUrl)
+                + WeightedLruCache.sizeOf(article.feedUrl)
+                + WeightedLruCache.sizeOf(article.faviconUrl);
+        if (article.keywords != null) {
+            for (String keyword : article.keywords) {
+                size += WeightedLruCache.sizeOf(keyword);
+            }
         }
+        return size + article.elementsSize();
+    }
+
+    /**
+     * Hit, miss and eviction counts of the in memory tier.
+     */
+    @NonNull
+    public String memoryCacheStats() {
+        return memoryCache.stats();
     }
 
     @NonNull
     @Override
     public Observable<WebArticle> getWebArticle(@NonNull final String url) {
         return Observable.fromCallable(() -> {
+            final String key = url.trim();
+            final WebArticle cached = memoryCache.get(key);
+            if (cached != null) {
+                return cached;
+            }
             try {
-                return webSiteDiskCache.get(url.trim());
+                final WebArticle webArticle = webSiteDiskCache.get(key);
+                if (webArticle != null) {
+                    memoryCache.put(key, webArticle);
+                }
+                return webArticle;
             } catch (Exception e) {
                 return null;
             }
@@ -70,6 +108,7 @@ public class WebArticleCacheStore implements WebArticleStore {
     @Override
     public Observable<WebArticle> saveWebArticle(@NonNull final WebArticle webSite) {
         return Observable.fromCallable(() -> {
+            memoryCache.put(webSite.url.trim(), webSite);
             try {
                 return webSiteDiskCache.set(webSite.url, webSite);
             } catch (Exception e) {
@@ -49,32 +49,22 @@ internal constructor(
         private val historyRepository: HistoryRepository
 ) : WebsiteRepository {
 
+    // Cache and history are read in parallel, with the network fetch started if they are slow.
+    private val lookup = TieredLookup<Website>(TieredLookup.Mode.RACE, SPECULATIVE_FETCH_DELAY_MS, Schedulers.io())
+
     override fun getWebsite(url: String): Observable<Website> {
         val cache = cacheStore.getWebsite(url)
-                .doOnNext { webSite ->
-                    if (webSite != null) {
-                        historyRepository.insert(webSite).subscribe()
-                    }
-                }
-
         val history = historyRepository.get(Website(url))
-                .doOnNext { webSite ->
-                    if (webSite != null) {
-                        historyRepository.insert(webSite).subscribe()
-                    }
-                }
-
-
         val remote = webNetworkStore.getWebsite(url)
                 .filter { webSite -> webSite != null }
+                .doOnNext { webSite -> cacheStore.saveWebsite(webSite).subscribe() }
+
+        // Side effects of a hit are applied to the result only, as more than one tier may hit.
+        return lookup.lookup(url, cache, history, remote)
                 .doOnNext { webSite ->
-                    cacheStore.saveWebsite(webSite).subscribe()
                     historyRepository.insert(webSite).subscribe()
+                    revalidateIfStale(webSite)
                 }
-
-
-        return Observable.concat(cache, history, remote)
-                .first { webSite -> webSite != null }
                 .doOnError { Timber.e(it) }
                 .onErrorReturn { throwable ->
                     Timber.e(throwable)
@@ -89,8 +79,8 @@ internal constructor(
         val remote = webNetworkStore.getWebsite(url)
                 .filter { webSite -> webSite != null }
                 .doOnNext { webSite -> cacheStore.saveWebsite(webSite).subscribe() }
-        return Observable.concat(cache, history, remote)
-                .first { webSite -> webSite != null }
+        return lookup.lookup(url, cache, history, remote)
+                .doOnNext { webSite -> revalidateIfStale(webSite) }
                 .doOnError { Timber.e(it) }
                 .onErrorReturn { throwable ->
                     Timber.e(throwable)
@@ -98,6 +88,39 @@ internal constructor(
                 }.compose(SchedulerProvider.applyIoSchedulers())
     }
 
+    /**
+     * Hit, miss and cancellation counts and lookup times of the cache, history and network tiers.
+     */
+    fun lookupStats(): String = lookup.stats()
+
+    /**
+     * Refreshes the cached [website] in the background once it is older than [MAX_AGE_MS], while it
+     * is still returned as is. Websites from history have never been fetched and are refreshed
+     * with a full request, cached ones with a conditional request that a page which has not
+     * changed answers with just its headers. A website that could not be refreshed is saved as
+     * is, so that it is not requested again on every lookup until it is stale once more.
+     */
+    private fun revalidateIfStale(website: Website) {
+        if (System.currentTimeMillis() - website.fetchedAt < MAX_AGE_MS) {
+            return
+        }
+        webNetworkStore.refreshWebsite(website)
+                .doOnError { Timber.e(it) }
+                .onErrorResumeNext(Observable.empty())
+                .switchIfEmpty(Observable.fromCallable { fetchedNow(website) })
+                .flatMap { cacheStore.saveWebsite(it) }
+                .subscribeOn(Schedulers.io())
+                .subscribe({ Timber.d("Revalidated %s", website.url) }, { Timber.e(it) })
+    }
+
+    private fun fetchedNow(website: Website) = Website(website.title, website.url, website.faviconUrl,
+            website.canonicalUrl, website.themeColor, website.ampUrl, website.bookmarked, website.createdAt,
+            website.count).apply {
+        etag = website.etag
+        lastModified = website.lastModified
+        fetchedAt = System.currentTimeMillis()
+    }
+
     override fun getWebsiteColorSync(url: String): Int {
         return cacheStore.getWebsiteColor(url)
                 .map<WebColor> { webColor ->
@@ -141,4 +164,11 @@ internal constructor(
     override fun getWebsiteIconWithPlaceholderAndColor(website: Website): Pair<Bitmap, Int> {
         return webNetworkStore.getWebsiteIconWithPlaceholderAndColor(website)
     }
+
+    companion object {
+        // Age after which cached metadata is revalidated.
+        private const val MAX_AGE_MS = 24 * 60 * 60 * 1000L
+        // Local lookups usually take a few milliseconds, so one still running after this is slow.
+        private const val SPECULATIVE_FETCH_DELAY_MS = 50L
+    }
 }
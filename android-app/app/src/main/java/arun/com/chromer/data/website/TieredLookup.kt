@@ -0,0 +1,123 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.data.website
+
+import rx.Observable
+import rx.Scheduler
+import timber.log.Timber
+import java.util.EnumMap
+import java.util.Locale
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Looks a value up in the cache, history and network tiers and emits the first one found, or
+ * errors if none is. Tiers emit null on a miss. The time each tier took is logged and added to
+ * [stats].
+ *
+ * In [Mode.SEQUENTIAL] a tier is read only after the ones before it missed. In [Mode.RACE] the
+ * cache and history are read in parallel on [scheduler], with a cache hit still preferred over a
+ * history hit, and the network fetch starts once both have missed or [speculativeDelayMs] has
+ * passed, whichever is first. A local hit drops the fetch.
+ */
+internal class TieredLookup<T>(
+        private val mode: Mode,
+        private val speculativeDelayMs: Long,
+        private val scheduler: Scheduler
+) {
+    enum class Mode { SEQUENTIAL, RACE }
+
+    enum class Tier { CACHE, HISTORY, NETWORK }
+
+    private enum class Outcome { HIT, MISS, CANCELLED }
+
+    private val timings = EnumMap<Tier, TierTiming>(Tier::class.java).apply {
+        Tier.values().forEach { put(it, TierTiming()) }
+    }
+
+    fun lookup(key: String, cache: Observable<T>, history: Observable<T>, remote: Observable<T>): Observable<T> {
+        val timedCache = timed(Tier.CACHE, key, cache)
+        val timedHistory = timed(Tier.HISTORY, key, history)
+        val timedRemote = timed(Tier.NETWORK, key, remote)
+        return when (mode) {
+            Mode.SEQUENTIAL -> Observable.concat(timedCache, timedHistory, timedRemote)
+            Mode.RACE -> race(timedCache, timedHistory, timedRemote)
+        }.first { it != null }
+    }
+
+    private fun race(cache: Observable<T>, history: Observable<T>, remote: Observable<T>): Observable<T> {
+        // Both are read at once, but a history hit is held until the cache has missed, as cached
+        // websites carry the validators that history rows lack. Misses are dropped before publish,
+        // which can not queue nulls.
+        return Observable.concatEager(
+                cache.subscribeOn(scheduler).filter { it != null },
+                history.subscribeOn(scheduler).filter { it != null })
+                .publish { localHits ->
+                    // Emits only if neither hit, as the first hit ends the race.
+                    val localsMissed = localHits.count().map { 0L }
+                    val startRemote = Observable.amb(
+                            Observable.timer(speculativeDelayMs, TimeUnit.MILLISECONDS, scheduler),
+                            localsMissed)
+                    Observable.merge(localHits, startRemote.flatMap { remote.subscribeOn(scheduler) })
+                }
+    }
+
+    private fun timed(tier: Tier, key: String, lookup: Observable<T>): Observable<T> {
+        return Observable.defer {
+            val start = System.nanoTime()
+            val recorded = AtomicBoolean()
+            fun record(outcome: Outcome) {
+                if (recorded.compareAndSet(false, true)) {
+                    val elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+                    timings.getValue(tier).add(outcome, elapsedMs)
+                    Timber.d("%s lookup of %s: %s in %d ms", tier, key, outcome, elapsedMs)
+                }
+            }
+            lookup.doOnNext { if (it != null) record(Outcome.HIT) }
+                    .doOnCompleted { record(Outcome.MISS) }
+                    .doOnError { record(Outcome.MISS) }
+                    .doOnUnsubscribe { record(Outcome.CANCELLED) }
+        }
+    }
+
+    /**
+     * Hit, miss and cancellation counts of each tier, and the average time of its lookups.
+     */
+    fun stats(): String = timings.entries.joinToString("; ") { (tier, timing) -> "$tier: $timing" }
+
+    private class TierTiming {
+        private val counts = IntArray(Outcome.values().size)
+        private var totalMs = 0L
+
+        @Synchronized
+        fun add(outcome: Outcome, elapsedMs: Long) {
+            counts[outcome.ordinal]++
+            totalMs += elapsedMs
+        }
+
+        @Synchronized
+        override fun toString(): String {
+            val lookups = counts.sum()
+            return String.format(Locale.US, "hits=%d, misses=%d, cancelled=%d, avg=%d ms",
+                    counts[Outcome.HIT.ordinal], counts[Outcome.MISS.ordinal], counts[Outcome.CANCELLED.ordinal],
+                    if (lookups == 0) 0 else totalMs / lookups)
+        }
+    }
+}
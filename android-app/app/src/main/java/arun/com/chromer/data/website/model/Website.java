@@ -30,10 +30,9 @@ import androidx.annotation.ColorInt;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.DiffUtil;
 
-import com.chimbori.crux.articles.Article;
-
 import arun.com.chromer.data.history.model.HistoryTable;
 import arun.com.chromer.data.webarticle.model.WebArticle;
+import arun.com.chromer.util.parser.HeadMetadata;
 
 import static arun.com.chromer.shared.Constants.NO_COLOR;
 
@@ -72,6 +71,11 @@ public class Website implements Parcelable {
     public boolean bookmarked;
     public long createdAt;
     public int count;
+    // Validators of the response the metadata was read from, and when it was fetched. Not part of
+    // equals, as they change without the website changing.
+    public String etag;
+    public String lastModified;
+    public long fetchedAt;
 
     public Website() {
 
@@ -106,6 +110,10 @@ public class Website implements Parcelable {
         bookmarked = in.readByte() != 0;
         createdAt = in.readLong();
         count = in.readInt();
+        // Absent from websites cached before they were added, which read as null and 0.
+        etag = in.readString();
+        lastModified = in.readString();
+        fetchedAt = in.readLong();
     }
 
     @NonNull
@@ -125,14 +133,16 @@ public class Website implements Parcelable {
     }
 
     @NonNull
-    public static Website fromArticle(@NonNull Article article) {
+    public static Website fromMetadata(@NonNull HeadMetadata metadata) {
         final Website website = new Website();
-        website.title = article.title;
-        website.url = article.url;
-        website.canonicalUrl = !TextUtils.isEmpty(article.canonicalUrl) ? article.canonicalUrl : article.url;
-        website.faviconUrl = article.faviconUrl;
-        website.themeColor = article.themeColor;
-        website.ampUrl = !TextUtils.isEmpty(article.ampUrl) ? article.ampUrl : "";
+        website.title = metadata.title;
+        website.url = metadata.url;
+        website.canonicalUrl = !TextUtils.isEmpty(metadata.canonicalUrl) ? metadata.canonicalUrl : metadata.url;
+        website.faviconUrl = metadata.iconUrl();
+        website.themeColor = metadata.themeColor;
+        website.ampUrl = !TextUtils.isEmpty(metadata.ampUrl) ? metadata.ampUrl : "";
+        website.etag = metadata.etag;
+        website.lastModified = metadata.lastModified;
         return website;
     }
 
@@ -240,6 +250,9 @@ public class Website implements Parcelable {
         dest.writeByte((byte) (bookmarked ? 1 : 0));
         dest.writeLong(createdAt);
         dest.writeInt(count);
+        dest.writeString(etag);
+        dest.writeString(lastModified);
+        dest.writeLong(fetchedAt);
     }
 
     @Override
@@ -254,6 +267,9 @@ public class Website implements Parcelable {
                 ", bookmarked=" + bookmarked +
                 ", createdAt=" + createdAt +
                 ", count=" + count +
+                ", etag='" + etag + '\'' +
+                ", lastModified='" + lastModified + '\'' +
+                ", fetchedAt=" + fetchedAt +
                 '}';
     }
 
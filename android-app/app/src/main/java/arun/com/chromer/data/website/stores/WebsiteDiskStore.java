@@ -28,15 +28,15 @@ import android.util.Pair;
 import androidx.annotation.ColorInt;
 import androidx.annotation.NonNull;
 
-import java.io.IOException;
-
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import arun.com.chromer.data.common.BookStore;
+import arun.com.chromer.data.common.WeightedLruCache;
 import arun.com.chromer.data.website.model.WebColor;
 import arun.com.chromer.data.website.model.Website;
 import arun.com.chromer.shared.Constants;
+import arun.com.chromer.util.parser.RedirectCache;
 import in.arunkumarsampath.diskcache.ParcelDiskCache;
 import io.paperdb.Book;
 import io.paperdb.Paper;
@@ -54,17 +54,41 @@ public class WebsiteDiskStore implements WebsiteStore, BookStore {
     public static final Pair<Drawable, Integer> EMPTY_DRAWABLE_PAIR = new Pair<>(null, Constants.NO_COLOR);
     // Cache size, currently set at 30 MB.
     private static final int DISK_CACHE_SIZE = 1024 * 1024 * 30;
+    // In memory cache size in approximate bytes, currently set at 512 KB.
+    private static final int MEMORY_CACHE_SIZE = 1024 * 512;
     private static final String THEME_COLOR_BOOK = "THEME_COLOR_BOOK";
     // Cache to store our data.
     private ParcelDiskCache<Website> webSiteDiskCache;
+    // Recently used websites kept in memory so repeat lookups skip disk and unmarshalling.
+    private final WeightedLruCache<Website> memoryCache = new WeightedLruCache<>(MEMORY_CACHE_SIZE, WebsiteDiskStore::sizeOf);
+    // Where visited short links led, cleared along with the websites.
+    private final RedirectCache redirectCache;
 
     @Inject
-    WebsiteDiskStore(Application context) {
-        try {
-            webSiteDiskCache = ParcelDiskCache.open(context, Website.class.getClassLoader(), "WebSiteCache", DISK_CACHE_SIZE);
-        } catch (IOException e) {
-            Timber.e(e);
-        }
+    WebsiteDiskStore(Application context, RedirectCache redirectCache) {
+        this.redirectCache = redirectCache;
+        // Reads run on io threads, so they wait for the journal instead of refetching on a miss.
+        webSiteDiskCache = ParcelDiskCache.openInBackground(context, Website.class.getClassLoader(), "WebSiteCache", DISK_CACHE_SIZE, ParcelDiskCache.LoadPolicy.BLOCK);
+        webSiteDiskCache.shouldSaveInBackground();
+    }
+
+    private static int sizeOf(@NonNull Website website) {
+        return 64 + WeightedLruCache.sizeOf(website.title)
+                + WeightedLruCache.sizeOf(website.url)
+                + WeightedLruCache.sizeOf(website.faviconUrl)
+                + WeightedLruCache.sizeOf(website.canonicalUrl)
+                + WeightedLruCache.sizeOf(website.themeColor)
+                + WeightedLruCache.sizeOf(website.ampUrl)
+                + WeightedLruCache.sizeOf(website.etag)
+                + WeightedLruCache.sizeOf(website.lastModified);
+    }
+
+    /**
+     * Hit, miss and eviction counts of the in memory tier.
+     */
+    @NonNull
+    public String memoryCacheStats() {
+        return memoryCache.stats();
     }
 
     @Override
@@ -76,8 +100,17 @@ public class WebsiteDiskStore implements WebsiteStore, BookStore {
     @Override
     public Observable<Website> getWebsite(@NonNull final String url) {
         return Observable.fromCallable(() -> {
+            final String key = url.trim();
+            final Website cached = memoryCache.get(key);
+            if (cached != null) {
+                return cached;
+            }
             try {
-                return webSiteDiskCache.get(url.trim());
+                final Website website = webSiteDiskCache.get(key);
+                if (website != null) {
+                    memoryCache.put(key, website);
+                }
+                return website;
             } catch (Exception e) {
                 Timber.e(e);
                 return null;
@@ -91,10 +124,18 @@ public class WebsiteDiskStore implements WebsiteStore, BookStore {
         });
     }
 
+    @NonNull
+    @Override
+    public Observable<Website> refreshWebsite(@NonNull Website website) {
+        return Observable.empty();
+    }
+
     @NonNull
     @Override
     public Observable<Void> clearCache() {
         return Observable.fromCallable(() -> {
+            memoryCache.evictAll();
+            redirectCache.clear();
             if (webSiteDiskCache != null) {
                 webSiteDiskCache.clear();
             }
@@ -106,6 +147,7 @@ public class WebsiteDiskStore implements WebsiteStore, BookStore {
     @Override
     public Observable<Website> saveWebsite(@NonNull final Website website) {
         return Observable.fromCallable(() -> {
+            memoryCache.put(website.url.trim(), website);
             try {
                 return webSiteDiskCache.set(website.url, website);
             } catch (Exception e) {
@@ -41,7 +41,7 @@ import arun.com.chromer.util.ColorUtil;
 import arun.com.chromer.util.SchedulerProvider;
 import arun.com.chromer.util.Utils;
 import arun.com.chromer.util.glide.GlideApp;
-import arun.com.chromer.util.parser.RxParser;
+import arun.com.chromer.util.parser.FetchClient;
 import rx.Observable;
 import timber.log.Timber;
 
@@ -51,26 +51,49 @@ import timber.log.Timber;
 @Singleton
 public class WebsiteNetworkStore implements WebsiteStore {
     private final Context context;
+    private final FetchClient fetchClient;
 
     @Inject
-    WebsiteNetworkStore(@NonNull Application application) {
+    WebsiteNetworkStore(@NonNull Application application, @NonNull FetchClient fetchClient) {
         this.context = application.getApplicationContext();
+        this.fetchClient = fetchClient;
     }
 
     @NonNull
     @Override
     public Observable<Website> getWebsite(@NonNull String url) {
-        return RxParser.INSTANCE.parseUrl(url)
-                .flatMap(urlArticlePair -> {
-                    if (urlArticlePair.second != null) {
-                        final Website extractedWebsite = Website.fromArticle(urlArticlePair.second);
-                        // We preserve the original url, otherwise breaks cache.
-                        extractedWebsite.url = urlArticlePair.first;
-                        return Observable.just(extractedWebsite);
+        final Website emptyWebsite = new Website(url);
+        emptyWebsite.fetchedAt = System.currentTimeMillis();
+        return fetchClient.headMetadata(url)
+                .map(metadata -> {
+                    final Website extractedWebsite = Website.fromMetadata(metadata);
+                    // We preserve the original url, otherwise breaks cache.
+                    extractedWebsite.url = url;
+                    extractedWebsite.fetchedAt = System.currentTimeMillis();
+                    return extractedWebsite;
+                }).defaultIfEmpty(emptyWebsite)
+                .compose(SchedulerProvider.applyIoSchedulers());
+    }
+
+    @NonNull
+    @Override
+    public Observable<Website> refreshWebsite(@NonNull Website website) {
+        return fetchClient.headMetadata(website.url, website.etag, website.lastModified)
+                .map(metadata -> {
+                    final Website refreshedWebsite;
+                    if (metadata.notModified) {
+                        refreshedWebsite = new Website(website.title, website.url, website.faviconUrl,
+                                website.canonicalUrl, website.themeColor, website.ampUrl,
+                                website.bookmarked, website.createdAt, website.count);
+                        refreshedWebsite.etag = metadata.etag;
+                        refreshedWebsite.lastModified = metadata.lastModified;
                     } else {
-                        return Observable.just(new Website(urlArticlePair.first));
+                        refreshedWebsite = Website.fromMetadata(metadata);
+                        refreshedWebsite.url = website.url;
                     }
-                }).compose(SchedulerProvider.applyIoSchedulers());
+                    refreshedWebsite.fetchedAt = System.currentTimeMillis();
+                    return refreshedWebsite;
+                });
     }
 
     @NonNull
@@ -37,6 +37,13 @@ public interface WebsiteStore {
     @NonNull
     Observable<Website> getWebsite(@NonNull String url);
 
+    /**
+     * Emits {@code website} as it is now, with its validators used to skip reading a page that has
+     * not changed. Completes without a value if it could not be refreshed.
+     */
+    @NonNull
+    Observable<Website> refreshWebsite(@NonNull Website website);
+
     @NonNull
     Observable<Void> clearCache();
 
@@ -24,6 +24,7 @@ import arun.com.chromer.browsing.customtabs.bottombar.BottomBarReceiver
 import arun.com.chromer.browsing.customtabs.callbacks.MinimizeBroadcastReceiver
 import arun.com.chromer.browsing.customtabs.dynamictoolbar.AppColorExtractorJob
 import arun.com.chromer.data.DataModule
+import arun.com.chromer.data.history.HistoryCompactionJob
 import arun.com.chromer.di.activity.ActivityComponent
 import arun.com.chromer.di.activity.ActivityModule
 import arun.com.chromer.di.service.ServiceComponent
@@ -60,6 +61,8 @@ interface AppComponent {
 
     fun inject(appColorExtractorJob: AppColorExtractorJob)
 
+    fun inject(historyCompactionJob: HistoryCompactionJob)
+
     fun inject(bottomBarReceiver: BottomBarReceiver)
 
     fun inject(minimizeBroadcastReceiver: MinimizeBroadcastReceiver)
@@ -23,6 +23,8 @@ import android.app.Application
 import arun.com.chromer.browsing.icons.DefaultWebsiteIconsProvider
 import arun.com.chromer.browsing.icons.WebsiteIconsProvider
 import arun.com.chromer.di.viewmodel.ViewModelModule
+import arun.com.chromer.search.suggestion.source.GoogleSuggestionSource
+import arun.com.chromer.search.suggestion.source.SuggestionSource
 import arun.com.chromer.settings.Preferences
 import arun.com.chromer.util.RxEventBus
 import com.afollestad.rxkprefs.rxkPrefs
@@ -57,4 +59,10 @@ open class AppModule(var application: Application) {
     internal fun websiteIconProvider(defaultWebsiteIconsProvider: DefaultWebsiteIconsProvider): WebsiteIconsProvider {
         return defaultWebsiteIconsProvider
     }
-}
\ No newline at end of file
+
+    @Provides
+    @Singleton
+    internal fun suggestionSource(googleSuggestionSource: GoogleSuggestionSource): SuggestionSource {
+        return googleSuggestionSource
+    }
+}
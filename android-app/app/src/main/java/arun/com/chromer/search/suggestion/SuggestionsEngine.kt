@@ -19,23 +19,27 @@
 
 package arun.com.chromer.search.suggestion
 
-import `in`.arunkumarsampath.suggestions.RxSuggestions.suggestionsTransformer
 import android.app.Application
+import android.content.ClipboardManager
+import android.content.Context
+import android.os.SystemClock
+import android.util.LruCache
 import arun.com.chromer.R
-import arun.com.chromer.data.history.HistoryRepository
+import arun.com.chromer.data.history.HistorySuggestionIndex
 import arun.com.chromer.search.suggestion.items.SuggestionItem
 import arun.com.chromer.search.suggestion.items.SuggestionItem.*
 import arun.com.chromer.search.suggestion.items.SuggestionType
 import arun.com.chromer.search.suggestion.items.SuggestionType.*
+import arun.com.chromer.search.suggestion.source.SuggestionSource
 import arun.com.chromer.util.Utils
 import dev.arunkumar.android.rxschedulers.SchedulerProvider
-import hu.akarnokd.rxjava.interop.RxJavaInterop.toV2Flowable
-import hu.akarnokd.rxjava.interop.RxJavaInterop.toV2Transformer
 import io.reactivex.Flowable
 import io.reactivex.FlowableTransformer
 import io.reactivex.functions.Function
 import timber.log.Timber
+import java.util.Locale
 import java.util.concurrent.TimeUnit.MILLISECONDS
+import java.util.concurrent.atomic.AtomicInteger
 import javax.inject.Inject
 import javax.inject.Singleton
 
@@ -47,10 +51,26 @@ class SuggestionsEngine
 @Inject
 constructor(
         private var application: Application,
-        private val historyRepository: HistoryRepository,
+        private val historySuggestionIndex: HistorySuggestionIndex,
+        private val suggestionSource: SuggestionSource,
         private val schedulerProvider: SchedulerProvider
 ) {
-    private val suggestionsDebounce = 200L
+    // Bumped on every clipboard change, so that suggestions read before a change are not reused.
+    private val clipGeneration = AtomicInteger()
+    @Volatile
+    private var copySuggestions: CopySuggestions? = null
+
+    /**
+     * Google suggestions by lower cased query.
+     */
+    private val googleCache = LruCache<String, List<SuggestionItem>>(GOOGLE_CACHE_SIZE)
+
+    private class CopySuggestions(val generation: Int, val readAt: Long, val items: List<SuggestionItem>)
+
+    init {
+        val clipboardManager = application.getSystemService(Context.CLIPBOARD_SERVICE) as ClipboardManager
+        clipboardManager.addPrimaryClipChangedListener { clipGeneration.incrementAndGet() }
+    }
 
     /**
      * Trims and filters empty strings in stream.
@@ -63,28 +83,75 @@ constructor(
         }
     }
 
-    private fun deviceSuggestions() = Flowable
-            .fromCallable {
-                Utils.getClipBoardText(application) ?: ""
-            }.subscribeOn(schedulerProvider.ui)
-            .subscribeOn(schedulerProvider.pool)
-            .map { copiedText ->
-                if (copiedText.isEmpty()) {
-                    emptyList()
-                } else {
-                    val fullCopiedText = CopySuggestionItem(
-                            copiedText.trim(),
-                            application.getString(R.string.text_you_copied)
-                    )
-                    val extractedLinks = Utils.findURLs(copiedText)
-                            .map {
-                                CopySuggestionItem(it, application.getString(R.string.link_you_copied))
-                            }.toMutableList()
-                    extractedLinks.apply {
-                        add(fullCopiedText)
-                    }.distinctBy { it.title.trim() }
-                }
-            }
+    /**
+     * Suggestions from the clipboard, read and parsed once per clipboard change. As the change
+     * listener is not called while the app is in the background on newer releases, a read is
+     * also reused for at most [COPY_CACHE_MS].
+     */
+    private fun deviceSuggestions(): Flowable<List<SuggestionItem>> {
+        val generation = clipGeneration.get()
+        val cached = copySuggestions
+        if (cached != null && cached.generation == generation
+                && SystemClock.elapsedRealtime() - cached.readAt < COPY_CACHE_MS) {
+            return Flowable.just(cached.items)
+        }
+        return Flowable
+                .fromCallable {
+                    Utils.getClipBoardText(application) ?: ""
+                }.subscribeOn(schedulerProvider.ui)
+                .observeOn(schedulerProvider.pool)
+                .map<List<SuggestionItem>> { copiedText ->
+                    if (copiedText.isEmpty()) {
+                        emptyList()
+                    } else {
+                        val fullCopiedText = CopySuggestionItem(
+                                copiedText.trim(),
+                                application.getString(R.string.text_you_copied)
+                        )
+                        val extractedLinks = Utils.findURLs(copiedText)
+                                .map {
+                                    CopySuggestionItem(it, application.getString(R.string.link_you_copied))
+                                }.toMutableList()
+                        extractedLinks.apply {
+                            add(fullCopiedText)
+                        }.distinctBy { it.title.trim() }
+                    }
+                }.doOnNext { copySuggestions = CopySuggestions(generation, SystemClock.elapsedRealtime(), it) }
+    }
+
+    /**
+     * Google suggestions for [query]. A query asked before is answered from [googleCache]. Otherwise
+     * the cached suggestions of its longest cached prefix that still match are emitted first, and
+     * the request is made after [GOOGLE_DELAY_MS] so that a query typed over is never sent.
+     */
+    private fun googleSuggestions(query: String): Flowable<List<SuggestionItem>> {
+        val key = query.toLowerCase(Locale.ROOT)
+        googleCache.get(key)?.let { return Flowable.just(it) }
+        val remote = Flowable.timer(GOOGLE_DELAY_MS, MILLISECONDS, schedulerProvider.pool)
+                .observeOn(schedulerProvider.io)
+                .map { remoteSuggestions(query) }
+                .doOnNext { if (it.isNotEmpty()) googleCache.put(key, it) }
+        val prefixSuggestions = cachedPrefixSuggestions(key)
+        return if (prefixSuggestions == null) remote else remote.startWith(prefixSuggestions)
+    }
+
+    private fun cachedPrefixSuggestions(key: String): List<SuggestionItem>? {
+        for (end in key.length - 1 downTo 1) {
+            val cached = googleCache.get(key.substring(0, end)) ?: continue
+            val matching = cached.filter { it.title.toLowerCase(Locale.ROOT).startsWith(key) }
+            return if (matching.isEmpty()) null else matching
+        }
+        return null
+    }
+
+    /**
+     * Ends a source at [deadlineMs] with what it emitted so far, or no suggestions, so that a slow
+     * source holds up neither the others nor the next query.
+     */
+    private fun Flowable<List<SuggestionItem>>.withDeadline(deadlineMs: Long): Flowable<List<SuggestionItem>> {
+        return takeUntil(Flowable.timer(deadlineMs, MILLISECONDS, schedulerProvider.pool))
+                .defaultIfEmpty(emptyList())
+    }
 
     /**
      * Converts a stream of strings into stream of list of suggestions items collated from device'c
@@ -96,14 +163,16 @@ constructor(
                     .observeOn(schedulerProvider.pool)
                     .compose(emptyStringFilter())
                     .switchMap { query ->
-                        val deviceSuggestions = deviceSuggestions().map { COPY to it }
-                        val googleSuggestions = Flowable.just(query)
-                                .observeOn(schedulerProvider.io)
-                                .compose(googleTransformer())
+                        val deviceSuggestions = deviceSuggestions()
+                                .withDeadline(COPY_DEADLINE_MS)
+                                .map { COPY to it }
+                        val googleSuggestions = googleSuggestions(query)
+                                .withDeadline(GOOGLE_DEADLINE_MS)
                                 .map { GOOGLE to it }
                                 .observeOn(schedulerProvider.pool)
                         val historySuggestions = Flowable.just(query)
                                 .compose(historyTransformer())
+                                .withDeadline(HISTORY_DEADLINE_MS)
                                 .map { HISTORY to it }
                         Flowable.mergeArray(
                                 deviceSuggestions,
@@ -130,38 +199,48 @@ constructor(
     }
 
     /**
-     * Fetches suggestions from Google and converts it to {@link GoogleSuggestionItem}
+     * Fetches suggestions from [suggestionSource] and converts them to [GoogleSuggestionItem]s. Being
+     * offline is checked on every query, as connectivity changes while the user types.
      */
-    private fun googleTransformer(): FlowableTransformer<String, List<SuggestionItem>> {
-        return FlowableTransformer { upstream ->
-            if (!Utils.isOnline(application)) {
-                Flowable.just(emptyList())
-            } else upstream
-                    .compose(toV2Transformer(suggestionsTransformer(5)))
-                    .doOnError(Timber::e)
-                    .map<List<SuggestionItem>> {
-                        it.map { query -> GoogleSuggestionItem(query) }
-                    }.onErrorReturn { emptyList() }
+    private fun remoteSuggestions(query: String): List<SuggestionItem> {
+        if (!Utils.isOnline(application)) {
+            return emptyList()
+        }
+        return try {
+            suggestionSource.suggestions(query, GOOGLE_SUGGESTIONS).map { GoogleSuggestionItem(it) }
+        } catch (e: Exception) {
+            Timber.e(e)
+            emptyList()
         }
     }
 
     /**
-     * Fetches matching items from History database and converts them to list of suggestions.
+     * Looks up matching items in [HistorySuggestionIndex] and converts them to list of suggestions.
+     * The index answers from memory, so every query is looked up without debouncing.
      */
     private fun historyTransformer(): FlowableTransformer<String, List<SuggestionItem>> {
         return FlowableTransformer { upstream ->
-            upstream.debounce(suggestionsDebounce, MILLISECONDS)
-                    .switchMap { toV2Flowable(historyRepository.search(it)) }
-                    .map<List<SuggestionItem>> { suggestions ->
-                        suggestions.asSequence()
-                                .map { website ->
-                                    HistorySuggestionItem(
-                                            website,
-                                            website.safeLabel(),
-                                            website.url
-                                    )
-                                }.take(4).toList()
-                    }.onErrorReturn { emptyList() }
+            upstream.map<List<SuggestionItem>> { query ->
+                historySuggestionIndex.search(query, HISTORY_SUGGESTIONS).map { website ->
+                    HistorySuggestionItem(
+                            website,
+                            website.safeLabel(),
+                            website.url
+                    )
+                }
+            }.onErrorReturn { emptyList() }
         }
     }
+
+    companion object {
+        private const val HISTORY_SUGGESTIONS = 4
+        private const val GOOGLE_SUGGESTIONS = 5
+        private const val GOOGLE_CACHE_SIZE = 32
+        internal const val GOOGLE_DELAY_MS = 150L
+        private const val COPY_CACHE_MS = 30_000L
+
+        private const val COPY_DEADLINE_MS = 500L
+        private const val HISTORY_DEADLINE_MS = 500L
+        internal const val GOOGLE_DEADLINE_MS = 2_000L
+    }
 }
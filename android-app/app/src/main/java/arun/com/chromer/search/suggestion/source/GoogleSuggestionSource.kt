@@ -0,0 +1,64 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.search.suggestion.source
+
+import org.json.JSONArray
+import org.json.JSONException
+import java.io.IOException
+import java.net.HttpURLConnection
+import java.net.URL
+import java.net.URLEncoder
+import javax.inject.Inject
+
+/**
+ * Completions from Google's suggest endpoint, or from any server at [endpoint] that answers in its
+ * format: a JSON array of the query and an array of completions.
+ */
+class GoogleSuggestionSource(private val endpoint: String) : SuggestionSource {
+
+    @Inject
+    constructor() : this(ENDPOINT)
+
+    override fun suggestions(query: String, limit: Int): List<String> {
+        val connection = URL(endpoint + URLEncoder.encode(query, UTF8)).openConnection() as HttpURLConnection
+        try {
+            connection.connectTimeout = TIMEOUT_MS
+            connection.readTimeout = TIMEOUT_MS
+            if (connection.responseCode != HttpURLConnection.HTTP_OK) {
+                throw IOException("Suggestions request failed with ${connection.responseCode}")
+            }
+            val body = connection.inputStream.bufferedReader(Charsets.UTF_8).use { it.readText() }
+            val completions = try {
+                JSONArray(body).getJSONArray(1)
+            } catch (e: JSONException) {
+                throw IOException("Malformed suggestions", e)
+            }
+            return (0 until minOf(limit, completions.length())).map { completions.getString(it) }
+        } finally {
+            connection.disconnect()
+        }
+    }
+
+    companion object {
+        private const val ENDPOINT = "https://suggestqueries.google.com/complete/search?client=firefox&oe=utf-8&q="
+        private const val UTF8 = "UTF-8"
+        private const val TIMEOUT_MS = 5_000
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.search.suggestion.source
+
+import java.io.IOException
+
+/**
+ * A remote provider of completions for what the user is typing, such as a search engine's suggest
+ * endpoint.
+ */
+interface SuggestionSource {
+    /**
+     * Returns at most [limit] completions for [query]. Blocks on the network, so it is called on the
+     * io scheduler.
+     */
+    @Throws(IOException::class)
+    fun suggestions(query: String, limit: Int): List<String>
+}
@@ -15,7 +15,6 @@ import io.reactivex.BackpressureStrategy.LATEST
 import io.reactivex.Flowable
 import io.reactivex.Observable
 import timber.log.Timber
-import java.util.concurrent.TimeUnit.MILLISECONDS
 import javax.inject.Inject
 
 data class SuggestionResult(
@@ -40,11 +39,12 @@ constructor(
     val suggestions: Observable<SuggestionResult> = suggestionsSubject.hide()
 
     fun registerSearch(queryObservable: Observable<String>) {
+        // Each query replaces the last one. Sources that are slow to answer are delayed and cached
+        // in SuggestionsEngine, so queries are not debounced here.
         queryObservable
                 .toFlowable(LATEST)
-                .debounce(200, MILLISECONDS, schedulerProvider.pool)
                 .doOnNext { Timber.d(it) }
-                .flatMap { query ->
+                .switchMap { query ->
                     Flowable.just(query)
                             .compose(suggestionsEngine.suggestionsTransformer())
                             .publish(suggestionsEngine.distinctSuggestionsPublishSelector())
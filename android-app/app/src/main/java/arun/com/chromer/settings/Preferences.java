@@ -85,11 +85,15 @@ public class Preferences {
     public static final String USE_WEBVIEW_PREF = "use_webview_pref";
     public static final String MINIMIZE_BEHAVIOR_PREFERENCE = "minimize_behavior_preference";
     public static final String MINIMIZE_BEHAVIOR_PREFERENCE_KEY = "2";
+    public static final String HISTORY_MAX_ROWS = "history_max_rows_pref";
+    public static final String HISTORY_MAX_AGE_DAYS = "history_max_age_pref";
+    public static final String HISTORY_KEEP_BOOKMARKED = "history_keep_bookmarked_pref";
     private static final String WEB_HEAD_FAVICON = "webhead_favicons_pref";
     private static final String PER_APP_SETTINGS = "blacklist_preference";
     private static final String FIRST_RUN = "firstrun_3";
     private static final String SECONDARY_PREF = "secondary_preference";
     private static final String FAV_SHARE_PREF = "fav_share_preference";
+    private static final String LAST_HISTORY_COMPACTION = "last_history_compaction";
     // Singleton instance
     private static Preferences INSTANCE;
 
@@ -271,6 +275,32 @@ public class Preferences {
         getDefaultSharedPreferences().edit().putBoolean(INCOGNITO_MODE, preference).apply();
     }
 
+    /**
+     * Most history entries to keep, 0 for no limit.
+     */
+    public int historyMaxRows() {
+        return parseInt(getDefaultSharedPreferences().getString(HISTORY_MAX_ROWS, "0"));
+    }
+
+    /**
+     * Days after which history entries are removed, 0 to keep them regardless of age.
+     */
+    public int historyMaxAgeDays() {
+        return parseInt(getDefaultSharedPreferences().getString(HISTORY_MAX_AGE_DAYS, "0"));
+    }
+
+    public boolean historyKeepBookmarked() {
+        return getDefaultSharedPreferences().getBoolean(HISTORY_KEEP_BOOKMARKED, true);
+    }
+
+    public long lastHistoryCompaction() {
+        return getDefaultSharedPreferences().getLong(LAST_HISTORY_COMPACTION, 0);
+    }
+
+    public void lastHistoryCompaction(long time) {
+        getDefaultSharedPreferences().edit().putLong(LAST_HISTORY_COMPACTION, time).apply();
+    }
+
     public void fullIncognitoMode(boolean preference) {
         getDefaultSharedPreferences().edit().putBoolean(FULL_INCOGNITO_MODE, preference).apply();
     }
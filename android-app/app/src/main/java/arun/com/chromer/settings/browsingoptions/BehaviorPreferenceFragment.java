@@ -32,13 +32,18 @@ import com.mikepenz.community_material_typeface_library.CommunityMaterial;
 import com.mikepenz.iconics.IconicsDrawable;
 
 import arun.com.chromer.R;
+import arun.com.chromer.data.history.HistoryCompactionJob;
 import arun.com.chromer.perapp.PerAppSettingsActivity;
 import arun.com.chromer.settings.Preferences;
 import arun.com.chromer.settings.preferences.BasePreferenceFragment;
+import arun.com.chromer.settings.widgets.IconListPreference;
 import arun.com.chromer.settings.widgets.IconSwitchPreference;
 import arun.com.chromer.util.Utils;
 
 import static arun.com.chromer.settings.Preferences.AGGRESSIVE_LOADING;
+import static arun.com.chromer.settings.Preferences.HISTORY_KEEP_BOOKMARKED;
+import static arun.com.chromer.settings.Preferences.HISTORY_MAX_AGE_DAYS;
+import static arun.com.chromer.settings.Preferences.HISTORY_MAX_ROWS;
 import static arun.com.chromer.settings.Preferences.MERGE_TABS_AND_APPS;
 import static arun.com.chromer.settings.Preferences.PER_APP_PREFERENCE_DUMMY;
 
@@ -47,6 +52,11 @@ import static arun.com.chromer.settings.Preferences.PER_APP_PREFERENCE_DUMMY;
  */
 public class BehaviorPreferenceFragment extends BasePreferenceFragment {
 
+    private final String[] SUMMARY_GROUP = new String[]{
+            HISTORY_MAX_ROWS,
+            HISTORY_MAX_AGE_DAYS
+    };
+
     private IconSwitchPreference mergeTabsPreference;
 
     public BehaviorPreferenceFragment() {
@@ -66,7 +76,7 @@ public class BehaviorPreferenceFragment extends BasePreferenceFragment {
         addPreferencesFromResource(R.xml.behavior_preferences);
         setupMergeTabsPreference();
         setupBlacklistPreference();
-
+        setupHistoryPreferences();
     }
 
     private void setupBlacklistPreference() {
@@ -88,6 +98,31 @@ public class BehaviorPreferenceFragment extends BasePreferenceFragment {
         }
     }
 
+    private void setupHistoryPreferences() {
+        final int materialLight = ContextCompat.getColor(getActivity(), R.color.material_dark_light);
+        final IconListPreference maxRowsPreference = (IconListPreference) findPreference(HISTORY_MAX_ROWS);
+        if (maxRowsPreference != null) {
+            maxRowsPreference.setIcon(new IconicsDrawable(getActivity())
+                    .icon(CommunityMaterial.Icon.cmd_history)
+                    .color(materialLight)
+                    .sizeDp(24));
+        }
+        final IconListPreference maxAgePreference = (IconListPreference) findPreference(HISTORY_MAX_AGE_DAYS);
+        if (maxAgePreference != null) {
+            maxAgePreference.setIcon(new IconicsDrawable(getActivity())
+                    .icon(CommunityMaterial.Icon.cmd_calendar)
+                    .color(materialLight)
+                    .sizeDp(24));
+        }
+        final IconSwitchPreference keepBookmarkedPreference = (IconSwitchPreference) findPreference(HISTORY_KEEP_BOOKMARKED);
+        if (keepBookmarkedPreference != null) {
+            keepBookmarkedPreference.setIcon(new IconicsDrawable(getActivity())
+                    .icon(CommunityMaterial.Icon.cmd_bookmark)
+                    .color(materialLight)
+                    .sizeDp(24));
+        }
+    }
+
     private void setupMergeTabsPreference() {
         mergeTabsPreference = (IconSwitchPreference) findPreference(MERGE_TABS_AND_APPS);
         if (mergeTabsPreference != null) {
@@ -116,6 +151,7 @@ public class BehaviorPreferenceFragment extends BasePreferenceFragment {
         if (!Utils.isLollipopAbove()) {
             mergeTabsPreference.setVisible(false);
         }
+        updatePreferenceSummary(SUMMARY_GROUP);
     }
 
     @Override
@@ -124,6 +160,10 @@ public class BehaviorPreferenceFragment extends BasePreferenceFragment {
             if (Preferences.get(getContext()).aggressiveLoading()) {
                 mergeTabsPreference.setChecked(true);
             }
+        } else if (key.equalsIgnoreCase(HISTORY_MAX_ROWS) || key.equalsIgnoreCase(HISTORY_MAX_AGE_DAYS)) {
+            updatePreferenceSummary(key);
+            // Picks up a newly set limit without waiting for the next start.
+            HistoryCompactionJob.Companion.enqueueIfDue(getContext());
         }
     }
 }
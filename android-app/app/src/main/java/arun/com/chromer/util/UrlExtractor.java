@@ -0,0 +1,318 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the URLs in free text in a single pass, matching what the liberal URL regex previously
+ * used by {@link Utils#findURLs(String)} matched, without its backtracking.
+ * <p>
+ * A URL starts at a word boundary with a scheme ({@code scheme:/}, {@code scheme://}, {@code scheme:x}),
+ * {@code www.} (optionally numbered) or a domain name followed by {@code /}. It then runs over
+ * characters that are not whitespace or {@code <>}, and over parentheses nested at most two
+ * deep, and ends on the last character that is not trailing punctuation, or on a closing
+ * parenthesis. Unicode spaces also end a URL, as they do for the platform regex.
+ */
+public final class UrlExtractor {
+    private static final String TRAILING_PUNCTUATION = "`!()[]{};:'\".,<>?«»“”‘’";
+
+    private final CharSequence text;
+    private final int length;
+    // Ends of the body scanned from a given start, or -1, as several starts share one body.
+    private final Map<Integer, Integer> bodyEnds = new HashMap<>();
+    private int wordRunStart = -1;
+    private int wordRunEnd = -1;
+    private int domainRunStart = -1;
+    private int domainRunEnd = -1;
+    private int domainDot = -1;
+
+    private UrlExtractor(CharSequence text) {
+        this.text = text;
+        this.length = text.length();
+    }
+
+    /**
+     * Returns the URLs in {@code text} in order. URLs without a scheme are prefixed with
+     * {@code http://}.
+     */
+    @NonNull
+    public static List<String> findUrls(@Nullable CharSequence text) {
+        final List<String> urls = new ArrayList<>();
+        if (text == null) {
+            return urls;
+        }
+        final UrlExtractor extractor = new UrlExtractor(text);
+        int start = 0;
+        while (start < extractor.length) {
+            final int end = extractor.matchAt(start);
+            if (end < 0) {
+                start++;
+                continue;
+            }
+            final String url = text.subSequence(start, end).toString();
+            urls.add(hasScheme(url) ? url : "http://" + url);
+            start = end;
+        }
+        return urls;
+    }
+
+    /**
+     * Returns the end of the URL starting at {@code start}, or -1 if none does.
+     */
+    private int matchAt(int start) {
+        if (isWord(start - 1) == isWord(start)) {
+            return -1;
+        }
+        int end = matchScheme(start);
+        if (end < 0) {
+            end = matchWww(start);
+        }
+        if (end < 0) {
+            end = matchDomain(start);
+        }
+        return end;
+    }
+
+    private int matchScheme(int start) {
+        if (!isAsciiLetter(charAt(start))) {
+            return -1;
+        }
+        if (start >= wordRunEnd) {
+            wordRunStart = start;
+            wordRunEnd = start;
+            while (wordRunEnd < length && (isAsciiWord(text.charAt(wordRunEnd)) || text.charAt(wordRunEnd) == '-')) {
+                wordRunEnd++;
+            }
+        }
+        final int colon = wordRunEnd;
+        if (colon - start < 2 || charAt(colon) != ':') {
+            return -1;
+        }
+        final int afterColon = colon + 1;
+        int slashes = 0;
+        while (slashes < 3 && charAt(afterColon + slashes) == '/') {
+            slashes++;
+        }
+        if (slashes == 0) {
+            final char c = charAt(afterColon);
+            return isAsciiLetter(c) || isAsciiDigit(c) || c == '%' ? bodyEnd(afterColon + 1) : -1;
+        }
+        // Slashes left over can start the body.
+        for (; slashes > 0; slashes--) {
+            final int end = bodyEnd(afterColon + slashes);
+            if (end >= 0) {
+                return end;
+            }
+        }
+        return -1;
+    }
+
+    private int matchWww(int start) {
+        if (start + 3 > length || !regionMatchesIgnoreCase(start, "www")) {
+            return -1;
+        }
+        int i = start + 3;
+        final int digitsEnd = Math.min(i + 3, length);
+        while (i < digitsEnd && isAsciiDigit(text.charAt(i))) {
+            i++;
+        }
+        return charAt(i) == '.' ? bodyEnd(i + 1) : -1;
+    }
+
+    /**
+     * Matches a run of letters, digits, dots and dashes that ends in a dot, a top level domain of
+     * two to four letters and a slash.
+     */
+    private int matchDomain(int start) {
+        if (!isDomainChar(charAt(start))) {
+            return -1;
+        }
+        if (start >= domainRunEnd) {
+            domainRunStart = start;
+            domainRunEnd = start;
+            while (domainRunEnd < length && isDomainChar(text.charAt(domainRunEnd))) {
+                domainRunEnd++;
+            }
+            domainDot = -1;
+            if (charAt(domainRunEnd) == '/') {
+                // The latest dot wins, as the regex gives back as little of the run as it can.
+                for (int tld = 2; tld <= 4 && domainDot < 0; tld++) {
+                    final int dot = domainRunEnd - tld - 1;
+                    if (dot >= domainRunStart && text.charAt(dot) == '.' && allAsciiLetters(dot + 1, domainRunEnd)) {
+                        domainDot = dot;
+                    }
+                }
+            }
+        }
+        return start < domainDot ? bodyEnd(domainRunEnd + 1) : -1;
+    }
+
+    /**
+     * Returns the end of the longest body starting at {@code from}: at least one character or
+     * parenthesized group, followed by a final one that is not trailing punctuation.
+     */
+    private int bodyEnd(int from) {
+        final Integer known = bodyEnds.get(from);
+        if (known != null) {
+            return known;
+        }
+        int end = -1;
+        int i = from;
+        while (i < length) {
+            final char c = text.charAt(i);
+            if (c == '(') {
+                final int groupEnd = groupEnd(i);
+                if (groupEnd < 0) {
+                    break;
+                }
+                if (i > from) {
+                    end = groupEnd;
+                }
+                i = groupEnd;
+            } else if (isBodyChar(c)) {
+                if (i > from && TRAILING_PUNCTUATION.indexOf(c) < 0) {
+                    end = i + 1;
+                }
+                i++;
+            } else {
+                break;
+            }
+        }
+        bodyEnds.put(from, end);
+        return end;
+    }
+
+    /**
+     * Returns the end of the group of parentheses opening at {@code open}, which may hold
+     * non-empty groups but no deeper, or -1 if it is not closed so.
+     */
+    private int groupEnd(int open) {
+        int i = open + 1;
+        while (i < length) {
+            final char c = text.charAt(i);
+            if (c == ')') {
+                return i + 1;
+            } else if (c == '(') {
+                int inner = i + 1;
+                while (inner < length && isBodyChar(text.charAt(inner))) {
+                    inner++;
+                }
+                if (inner == i + 1 || charAt(inner) != ')') {
+                    return -1;
+                }
+                i = inner + 1;
+            } else if (isBodyChar(c)) {
+                i++;
+            } else {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Whether {@code url} starts with word characters and {@code ://}, and has no line breaks.
+     */
+    private static boolean hasScheme(String url) {
+        int i = 0;
+        while (i < url.length() && isAsciiWord(url.charAt(i))) {
+            i++;
+        }
+        if (i == 0 || !url.startsWith("://", i)) {
+            return false;
+        }
+        for (int j = i + 3; j < url.length(); j++) {
+            final char c = url.charAt(j);
+            if (c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private char charAt(int index) {
+        return index >= 0 && index < length ? text.charAt(index) : '\0';
+    }
+
+    private boolean isWord(int index) {
+        if (index < 0 || index >= length) {
+            return false;
+        }
+        final char c = text.charAt(index);
+        if (c == '_' || Character.isLetterOrDigit(c)) {
+            return true;
+        }
+        // Accents combining with a letter or digit are part of its word.
+        int base = index;
+        while (base >= 0 && Character.getType(text.charAt(base)) == Character.NON_SPACING_MARK) {
+            base--;
+        }
+        return base < index && base >= 0 && Character.isLetterOrDigit(text.charAt(base));
+    }
+
+    private boolean regionMatchesIgnoreCase(int start, String lowerCase) {
+        for (int i = 0; i < lowerCase.length(); i++) {
+            if (Character.toLowerCase(text.charAt(start + i)) != lowerCase.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean allAsciiLetters(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!isAsciiLetter(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isBodyChar(char c) {
+        return c != '(' && c != ')' && c != '<' && c != '>' && !isSpace(c);
+    }
+
+    private static boolean isSpace(char c) {
+        return Character.isWhitespace(c) || Character.isSpaceChar(c);
+    }
+
+    private static boolean isDomainChar(char c) {
+        return isAsciiLetter(c) || isAsciiDigit(c) || c == '.' || c == '-';
+    }
+
+    private static boolean isAsciiWord(char c) {
+        return isAsciiLetter(c) || isAsciiDigit(c) || c == '_';
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
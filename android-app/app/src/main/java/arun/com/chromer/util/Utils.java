@@ -58,8 +58,6 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import arun.com.chromer.R;
 import arun.com.chromer.browsing.customtabs.CustomTabs;
@@ -99,21 +97,7 @@ public class Utils {
 
     @NonNull
     public static List<String> findURLs(@Nullable String string) {
-        if (string == null) {
-            return new ArrayList<>();
-        }
-        final List<String> links = new ArrayList<>();
-        final Matcher m = Pattern.compile("\\b((?:[a-z][\\w-]+:(?:/{1,3}|[a-z0-9%])|www\\d{0,3}[.]|[a-z0-9.\\-]+[.][a-z]{2,4}/)(?:[^\\s()<>]+|\\(([^\\s()<>]+|(\\([^\\s()<>]+\\)))*\\))+(?:\\(([^\\s()<>]+|(\\([^\\s()<>]+\\)))*\\)|[^\\s`!()\\[\\]{};:'\".,<>?«»“”‘’]))", Pattern.CASE_INSENSITIVE)
-                .matcher(string);
-        while (m.find()) {
-            String url = m.group();
-            if (!url.toLowerCase().matches("^\\w+://.*")) {
-                url = "http://" + url;
-            }
-            links.add(url);
-        }
-
-        return links;
+        return UrlExtractor.findUrls(string);
     }
 
     public static boolean isPackageInstalled(@NonNull Context c, @Nullable String pkgName) {
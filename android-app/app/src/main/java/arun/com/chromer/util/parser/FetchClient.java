@@ -0,0 +1,135 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.util.parser;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.chimbori.crux.urls.CruxURL;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import rx.Observable;
+import timber.log.Timber;
+
+/**
+ * Fetches website metadata for the whole app. Redirects are followed by the metadata request
+ * itself and remembered in a {@link RedirectCache}, connections are left to be kept alive between
+ * requests to a host, and concurrent requests for the same page share a single fetch.
+ */
+@Singleton
+public class FetchClient {
+    // Fetches in progress, by normalized url.
+    private final ConcurrentHashMap<String, Observable<HeadMetadata>> inFlight = new ConcurrentHashMap<>();
+    private final RedirectCache redirectCache;
+
+    @Inject
+    FetchClient(RedirectCache redirectCache) {
+        this.redirectCache = redirectCache;
+    }
+
+    /**
+     * Emits the metadata of the page at {@code url}, or completes without it if the url is not a
+     * web page or could not be fetched. The fetch starts on subscription, on the subscriber's
+     * thread, and is shared with any subscriber for the same page until it completes.
+     */
+    @NonNull
+    public Observable<HeadMetadata> headMetadata(@NonNull final String url) {
+        return headMetadata(url, null, null);
+    }
+
+    /**
+     * {@link #headMetadata(String)} requested only if the page has changed since it was last
+     * fetched with the validators {@code etag} and {@code lastModified}. Emits {@link
+     * HeadMetadata#notModified} metadata if it has not.
+     */
+    @NonNull
+    public Observable<HeadMetadata> headMetadata(@NonNull final String url,
+                                                 @Nullable final String etag,
+                                                 @Nullable final String lastModified) {
+        final boolean conditional = etag != null || lastModified != null;
+        // A conditional fetch can not stand in for a full one.
+        final String key = conditional ? "conditional " + normalize(url) : normalize(url);
+        // Registered on subscription, so a fetch that is never subscribed is never shared.
+        return Observable.defer(() -> {
+            final Observable<HeadMetadata> shared = inFlight.get(key);
+            if (shared != null) {
+                return shared;
+            }
+            final AtomicReference<Observable<HeadMetadata>> registered = new AtomicReference<>();
+            final Observable<HeadMetadata> fetch = Observable.fromCallable(() -> fetch(url, etag, lastModified))
+                    .filter(metadata -> metadata != null)
+                    // Only this fetch's own entry, a newer fetch of the page may have replaced it.
+                    .doAfterTerminate(() -> inFlight.remove(key, registered.get()))
+                    .cache();
+            registered.set(fetch);
+            final Observable<HeadMetadata> raced = inFlight.putIfAbsent(key, fetch);
+            return raced != null ? raced : fetch;
+        });
+    }
+
+    /**
+     * Returns the number of fetches in progress.
+     */
+    int inFlightCount() {
+        return inFlight.size();
+    }
+
+    @WorkerThread
+    @Nullable
+    private HeadMetadata fetch(@NonNull String url, @Nullable String etag, @Nullable String lastModified) {
+        try {
+            final CruxURL candidateUrl = CruxURL.parse(url);
+            if (candidateUrl != null && candidateUrl.resolveRedirects().isLikelyArticle()) {
+                return WebsiteUtilities.headMetadata(candidateUrl.toString(), redirectCache, etag, lastModified);
+            }
+        } catch (Exception e) {
+            Timber.e(e);
+        } catch (OutOfMemoryError e) {
+            Timber.e(e);
+        }
+        return null;
+    }
+
+    /**
+     * Returns {@code url} with its scheme and host lower cased, its default port and fragment
+     * removed and an empty path made {@code /}, so that urls of the same page share a fetch.
+     */
+    @NonNull
+    static String normalize(@NonNull String url) {
+        try {
+            final URL parsed = new URL(url.trim());
+            final int port = parsed.getPort() == parsed.getDefaultPort() ? -1 : parsed.getPort();
+            final String path = parsed.getPath().isEmpty() ? "/" : parsed.getPath();
+            final String query = parsed.getQuery() != null ? "?" + parsed.getQuery() : "";
+            return new URL(parsed.getProtocol(), parsed.getHost().toLowerCase(Locale.ROOT), port, path + query).toString();
+        } catch (MalformedURLException e) {
+            return url;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.util.parser;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Metadata of a web page, as read from its head by {@link HeadParser}. Urls are absolute.
+ */
+public class HeadMetadata {
+    /**
+     * Url of the page, which relative links were resolved against.
+     */
+    @NonNull
+    public final String url;
+    @Nullable
+    public String title;
+    @Nullable
+    public String description;
+    @Nullable
+    public String themeColor;
+    @Nullable
+    public String faviconUrl;
+    @Nullable
+    public String touchIconUrl;
+    @Nullable
+    public String canonicalUrl;
+    @Nullable
+    public String ampUrl;
+    /**
+     * Open Graph properties by name without the {@code og:} prefix, such as {@code title} or
+     * {@code image}. The first value of a property is kept.
+     */
+    @NonNull
+    public final Map<String, String> openGraph = new HashMap<>();
+    /**
+     * Bytes of the page read before the head ended or the byte budget ran out.
+     */
+    public int bytesRead;
+    /**
+     * Validators of the response, to request the page again only if it has changed.
+     */
+    @Nullable
+    public String etag;
+    @Nullable
+    public String lastModified;
+    /**
+     * True if the page has not changed since the validators sent with the request, in which case
+     * only the url and validators are set.
+     */
+    public boolean notModified;
+
+    HeadMetadata(@NonNull String url) {
+        this.url = url;
+    }
+
+    /**
+     * Returns the largest icon declared, preferring the touch icon, or {@code /favicon.ico} of the
+     * page's host if none is.
+     */
+    @Nullable
+    public String iconUrl() {
+        if (touchIconUrl != null) {
+            return touchIconUrl;
+        } else if (faviconUrl != null) {
+            return faviconUrl;
+        }
+        return HeadParser.resolve(url, "/favicon.ico");
+    }
+}
@@ -0,0 +1,562 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.util.parser;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads {@link HeadMetadata} from a web page as its bytes arrive, and stops reading at the end of
+ * its head or after a byte budget. It only tokenizes tags: the few values kept are copied and
+ * decoded once the head has been read, with the charset of the response or else the one the page
+ * declares, and nothing else of the page is held.
+ * <p>
+ * Tag syntax is ASCII, so bytes are tokenized before decoding. Charsets that are not ASCII
+ * compatible, such as UTF-16, are not supported.
+ */
+public final class HeadParser {
+    public static final int DEFAULT_BYTE_BUDGET = 128 * 1024;
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+    // Longer titles and attribute values are cut.
+    private static final int MAX_VALUE_LENGTH = 2 * 1024;
+
+    private static final byte[] HEAD = ascii("head");
+    private static final byte[] BODY = ascii("body");
+    private static final byte[] META = ascii("meta");
+    private static final byte[] LINK = ascii("link");
+    private static final byte[] BASE = ascii("base");
+    private static final byte[] TITLE = ascii("title");
+    private static final byte[] SCRIPT = ascii("script");
+    private static final byte[] STYLE = ascii("style");
+    private static final byte[] TITLE_END = ascii("</title");
+    private static final byte[] SCRIPT_END = ascii("</script");
+    private static final byte[] STYLE_END = ascii("</style");
+    private static final byte[] COMMENT_END = ascii("-->");
+
+    private static final String KEY_TITLE = "title";
+    private static final String KEY_BASE = "base";
+    private static final String KEY_DESCRIPTION = "description";
+    private static final String KEY_THEME_COLOR = "theme-color";
+    private static final String KEY_CANONICAL = "canonical";
+    private static final String KEY_AMP = "amphtml";
+    private static final String KEY_ICON = "icon";
+    private static final String KEY_TOUCH_ICON = "apple-touch-icon";
+    private static final String OPEN_GRAPH_PREFIX = "og:";
+
+    private final InputStream in;
+    private final int byteBudget;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private int bytesRead;
+    private boolean exhausted;
+
+    // The token being read: a tag or attribute name, an attribute value or a title.
+    private final byte[] token = new byte[MAX_VALUE_LENGTH];
+    private int tokenLength;
+
+    // Attributes of the current meta, link or base tag.
+    @Nullable
+    private String name, property, content, charset, httpEquiv, rel;
+    @Nullable
+    private byte[] rawContent, rawHref;
+
+    // Values kept by key, undecoded, the first one of each.
+    private final Map<String, byte[]> values = new HashMap<>();
+    @Nullable
+    private String declaredCharset;
+
+    private HeadParser(@NonNull InputStream in, int byteBudget) {
+        this.in = in;
+        this.byteBudget = byteBudget;
+    }
+
+    /**
+     * Reads the head of the page at {@code url} from {@code in}, which is not closed.
+     *
+     * @param charset Charset from the response headers, or null to use the one the page declares.
+     */
+    @NonNull
+    public static HeadMetadata parse(@NonNull InputStream in, @NonNull String url, @Nullable String charset,
+                                     int byteBudget) throws IOException {
+        final HeadParser parser = new HeadParser(in, byteBudget);
+        parser.readHead();
+        return parser.metadata(url, charset);
+    }
+
+    private void readHead() throws IOException {
+        int c;
+        while ((c = read()) >= 0) {
+            if (c != '<') {
+                continue;
+            }
+            c = read();
+            if (c == '!') {
+                skipDeclaration();
+            } else if (c == '?') {
+                skipTo('>');
+            } else if (c == '/') {
+                readName(read());
+                if (tokenIs(HEAD)) {
+                    return;
+                }
+                skipTo('>');
+            } else if (isAsciiLetter(c)) {
+                readName(c);
+                if (tokenIs(BODY)) {
+                    return;
+                } else if (tokenIs(META)) {
+                    readAttributes(true);
+                    onMeta();
+                } else if (tokenIs(LINK)) {
+                    readAttributes(true);
+                    onLink();
+                } else if (tokenIs(BASE)) {
+                    readAttributes(true);
+                    keep(KEY_BASE, rawHref);
+                } else if (tokenIs(TITLE)) {
+                    readAttributes(false);
+                    readRawText(TITLE_END, true);
+                    keep(KEY_TITLE, Arrays.copyOf(token, tokenLength));
+                } else if (tokenIs(SCRIPT)) {
+                    readAttributes(false);
+                    readRawText(SCRIPT_END, false);
+                } else if (tokenIs(STYLE)) {
+                    readAttributes(false);
+                    readRawText(STYLE_END, false);
+                } else {
+                    readAttributes(false);
+                }
+            }
+        }
+    }
+
+    private void onMeta() {
+        if (charset != null) {
+            declaredCharset = charset.trim();
+        } else if ("content-type".equalsIgnoreCase(httpEquiv) && content != null) {
+            final int index = content.toLowerCase(Locale.ROOT).indexOf("charset=");
+            if (index >= 0) {
+                declaredCharset = content.substring(index + "charset=".length()).trim();
+            }
+        }
+        final String key = name != null ? name : property;
+        if (key == null || rawContent == null) {
+            return;
+        }
+        final String lowerKey = key.trim().toLowerCase(Locale.ROOT);
+        if (lowerKey.equals(KEY_DESCRIPTION) || lowerKey.equals(KEY_THEME_COLOR) || lowerKey.startsWith(OPEN_GRAPH_PREFIX)) {
+            keep(lowerKey, rawContent);
+        }
+    }
+
+    private void onLink() {
+        if (rel == null || rawHref == null) {
+            return;
+        }
+        for (String type : rel.toLowerCase(Locale.ROOT).split("\\s+")) {
+            switch (type) {
+                case KEY_CANONICAL:
+                case KEY_AMP:
+                case KEY_ICON:
+                    keep(type, rawHref);
+                    break;
+                case KEY_TOUCH_ICON:
+                case "apple-touch-icon-precomposed":
+                    keep(KEY_TOUCH_ICON, rawHref);
+                    break;
+            }
+        }
+    }
+
+    private void keep(@NonNull String key, @Nullable byte[] value) {
+        if (value != null && !values.containsKey(key)) {
+            values.put(key, value);
+        }
+    }
+
+    /**
+     * Reads the attributes up to the end of the tag. When {@code collect} is set, those of meta,
+     * link and base tags are kept in the fields above.
+     */
+    private void readAttributes(boolean collect) throws IOException {
+        name = property = content = charset = httpEquiv = rel = null;
+        rawContent = rawHref = null;
+        while (true) {
+            int c = skipSpaces();
+            if (c < 0 || c == '>') {
+                return;
+            } else if (c == '/') {
+                continue;
+            }
+            tokenLength = 0;
+            while (c >= 0 && !isSpace(c) && c != '=' && c != '>' && c != '/') {
+                append(toLowerAscii(c));
+                c = read();
+            }
+            final String attribute = collect ? asciiToken() : null;
+            if (isSpace(c)) {
+                c = skipSpaces();
+            }
+            if (c != '=') {
+                unread(c);
+                continue;
+            }
+            readValue(skipSpaces());
+            if (attribute != null) {
+                collect(attribute);
+            }
+        }
+    }
+
+    private void collect(@NonNull String attribute) {
+        switch (attribute) {
+            case "name":
+                name = asciiToken();
+                break;
+            case "property":
+                property = asciiToken();
+                break;
+            case "charset":
+                charset = asciiToken();
+                break;
+            case "http-equiv":
+                httpEquiv = asciiToken();
+                break;
+            case "rel":
+                rel = asciiToken();
+                break;
+            case "content":
+                rawContent = Arrays.copyOf(token, tokenLength);
+                content = asciiToken();
+                break;
+            case "href":
+                rawHref = Arrays.copyOf(token, tokenLength);
+                break;
+        }
+    }
+
+    private void readValue(int c) throws IOException {
+        tokenLength = 0;
+        if (c == '"' || c == '\'') {
+            final int quote = c;
+            while ((c = read()) >= 0 && c != quote) {
+                append(c);
+            }
+        } else {
+            while (c >= 0 && !isSpace(c) && c != '>') {
+                append(c);
+                c = read();
+            }
+            unread(c);
+        }
+    }
+
+    private void readName(int c) throws IOException {
+        tokenLength = 0;
+        while (isAsciiLetter(c) || (c >= '0' && c <= '9') || c == '-' || c == ':') {
+            append(toLowerAscii(c));
+            c = read();
+        }
+        unread(c);
+    }
+
+    /**
+     * Reads up to and past {@code endTag}, keeping what came before it as the token if
+     * {@code keep} is set.
+     */
+    private void readRawText(@NonNull byte[] endTag, boolean keep) throws IOException {
+        tokenLength = 0;
+        int length = 0;
+        int matched = 0;
+        int c;
+        while ((c = read()) >= 0) {
+            if (keep) {
+                append(c);
+                length++;
+            }
+            final int lower = toLowerAscii(c);
+            matched = lower == endTag[matched] ? matched + 1 : lower == endTag[0] ? 1 : 0;
+            if (matched == endTag.length) {
+                if (keep) {
+                    tokenLength = Math.min(tokenLength, length - endTag.length);
+                }
+                skipTo('>');
+                return;
+            }
+        }
+    }
+
+    /**
+     * Skips a comment or a doctype, after the {@code <!} that opens it.
+     */
+    private void skipDeclaration() throws IOException {
+        int c = read();
+        if (c != '-' || (c = read()) != '-') {
+            if (c != '>') {
+                skipTo('>');
+            }
+            return;
+        }
+        int matched = 0;
+        while ((c = read()) >= 0) {
+            matched = c == COMMENT_END[matched] ? matched + 1 : c == '-' ? Math.min(matched, 2) : 0;
+            if (matched == COMMENT_END.length) {
+                return;
+            }
+        }
+    }
+
+    private void skipTo(int end) throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c >= 0 && c != end);
+    }
+
+    private int skipSpaces() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (isSpace(c));
+        return c;
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            if (exhausted || bytesRead >= byteBudget) {
+                return -1;
+            }
+            final int n = in.read(buffer, 0, Math.min(buffer.length, byteBudget - bytesRead));
+            if (n <= 0) {
+                exhausted = true;
+                return -1;
+            }
+            bytesRead += n;
+            position = 0;
+            limit = n;
+        }
+        return buffer[position++] & 0xff;
+    }
+
+    /**
+     * Steps back over {@code c}, which must be the byte just read.
+     */
+    private void unread(int c) {
+        if (c >= 0) {
+            position--;
+        }
+    }
+
+    private void append(int c) {
+        if (tokenLength < token.length) {
+            token[tokenLength++] = (byte) c;
+        }
+    }
+
+    private boolean tokenIs(@NonNull byte[] lowerCase) {
+        if (tokenLength != lowerCase.length) {
+            return false;
+        }
+        for (int i = 0; i < tokenLength; i++) {
+            if (token[i] != lowerCase[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @NonNull
+    private String asciiToken() {
+        final char[] chars = new char[tokenLength];
+        for (int i = 0; i < tokenLength; i++) {
+            chars[i] = (char) (token[i] & 0xff);
+        }
+        return new String(chars);
+    }
+
+    @NonNull
+    private HeadMetadata metadata(@NonNull String url, @Nullable String responseCharset) {
+        final Charset charset = charset(responseCharset != null ? responseCharset : declaredCharset);
+        final String base = values.containsKey(KEY_BASE) ? resolve(url, decode(KEY_BASE, charset)) : null;
+        final String baseUrl = base != null ? base : url;
+
+        final HeadMetadata metadata = new HeadMetadata(url);
+        metadata.bytesRead = bytesRead;
+        metadata.title = collapseSpaces(decode(KEY_TITLE, charset));
+        metadata.description = decode(KEY_DESCRIPTION, charset);
+        metadata.themeColor = decode(KEY_THEME_COLOR, charset);
+        metadata.faviconUrl = resolve(baseUrl, decode(KEY_ICON, charset));
+        metadata.touchIconUrl = resolve(baseUrl, decode(KEY_TOUCH_ICON, charset));
+        metadata.canonicalUrl = resolve(baseUrl, decode(KEY_CANONICAL, charset));
+        metadata.ampUrl = resolve(baseUrl, decode(KEY_AMP, charset));
+        for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+            if (entry.getKey().startsWith(OPEN_GRAPH_PREFIX)) {
+                metadata.openGraph.put(entry.getKey().substring(OPEN_GRAPH_PREFIX.length()),
+                        decode(entry.getKey(), charset));
+            }
+        }
+        if (metadata.title == null) {
+            metadata.title = metadata.openGraph.get("title");
+        }
+        if (metadata.canonicalUrl == null) {
+            metadata.canonicalUrl = resolve(baseUrl, metadata.openGraph.get("url"));
+        }
+        return metadata;
+    }
+
+    @Nullable
+    private String decode(@NonNull String key, @NonNull Charset charset) {
+        final byte[] value = values.get(key);
+        if (value == null) {
+            return null;
+        }
+        final String decoded = decodeEntities(new String(value, charset)).trim();
+        return decoded.isEmpty() ? null : decoded;
+    }
+
+    @NonNull
+    private static Charset charset(@Nullable String name) {
+        if (name != null) {
+            try {
+                return Charset.forName(name.replace("\"", "").replace("'", "").trim());
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+        return Charset.forName("UTF-8");
+    }
+
+    /**
+     * Returns {@code href} resolved against {@code base}, or null if either is not a valid url.
+     */
+    @Nullable
+    static String resolve(@NonNull String base, @Nullable String href) {
+        if (href == null) {
+            return null;
+        }
+        try {
+            return new URL(new URL(base), href.trim()).toString();
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Decodes numeric character references and the named ones pages commonly use in their head.
+     */
+    @NonNull
+    static String decodeEntities(@NonNull String text) {
+        int amp = text.indexOf('&');
+        if (amp < 0) {
+            return text;
+        }
+        final StringBuilder decoded = new StringBuilder(text.length());
+        int from = 0;
+        while (amp >= 0) {
+            final int semicolon = text.indexOf(';', amp);
+            if (semicolon < 0 || semicolon - amp > 10) {
+                break;
+            }
+            final String entity = text.substring(amp + 1, semicolon);
+            final int codePoint = codePoint(entity);
+            if (codePoint >= 0) {
+                decoded.append(text, from, amp).appendCodePoint(codePoint);
+                from = semicolon + 1;
+            }
+            amp = text.indexOf('&', amp + 1);
+        }
+        return decoded.append(text, from, text.length()).toString();
+    }
+
+    private static int codePoint(@NonNull String entity) {
+        try {
+            if (entity.startsWith("#x") || entity.startsWith("#X")) {
+                return checkedCodePoint(Integer.parseInt(entity.substring(2), 16));
+            } else if (entity.startsWith("#")) {
+                return checkedCodePoint(Integer.parseInt(entity.substring(1)));
+            }
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        switch (entity) {
+            case "amp":
+                return '&';
+            case "lt":
+                return '<';
+            case "gt":
+                return '>';
+            case "quot":
+                return '"';
+            case "apos":
+                return '\'';
+            case "nbsp":
+                return ' ';
+            case "ndash":
+                return '\u2013';
+            case "mdash":
+                return '\u2014';
+            case "hellip":
+                return '\u2026';
+            default:
+                return -1;
+        }
+    }
+
+    private static int checkedCodePoint(int codePoint) {
+        return Character.isValidCodePoint(codePoint) ? codePoint : -1;
+    }
+
+    @Nullable
+    private static String collapseSpaces(@Nullable String text) {
+        return text == null ? null : text.replaceAll("\\s+", " ");
+    }
+
+    private static boolean isSpace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    private static boolean isAsciiLetter(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static int toLowerAscii(int c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    @NonNull
+    private static byte[] ascii(@NonNull String text) {
+        final byte[] bytes = new byte[text.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) text.charAt(i);
+        }
+        return bytes;
+    }
+}
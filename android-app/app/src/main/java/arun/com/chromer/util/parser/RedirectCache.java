@@ -0,0 +1,272 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.util.parser;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import io.paperdb.Book;
+import io.paperdb.Paper;
+import timber.log.Timber;
+
+/**
+ * Remembers where short links redirect to, so that opening one again requests the final page
+ * directly instead of walking the redirects. Entries expire after {@link #TTL_MS} and only the most
+ * recently resolved {@link #MAX_ENTRIES} are kept, in a Paper book. Changes are saved to the book
+ * together, {@link #SAVE_DELAY_MS} after the first of them, on a background thread.
+ */
+@Singleton
+public class RedirectCache {
+    private static final String REDIRECT_BOOK = "REDIRECT_BOOK";
+    // Paper keys are file names, which urls are not, so the whole map is saved under one key.
+    private static final String REDIRECTS_KEY = "redirects";
+    private static final long TTL_MS = TimeUnit.DAYS.toMillis(7);
+    private static final int MAX_ENTRIES = 500;
+    private static final long SAVE_DELAY_MS = 5000;
+
+    @Nullable
+    private final Book book;
+    private final long ttlMs;
+    private final int maxEntries;
+    // Runs saves and deletes of the book one after the other, so a clear is never undone by a save
+    // of older entries. Null when nothing is saved.
+    @Nullable
+    private final ScheduledExecutorService saveExecutor;
+    // Loaded from the book on first use.
+    private Map<String, Redirect> redirects;
+    private int hitCount;
+    private int missCount;
+    private long savedMs;
+    private boolean saveScheduled;
+
+    @Inject
+    RedirectCache() {
+        this(Paper.book(REDIRECT_BOOK), TTL_MS, MAX_ENTRIES);
+    }
+
+    /**
+     * @param book Book to save redirects to, or null to keep them in memory only.
+     */
+    RedirectCache(@Nullable Book book, long ttlMs, int maxEntries) {
+        this.book = book;
+        this.ttlMs = ttlMs;
+        this.maxEntries = maxEntries;
+        this.saveExecutor = book != null ? Executors.newSingleThreadScheduledExecutor() : null;
+    }
+
+    /**
+     * Returns the url {@code url} was last seen to redirect to, or null if it is not known or has
+     * expired.
+     */
+    @Nullable
+    public synchronized String get(@NonNull String url) {
+        final Redirect redirect = redirects().get(url);
+        if (redirect == null || isExpired(redirect)) {
+            missCount++;
+            if (redirect != null) {
+                remove(url);
+            }
+            return null;
+        }
+        hitCount++;
+        savedMs += redirect.resolveMs;
+        Timber.d("Redirect cache hit for %s, saved %d ms", url, redirect.resolveMs);
+        return redirect.location;
+    }
+
+    /**
+     * Records that {@code url} redirects to {@code location}, which took {@code resolveMs} to find
+     * out.
+     */
+    public synchronized void put(@NonNull String url, @NonNull String location, long resolveMs) {
+        final Map<String, Redirect> redirects = redirects();
+        redirects.put(url, new Redirect(location, System.currentTimeMillis(), resolveMs));
+        if (redirects.size() > maxEntries) {
+            evict(redirects);
+        }
+        save();
+    }
+
+    public synchronized void remove(@NonNull String url) {
+        if (redirects().remove(url) != null) {
+            save();
+        }
+    }
+
+    /**
+     * Forgets every redirect, in memory and in the book.
+     */
+    public synchronized void clear() {
+        redirects = new HashMap<>();
+        if (saveExecutor != null) {
+            saveExecutor.execute(() -> {
+                try {
+                    book.destroy();
+                } catch (Exception e) {
+                    Timber.e(e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Hit and miss counts, and the redirect time the hits saved.
+     */
+    @NonNull
+    public synchronized String stats() {
+        return String.format(Locale.US, "hits=%d, misses=%d, saved=%d ms, size=%d/%d",
+                hitCount, missCount, savedMs, redirects().size(), maxEntries);
+    }
+
+    /**
+     * Returns true for hosts of link shortening services, whose redirects are worth remembering
+     * even when they are not permanent.
+     */
+    static boolean isShortener(@Nullable String url) {
+        if (url == null) {
+            return false;
+        }
+        final String host;
+        try {
+            host = new URL(url).getHost().toLowerCase(Locale.ROOT);
+        } catch (MalformedURLException e) {
+            return false;
+        }
+        switch (host) {
+            case "t.co":
+            case "bit.ly":
+            case "goo.gl":
+            case "tinyurl.com":
+            case "ow.ly":
+            case "buff.ly":
+            case "lnkd.in":
+            case "fb.me":
+            case "amzn.to":
+            case "trib.al":
+            case "dlvr.it":
+            case "is.gd":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean isExpired(@NonNull Redirect redirect) {
+        return System.currentTimeMillis() - redirect.resolvedAt >= ttlMs;
+    }
+
+    /**
+     * Removes expired entries, then the least recently resolved ones until the cap is met.
+     */
+    private void evict(@NonNull Map<String, Redirect> redirects) {
+        final Iterator<Redirect> iterator = redirects.values().iterator();
+        while (iterator.hasNext()) {
+            if (isExpired(iterator.next())) {
+                iterator.remove();
+            }
+        }
+        while (redirects.size() > maxEntries) {
+            String oldest = null;
+            long oldestResolvedAt = Long.MAX_VALUE;
+            for (Map.Entry<String, Redirect> entry : redirects.entrySet()) {
+                if (entry.getValue().resolvedAt < oldestResolvedAt) {
+                    oldest = entry.getKey();
+                    oldestResolvedAt = entry.getValue().resolvedAt;
+                }
+            }
+            redirects.remove(oldest);
+        }
+    }
+
+    @NonNull
+    private Map<String, Redirect> redirects() {
+        if (redirects == null) {
+            redirects = new HashMap<>();
+            if (book != null) {
+                try {
+                    redirects = book.read(REDIRECTS_KEY, redirects);
+                } catch (Exception e) {
+                    Timber.e(e);
+                    try {
+                        book.delete(REDIRECTS_KEY);
+                    } catch (Exception ignored) {
+                    }
+                }
+            }
+        }
+        return redirects;
+    }
+
+    /**
+     * Schedules the redirects to be written to the book, unless a write is already scheduled.
+     */
+    private void save() {
+        if (saveExecutor != null && !saveScheduled) {
+            saveScheduled = true;
+            saveExecutor.schedule(this::write, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void write() {
+        final Map<String, Redirect> snapshot;
+        synchronized (this) {
+            saveScheduled = false;
+            snapshot = new HashMap<>(redirects());
+        }
+        try {
+            book.write(REDIRECTS_KEY, snapshot);
+        } catch (Exception e) {
+            Timber.e(e);
+        }
+    }
+
+    /**
+     * Where a url redirected to, when, and how long the redirects took to follow.
+     */
+    static class Redirect {
+        String location;
+        long resolvedAt;
+        long resolveMs;
+
+        @SuppressWarnings("unused")
+        Redirect() {
+            // For Paper.
+        }
+
+        Redirect(@NonNull String location, long resolvedAt, long resolveMs) {
+            this.location = location;
+            this.resolvedAt = resolvedAt;
+            this.resolveMs = resolveMs;
+        }
+    }
+}
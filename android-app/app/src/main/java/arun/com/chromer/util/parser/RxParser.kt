@@ -20,7 +20,6 @@
 package arun.com.chromer.util.parser
 
 import androidx.core.util.Pair
-import arun.com.chromer.util.parser.WebsiteUtilities.headString
 import com.chimbori.crux.articles.Article
 import com.chimbori.crux.articles.ArticleExtractor
 import com.chimbori.crux.urls.CruxURL
@@ -32,34 +31,6 @@ import timber.log.Timber
  * Created by Arunkumar on 26-01-2017.
  */
 object RxParser {
-    /**
-     * Converts the given URL to its extracted article metadata form. The extraction is not performed
-     * if the given url is not a proper web url.
-     */
-    private val URL_TO_METADATA_MAPPER = { url: String ->
-        var article: Article? = null
-        try {
-            val expanded = WebsiteUtilities.unShortenUrl(url)
-            val candidateUrl = CruxURL.parse(expanded)
-            if (candidateUrl.resolveRedirects().isLikelyArticle) {
-                // We only need the head tag for meta data.
-                var webSiteString = headString(candidateUrl.toString())
-                article = ArticleExtractor
-                        .with(expanded, webSiteString)
-                        .extractMetadata()
-                        .article()
-                @Suppress("UNUSED_VALUE")
-                webSiteString = null
-            }
-        } catch (e: Exception) {
-            Timber.e(e)
-        } catch (e: OutOfMemoryError) {
-            Timber.e(e)
-        }
-        Pair(url, article)
-    }
-
-
     private val URL_TO_WEB_ARTICLE_PAIR_MAPPER = { url: String ->
         var article: Article? = null
         try {
@@ -80,10 +51,6 @@ object RxParser {
         Pair(url, article)
     }
 
-    fun parseUrl(url: String?): Observable<Pair<String, Article>> {
-        return Observable.just<String>(url).map(URL_TO_METADATA_MAPPER)
-    }
-
     fun parseArticle(url: String?): Observable<Pair<String, Article>> {
         return Observable.just<String>(url).map(URL_TO_WEB_ARTICLE_PAIR_MAPPER)
     }
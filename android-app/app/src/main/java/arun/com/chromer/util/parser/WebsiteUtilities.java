@@ -24,15 +24,14 @@ import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.Inflater;
 import java.util.zip.InflaterInputStream;
@@ -49,140 +48,177 @@ class WebsiteUtilities {
     // We will spoof as an iPad so that websites properly expose their shortcut icon. Even Google.com
     // does not provide bigger icons when we go as Android.
     private static final String USER_AGENT = "Mozilla/5.0 (iPad; CPU OS 6_0 like Mac OS X) AppleWebKit/536.26 (KHTML, like Gecko) Version/6.0 Mobile/10A5376e Safari/8536.25";
+    private static final int MAX_REDIRECTS = 5;
+    // Larger bodies are not worth reading to keep their connection.
+    private static final int DISCARD_LIMIT = 16 * 1024;
+    // Not in HttpURLConnection.
+    private static final int HTTP_PERMANENT_REDIRECT = 308;
 
     @WorkerThread
     static String htmlString(@NonNull final String url) throws IOException {
         final HttpURLConnection urlConnection = createUrlConnection(url, 10000);
         urlConnection.setInstanceFollowRedirects(true);
-        final String encoding = urlConnection.getContentEncoding();
-        final InputStream inputStream;
-        if (encoding != null && encoding.equalsIgnoreCase("gzip")) {
-            inputStream = new GZIPInputStream(urlConnection.getInputStream());
-        } else if (encoding != null && encoding.equalsIgnoreCase("deflate")) {
-            inputStream = new InflaterInputStream(urlConnection.getInputStream(), new Inflater(true));
-        } else {
-            inputStream = urlConnection.getInputStream();
-        }
+        final InputStream inputStream = decodedInputStream(urlConnection);
         final String enc = Converter.extractEncoding(urlConnection.getContentType());
         final String result = new Converter(url).grabStringFromInputStream(inputStream, enc);
         urlConnection.disconnect();
         return result;
     }
 
+    /**
+     * Reads the metadata in the head of the page at {@code url}, following redirects with the same
+     * request, or returns null if the url is not a web page. Reading stops where the head ends.
+     * Responses are closed rather than disconnected, so that their connections can be kept alive
+     * and reused for the next request to the host.
+     */
     @WorkerThread
-    static String headString(@NonNull final String url) throws IOException {
-        final HttpURLConnection urlConnection = createUrlConnection(url, 10000);
-        urlConnection.setInstanceFollowRedirects(true);
-        final String encoding = urlConnection.getContentEncoding();
-        final InputStream inputStream;
-        if (encoding != null && encoding.equalsIgnoreCase("gzip")) {
-            inputStream = new GZIPInputStream(urlConnection.getInputStream());
-        } else if (encoding != null && encoding.equalsIgnoreCase("deflate")) {
-            inputStream = new InflaterInputStream(urlConnection.getInputStream(), new Inflater(true));
-        } else {
-            inputStream = urlConnection.getInputStream();
-        }
-        final String enc = Converter.extractEncoding(urlConnection.getContentType());
-        final String result = new Converter(url).grabHeadTag(inputStream, enc);
-        urlConnection.disconnect();
-        try {
-            inputStream.close();
-        } catch (Exception ignored) {
-
-        }
-        return result;
+    @Nullable
+    static HeadMetadata headMetadata(@NonNull final String url) throws IOException {
+        return headMetadata(url, null, null, null, false);
     }
 
-    @NonNull
-    static String unShortenUrl(@NonNull String url) {
-        final int maxRedirects = 3;
-        String unShortenedUrl = url;
-        for (int i = 0; i < maxRedirects; i++) {
-            url = getRedirectUrl(url);
-            Timber.d("Redirect: %s", url);
-            if (url.equalsIgnoreCase(unShortenedUrl)) {
-                return unShortenedUrl;
+    /**
+     * {@link #headMetadata(String)} that requests the page {@code url} is known to redirect to in
+     * {@code redirectCache}, and remembers where short links and permanent redirects lead. If
+     * {@code etag} or {@code lastModified} are given the request is conditional, and a page that has
+     * not changed since gives {@link HeadMetadata#notModified} metadata.
+     */
+    @WorkerThread
+    @Nullable
+    static HeadMetadata headMetadata(@NonNull final String url,
+                                     @NonNull final RedirectCache redirectCache,
+                                     @Nullable final String etag,
+                                     @Nullable final String lastModified) throws IOException {
+        final String location = redirectCache.get(url);
+        if (location != null) {
+            try {
+                return headMetadata(location, null, etag, lastModified, true);
+            } catch (IOException e) {
+                Timber.d(e, "Cached redirect of %s failed", url);
+                redirectCache.remove(url);
             }
-            unShortenedUrl = url;
         }
-        return unShortenedUrl;
+        return headMetadata(url, redirectCache, etag, lastModified, false);
     }
 
-    @NonNull
-    private static String getRedirectUrl(@NonNull final String url) {
-        HttpURLConnection conn = null;
-        try {
-            conn = createUrlConnection(url, 10000);
-            conn.setInstanceFollowRedirects(false);
-            conn.setRequestMethod("HEAD");
-            conn.connect();
-            int responseCode = conn.getResponseCode();
-            if (responseCode >= 300 && responseCode < 400) {
-                return useDomainOfFirstArg4Second(url, conn.getHeaderField("Location"));
-            } else if (responseCode >= 200 && responseCode < 300) {
-                return url;
+    /**
+     * @param redirectCache Cache to record redirects of {@code url} in, if any.
+     * @param cached        Whether {@code url} came from the redirect cache, in which case error
+     *                      responses are thrown so that the original url can be requested instead.
+     */
+    @Nullable
+    private static HeadMetadata headMetadata(@NonNull final String url,
+                                             @Nullable final RedirectCache redirectCache,
+                                             @Nullable final String etag,
+                                             @Nullable final String lastModified,
+                                             final boolean cached) throws IOException {
+        final long start = System.nanoTime();
+        // When the last redirect was read, after which only the page itself is requested.
+        long resolved = start;
+        boolean permanent = true;
+        String location = url;
+        for (int redirects = 0; ; redirects++) {
+            final HttpURLConnection urlConnection = createUrlConnection(location, 10000);
+            // Followed here, as HttpURLConnection does not follow redirects across protocols.
+            urlConnection.setInstanceFollowRedirects(false);
+            if (etag != null) {
+                urlConnection.setRequestProperty("If-None-Match", etag);
+            }
+            if (lastModified != null) {
+                urlConnection.setRequestProperty("If-Modified-Since", lastModified);
+            }
+            final int responseCode = urlConnection.getResponseCode();
+            if (responseCode >= 300 && responseCode < 400 && responseCode != HttpURLConnection.HTTP_NOT_MODIFIED) {
+                final String redirect = HeadParser.resolve(location, urlConnection.getHeaderField("Location"));
+                discard(urlConnection);
+                if (redirect == null || redirects == MAX_REDIRECTS) {
+                    throw new IOException("Could not follow redirect from " + location);
+                }
+                Timber.d("Redirect: %s", redirect);
+                permanent &= responseCode == HttpURLConnection.HTTP_MOVED_PERM || responseCode == HTTP_PERMANENT_REDIRECT;
+                resolved = System.nanoTime();
+                location = redirect;
+                continue;
+            }
+            if (responseCode >= 400) {
+                discard(urlConnection);
+                if (cached) {
+                    throw new IOException(location + " responded " + responseCode);
+                }
+                return null;
+            }
+            if (redirectCache != null && redirects > 0 && (permanent || RedirectCache.isShortener(url))) {
+                redirectCache.put(url, location, TimeUnit.NANOSECONDS.toMillis(resolved - start));
+            }
+            final String responseEtag = urlConnection.getHeaderField("ETag");
+            final String responseLastModified = urlConnection.getHeaderField("Last-Modified");
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                discard(urlConnection);
+                final HeadMetadata metadata = new HeadMetadata(location);
+                metadata.notModified = true;
+                // A 304 need not repeat the validators, which then still hold.
+                metadata.etag = responseEtag != null ? responseEtag : etag;
+                metadata.lastModified = responseLastModified != null ? responseLastModified : lastModified;
+                return metadata;
             }
-        } catch (Exception ex) {
-            return url;
-        } finally {
-            if (conn != null) {
-                conn.disconnect();
+            if (!isHtml(urlConnection.getContentType())) {
+                discard(urlConnection);
+                return null;
+            }
+            final InputStream inputStream = decodedInputStream(urlConnection);
+            try {
+                final String contentType = urlConnection.getContentType();
+                final String charset = contentType != null && contentType.toLowerCase().contains("charset=")
+                        ? Converter.extractEncoding(contentType) : null;
+                final HeadMetadata metadata = HeadParser.parse(inputStream, location, charset, HeadParser.DEFAULT_BYTE_BUDGET);
+                metadata.etag = responseEtag;
+                metadata.lastModified = responseLastModified;
+                return metadata;
+            } finally {
+                inputStream.close();
             }
         }
-        return url;
     }
 
-    @NonNull
-    private static String useDomainOfFirstArg4Second(String urlForDomain, String path) {
-        if (path.startsWith("http"))
-            return path;
-
-        if ("favicon.ico".equals(path))
-            path = "/favicon.ico";
-
-        if (path.startsWith("//")) {
-            // wikipedia special case, see tests
-            if (urlForDomain.startsWith("https:"))
-                return "https:" + path;
-
-            return "http:" + path;
-        } else if (path.startsWith("/"))
-            return "http://" + extractHost(urlForDomain) + path;
-        else if (path.startsWith("../")) {
-            final int slashIndex = urlForDomain.lastIndexOf("/");
-            if (slashIndex > 0 && slashIndex + 1 < urlForDomain.length())
-                urlForDomain = urlForDomain.substring(0, slashIndex + 1);
-            return urlForDomain + path;
+    private static boolean isHtml(@Nullable String contentType) {
+        if (contentType == null) {
+            return true;
         }
-        return path;
+        final String type = contentType.toLowerCase();
+        return type.contains("html") || type.startsWith("text/plain");
     }
 
-    @NonNull
-    private static String extractHost(String url) {
-        return extractDomain(url, false);
+    /**
+     * Reads what is left of a short response, such as a redirect or an error page, and closes it so
+     * that the connection goes back to the pool.
+     */
+    private static void discard(@NonNull HttpURLConnection urlConnection) {
+        try {
+            final InputStream stream = urlConnection.getResponseCode() >= 400
+                    ? urlConnection.getErrorStream() : urlConnection.getInputStream();
+            if (stream != null) {
+                final byte[] buffer = new byte[Converter.K2];
+                int drained = 0;
+                int n;
+                while (drained < DISCARD_LIMIT && (n = stream.read(buffer)) >= 0) {
+                    drained += n;
+                }
+                stream.close();
+            }
+        } catch (IOException e) {
+            urlConnection.disconnect();
+        }
     }
 
     @NonNull
-    private static String extractDomain(String url, boolean aggressive) {
-        if (url.startsWith("http://"))
-            url = url.substring("http://".length());
-        else if (url.startsWith("https://"))
-            url = url.substring("https://".length());
-
-        if (aggressive) {
-            if (url.startsWith("www."))
-                url = url.substring("www.".length());
-
-            // strip mobile from start
-            if (url.startsWith("m."))
-                url = url.substring("m.".length());
+    private static InputStream decodedInputStream(@NonNull HttpURLConnection urlConnection) throws IOException {
+        final String encoding = urlConnection.getContentEncoding();
+        if (encoding != null && encoding.equalsIgnoreCase("gzip")) {
+            return new GZIPInputStream(urlConnection.getInputStream());
+        } else if (encoding != null && encoding.equalsIgnoreCase("deflate")) {
+            return new InflaterInputStream(urlConnection.getInputStream(), new Inflater(true));
         }
-
-        int slashIndex = url.indexOf("/");
-        if (slashIndex > 0)
-            url = url.substring(0, slashIndex);
-
-        return url;
+        return urlConnection.getInputStream();
     }
 
     /**
@@ -363,56 +399,6 @@ class WebsiteUtilities {
             return "";
         }
 
-        @NonNull
-        String grabHeadTag(@NonNull InputStream is, @Nullable String encoding) {
-            this.encoding = encoding;
-            // Http 1.1. standard is iso-8859-1 not utf8 :(
-            // but we force utf-8 as youtube assumes it ;)
-            if (this.encoding == null || this.encoding.isEmpty())
-                this.encoding = UTF8;
-
-            final StringBuilder headTagContents = new StringBuilder();
-
-            BufferedReader bufferedReader = null;
-            InputStreamReader inputStreamReader = null;
-            try {
-                inputStreamReader = new InputStreamReader(is, encoding);
-                bufferedReader = new BufferedReader(inputStreamReader);
-                String temp;
-                boolean insideHeadTag = false;
-                while ((temp = bufferedReader.readLine()) != null) {
-                    if (temp.contains("<head")) {
-                        insideHeadTag = true;
-                    }
-                    if (insideHeadTag) {
-                        headTagContents.append(temp);
-                    }
-                    if (temp.contains("</head>")) {
-                        // Exit
-                        break;
-                    }
-                }
-            } catch (IOException e) {
-                Timber.e(e);
-            } finally {
-                if (inputStreamReader != null) {
-                    try {
-                        inputStreamReader.close();
-                    } catch (Exception ignored) {
-
-                    }
-                }
-                if (bufferedReader != null) {
-                    try {
-                        bufferedReader.close();
-                    } catch (Exception ignored) {
-
-                    }
-                }
-            }
-            return headTagContents.toString();
-        }
-
         /**
          * This method detects the charset even if the first call only returns some
          * bytes. It will read until 4K bytes are reached and then try to determine
@@ -0,0 +1,74 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.data.history
+
+import arun.com.chromer.ChromerRobolectricSuite
+import arun.com.chromer.data.history.HistorySearchTest.Companion.insertRows
+import arun.com.chromer.data.history.HistorySearchTest.Row
+import arun.com.chromer.data.history.model.HistoryTable.TABLE_NAME
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * Time of a history search per keystroke as the history grows. Run with `-Pbenchmark`.
+ */
+class HistorySearchBenchmark : ChromerRobolectricSuite() {
+    private lateinit var historyStore: HistorySqlDiskStore
+
+    @Before
+    fun setUp() {
+        application.deleteDatabase(TABLE_NAME)
+        historyStore = HistorySqlDiskStore(application)
+    }
+
+    @After
+    fun tearDown() {
+        historyStore.close()
+        application.deleteDatabase(TABLE_NAME)
+    }
+
+    @Test
+    fun suggestionLatency() {
+        var inserted = 0
+        for (rows in BENCHMARK_ROWS) {
+            val now = System.currentTimeMillis()
+            insertRows(historyStore, (inserted until rows).map { i ->
+                Row("https://site$i.example.com/path/${i % 97}", "Page $i about topic ${i % 13}", 1 + i % 7, now - i * 1000L)
+            })
+            inserted = rows
+
+            // Keystrokes of a user typing a query, each one a fresh suggestion lookup.
+            val keystrokes = listOf("t", "to", "top", "topi", "topic", "topic 1", "topic 12")
+            keystrokes.forEach { historyStore.search(it).toBlocking().first() }
+            val start = System.nanoTime()
+            for (i in 0 until BENCHMARK_ROUNDS) {
+                keystrokes.forEach { historyStore.search(it).toBlocking().first() }
+            }
+            val perQueryMicros = (System.nanoTime() - start) / 1000 / (BENCHMARK_ROUNDS * keystrokes.size)
+            println("History search with $rows rows: ${perQueryMicros}us per keystroke")
+        }
+    }
+
+    companion object {
+        private val BENCHMARK_ROWS = listOf(1_000, 10_000, 100_000)
+        private const val BENCHMARK_ROUNDS = 5
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.data.history
+
+import arun.com.chromer.ChromerRobolectricSuite
+import arun.com.chromer.data.history.model.HistoryTable.*
+import arun.com.chromer.data.website.model.Website
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+
+class HistorySearchTest : ChromerRobolectricSuite() {
+    private lateinit var historyStore: HistorySqlDiskStore
+
+    @Before
+    fun setUp() {
+        application.deleteDatabase(TABLE_NAME)
+        historyStore = HistorySqlDiskStore(application)
+    }
+
+    @After
+    fun tearDown() {
+        historyStore.close()
+        application.deleteDatabase(TABLE_NAME)
+    }
+
+    @Test
+    fun queryIsPrefixTokenised() {
+        assertEquals("git* hub*", HistorySearch.matchQuery(HistorySearch.tokens("Git Hub")))
+        assertEquals("x* drop* table*", HistorySearch.matchQuery(HistorySearch.tokens("x'); DROP TABLE--")))
+        assertNull(HistorySearch.matchQuery(HistorySearch.tokens(" \"*' ")))
+    }
+
+    @Test
+    fun searchRanksByVisitsRecencyAndMatch() {
+        val now = System.currentTimeMillis()
+        insertRows(historyStore, listOf(
+                Row("https://example.com/github-mirror", "Mirror", 1, now - 30 * DAY_MS),
+                Row("https://github.com/", "GitHub", 20, now),
+                Row("https://gitlab.com/", "GitLab", 2, now - DAY_MS),
+                Row("https://news.ycombinator.com/", "Hacker News", 50, now)
+        ))
+
+        val results = historyStore.search("git").toBlocking().first().map { it.url }
+        assertEquals(listOf("https://github.com/", "https://gitlab.com/", "https://example.com/github-mirror"), results)
+        assertTrue(historyStore.search("'; DROP TABLE History; --").toBlocking().first().isEmpty())
+        assertEquals(4, historyStore.loadHistoryRange(10, 0).size)
+    }
+
+    @Test
+    fun searchFollowsInsertsAndDeletes() {
+        val website = Website("https://kotlinlang.org/docs/")
+        website.title = "Kotlin docs"
+        historyStore.insert(website).toBlocking().first()
+        assertEquals(1, historyStore.search("kot").toBlocking().first().size)
+
+        historyStore.delete(website).toBlocking().first()
+        assertTrue(historyStore.search("kot").toBlocking().first().isEmpty())
+    }
+
+    internal data class Row(val url: String, val title: String, val visits: Int, val created: Long)
+
+    companion object {
+        private const val DAY_MS = 24 * 60 * 60 * 1000L
+
+        internal fun insertRows(historyStore: HistorySqlDiskStore, rows: List<Row>) {
+            val db = historyStore.writableDatabase
+            db.beginTransaction()
+            try {
+                val statement = db.compileStatement("INSERT INTO $TABLE_NAME ($COLUMN_URL, $COLUMN_TITLE, $COLUMN_VISITED, $COLUMN_CREATED_AT) VALUES (?, ?, ?, ?)")
+                for (row in rows) {
+                    statement.bindString(1, row.url)
+                    statement.bindString(2, row.title)
+                    statement.bindLong(3, row.visits.toLong())
+                    statement.bindLong(4, row.created)
+                    statement.executeInsert()
+                }
+                statement.close()
+                db.setTransactionSuccessful()
+            } finally {
+                db.endTransaction()
+            }
+        }
+    }
+}
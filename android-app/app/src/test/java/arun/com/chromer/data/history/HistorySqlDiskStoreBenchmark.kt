@@ -0,0 +1,79 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.data.history
+
+import arun.com.chromer.ChromerRobolectricSuite
+import arun.com.chromer.data.history.HistorySqlDiskStoreTest.Companion.insertRows
+import arun.com.chromer.data.history.model.HistoryTable.TABLE_NAME
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * Time to load a page of history by offset and by keyset, at increasing depths. Run with
+ * `-Pbenchmark`.
+ */
+class HistorySqlDiskStoreBenchmark : ChromerRobolectricSuite() {
+    private lateinit var historyStore: HistorySqlDiskStore
+
+    @Before
+    fun setUp() {
+        application.deleteDatabase(TABLE_NAME)
+        historyStore = HistorySqlDiskStore(application)
+    }
+
+    @After
+    fun tearDown() {
+        historyStore.close()
+        application.deleteDatabase(TABLE_NAME)
+    }
+
+    @Test
+    fun pageTimeByDepth() {
+        val rows = 50_000
+        insertRows(historyStore, (0 until rows).map { i -> "https://example.com/page/$i" to i.toLong() })
+        val keysByDepth = HashMap<Int, HistoryKey>()
+        var key: HistoryKey? = null
+        for (depth in 0 until rows step PAGE_SIZE) {
+            if (depth in BENCHMARK_DEPTHS) keysByDepth[depth] = key ?: HistoryKey(Long.MAX_VALUE, "")
+            val page = historyStore.loadOlderHistory(key, PAGE_SIZE, false)
+            key = HistoryKey.of(page.last())
+        }
+
+        for (depth in BENCHMARK_DEPTHS) {
+            val offsetMicros = timeMicros { historyStore.loadHistoryRange(PAGE_SIZE, depth) }
+            val keysetMicros = timeMicros { historyStore.loadOlderHistory(keysByDepth[depth], PAGE_SIZE, false) }
+            println("History page at depth $depth: offset=${offsetMicros}us, keyset=${keysetMicros}us")
+        }
+    }
+
+    private fun timeMicros(block: () -> Unit): Long {
+        block()
+        val start = System.nanoTime()
+        repeat(BENCHMARK_ROUNDS) { block() }
+        return (System.nanoTime() - start) / 1000 / BENCHMARK_ROUNDS
+    }
+
+    companion object {
+        private const val PAGE_SIZE = 20
+        private const val BENCHMARK_ROUNDS = 20
+        private val BENCHMARK_DEPTHS = listOf(0, 1_000, 10_000, 40_000)
+    }
+}
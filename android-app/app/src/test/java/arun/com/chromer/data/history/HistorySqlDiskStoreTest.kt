@@ -0,0 +1,213 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.data.history
+
+import android.database.DatabaseUtils
+import android.database.sqlite.SQLiteDatabase
+import arun.com.chromer.ChromerRobolectricSuite
+import arun.com.chromer.data.history.model.HistoryTable.*
+import arun.com.chromer.data.website.model.Website
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+
+class HistorySqlDiskStoreTest : ChromerRobolectricSuite() {
+    private lateinit var historyStore: HistorySqlDiskStore
+
+    @Before
+    fun setUp() {
+        application.deleteDatabase(TABLE_NAME)
+        historyStore = HistorySqlDiskStore(application)
+    }
+
+    @After
+    fun tearDown() {
+        historyStore.close()
+        application.deleteDatabase(TABLE_NAME)
+    }
+
+    @Test
+    fun repeatedVisitsUpsertOneRow() {
+        val website = Website("https://example.com/")
+        historyStore.insert(website).toBlocking().first()
+        historyStore.insert(website).toBlocking().first()
+        historyStore.insert(website).toBlocking().first()
+
+        assertTrue(historyStore.exists(website).toBlocking().first())
+        assertFalse(historyStore.exists(Website("https://example.org/")).toBlocking().first())
+        assertEquals(3, historyStore.get(website).toBlocking().first().count)
+        assertEquals(1, historyStore.loadHistoryRange(10, 0).size)
+    }
+
+    @Test
+    fun burstOfVisitsIsOneWriteAndOneChange() {
+        val changes = historyStore.changes().test()
+        val sites = (0 until 10).map { Website("https://example.com/${it % 4}") }
+        val inserts = sites.map { historyStore.insert(it).toBlocking().toFuture() }
+        inserts.forEach { it.get() }
+
+        changes.assertValueCount(1)
+        assertEquals(List(4) { HistoryChange.Type.INSERTED }, changes.values()[0].map { it.type })
+        assertEquals(4, historyStore.loadHistoryRange(10, 0).size)
+        assertEquals(3, historyStore.get(sites[0]).toBlocking().first().count)
+    }
+
+    @Test
+    fun recentsArePatchedByChanges() {
+        insertRows(historyStore, (0 until 10).map { i -> "https://example.com/$i" to (1000L + i) })
+        val recents = historyStore.recents().test()
+        fun latest() = recents.values().last().map { it.url }
+        fun expected() = historyStore.loadOlderHistory(null, 8, false).map { it.url }
+
+        assertEquals(expected(), latest())
+        val visited = Website("https://example.com/new")
+        historyStore.insert(visited).toBlocking().first()
+        assertEquals("https://example.com/new", latest().first())
+        assertEquals(expected(), latest())
+
+        historyStore.insert(Website("https://example.com/3")).toBlocking().first()
+        assertEquals(expected(), latest())
+        historyStore.delete(visited).toBlocking().first()
+        assertEquals(expected(), latest())
+        historyStore.delete(Website("https://example.com/0")).toBlocking().first()
+        assertEquals(expected(), latest())
+
+        historyStore.deleteAll().toBlocking().first()
+        assertTrue(latest().isEmpty())
+    }
+
+    @Test
+    fun compactionEnforcesRetentionInChunks() {
+        val now = System.currentTimeMillis()
+        insertRows(historyStore, (0 until 1200).map { i -> "https://example.com/$i" to now - i * MINUTE_MS })
+        val bookmarked = Website("https://example.com/1100")
+        historyStore.writableDatabase.execSQL("UPDATE $TABLE_NAME SET $COLUMN_BOOKMARKED = 1 WHERE $COLUMN_URL = ?",
+                arrayOf(bookmarked.url))
+        val changes = historyStore.changes().test()
+
+        val byRows = historyStore.compact(HistoryRetention(1000, 0, true))
+        assertEquals(199, byRows.rowsDeleted)
+        assertEquals(1001, historyStore.loadHistoryRange(2000, 0).size)
+        assertTrue(historyStore.exists(bookmarked).toBlocking().first())
+        assertEquals("https://example.com/999", historyStore.loadHistoryRange(1, 999).single().url)
+
+        val byAge = historyStore.compact(HistoryRetention(0, 10 * MINUTE_MS - MINUTE_MS / 2, false))
+        assertEquals(991, byAge.rowsDeleted)
+        assertEquals(10, historyStore.loadHistoryRange(2000, 0).size)
+        assertFalse(historyStore.exists(bookmarked).toBlocking().first())
+        assertTrue(byAge.bytesReclaimed > 0)
+
+        // 199 rows, then 991 in chunks of 500.
+        changes.assertValueCount(3)
+        assertEquals(199 + 991, changes.values().sumBy { it.size })
+    }
+
+    @Test
+    fun writeAheadLoggingAndStatementsSurviveReopen() {
+        val website = Website("https://example.com/")
+        historyStore.insert(website).toBlocking().first()
+        assertTrue(historyStore.readableDatabase.isWriteAheadLoggingEnabled)
+        assertTrue(historyStore.exists(website).toBlocking().first())
+
+        historyStore.close()
+        assertTrue(historyStore.exists(website).toBlocking().first())
+        historyStore.delete(website).toBlocking().first()
+        assertFalse(historyStore.exists(website).toBlocking().first())
+    }
+
+    @Test
+    fun upgradeMergesDuplicateUrls() {
+        historyStore.close()
+        application.deleteDatabase(TABLE_NAME)
+        val path = application.getDatabasePath(TABLE_NAME)
+        path.parentFile.mkdirs()
+        SQLiteDatabase.openOrCreateDatabase(path, null).use { db ->
+            db.execSQL(VERSION_1_CREATE)
+            for ((url, created) in listOf("a" to 1L, "b" to 2L, "a" to 3L)) {
+                db.execSQL("INSERT INTO $TABLE_NAME ($COLUMN_URL, $COLUMN_CREATED_AT, $COLUMN_VISITED) VALUES (?, ?, 2)",
+                        arrayOf<Any>(url, created))
+            }
+            db.version = 1
+        }
+
+        historyStore = HistorySqlDiskStore(application)
+        val merged = historyStore.get(Website("a")).toBlocking().first()
+        assertEquals(4, merged.count)
+        assertEquals(3L, merged.createdAt)
+        assertEquals(2, historyStore.loadHistoryRange(10, 0).size)
+
+        val indexes = DatabaseUtils.longForQuery(historyStore.readableDatabase,
+                "SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' AND name IN (?, ?)",
+                arrayOf(INDEX_URL, INDEX_CREATED_AT))
+        assertEquals(2L, indexes)
+        assertEquals("integer", DatabaseUtils.stringForQuery(historyStore.readableDatabase,
+                "SELECT typeof($COLUMN_CREATED_AT) FROM $TABLE_NAME LIMIT 1", null))
+        assertEquals(listOf("a"), historyStore.search("a").toBlocking().first().map { it.url })
+    }
+
+    @Test
+    fun keysetPagesVisitEveryRowOnceInOrder() {
+        // Several rows share a timestamp, so the url has to break ties.
+        insertRows(historyStore, (0 until 95).map { i -> "https://example.com/$i" to (1000L + i / 4) })
+
+        val paged = ArrayList<Website>()
+        var page = historyStore.loadOlderHistory(null, 10, false)
+        while (page.isNotEmpty()) {
+            paged += page
+            page = historyStore.loadOlderHistory(HistoryKey.of(page.last()), 10, false)
+        }
+        assertEquals(historyStore.loadHistoryRange(200, 0).size, paged.size)
+        assertEquals(paged.map { it.url }.distinct(), paged.map { it.url })
+        assertEquals(paged.sortedWith(compareByDescending<Website> { it.createdAt }.thenByDescending { it.url }), paged)
+
+        val key = HistoryKey.of(paged[40])
+        assertEquals(paged.subList(30, 40), historyStore.loadNewerHistory(key, 10))
+        assertEquals(paged.subList(40, 50), historyStore.loadOlderHistory(key, 10, true))
+    }
+
+    companion object {
+        private const val MINUTE_MS = 60_000L
+
+        // History table as created by database version 1.
+        private const val VERSION_1_CREATE = "CREATE TABLE IF NOT EXISTS History ( _ID INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "URL TEXT NOT NULL ,TITLE TEXT, FAVICON TEXT, CANONICAL TEXT, COLOR TEXT, AMP TEXT, " +
+                "BOOKMARKED INTEGER, CREATED TEXT, VISITED INTEGER);"
+
+        internal fun insertRows(historyStore: HistorySqlDiskStore, rows: List<Pair<String, Long>>) {
+            val db = historyStore.writableDatabase
+            db.beginTransaction()
+            try {
+                db.compileStatement("INSERT INTO $TABLE_NAME ($COLUMN_URL, $COLUMN_CREATED_AT, $COLUMN_VISITED) VALUES (?, ?, 1)").use { statement ->
+                    for ((url, created) in rows) {
+                        statement.bindString(1, url)
+                        statement.bindLong(2, created)
+                        statement.executeInsert()
+                    }
+                }
+                db.setTransactionSuccessful()
+            } finally {
+                db.endTransaction()
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.data.history
+
+import arun.com.chromer.ChromerRobolectricSuite
+import arun.com.chromer.data.history.HistorySearchTest.Companion.insertRows
+import arun.com.chromer.data.history.HistorySearchTest.Row
+import arun.com.chromer.data.history.model.HistoryTable.TABLE_NAME
+import dev.arunkumar.android.rxschedulers.SchedulerProvider
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import javax.inject.Inject
+
+/**
+ * Heap held by a full suggestion index and its time per keystroke. Run with `-Pbenchmark`.
+ */
+class HistorySuggestionIndexBenchmark : ChromerRobolectricSuite() {
+    @Inject
+    lateinit var schedulerProvider: SchedulerProvider
+
+    private lateinit var historyStore: HistorySqlDiskStore
+    private lateinit var index: HistorySuggestionIndex
+
+    @Before
+    fun setUp() {
+        testAppComponent.inject(this)
+        application.deleteDatabase(TABLE_NAME)
+        historyStore = HistorySqlDiskStore(application)
+        index = HistorySuggestionIndex(historyStore, schedulerProvider)
+    }
+
+    @After
+    fun tearDown() {
+        historyStore.close()
+        application.deleteDatabase(TABLE_NAME)
+    }
+
+    @Test
+    fun memoryAndLatency() {
+        val now = System.currentTimeMillis()
+        insertRows(historyStore, (0 until HistorySuggestionIndex.MAX_ENTRIES + 2_000).map { i ->
+            Row("https://site$i.example.com/path/${i % 97}", "Page $i about topic ${i % 13}", 1 + i % 7, now - i * 1000L)
+        })
+
+        val runtime = Runtime.getRuntime()
+        System.gc()
+        val heapBefore = runtime.totalMemory() - runtime.freeMemory()
+        urls("warm")
+        System.gc()
+        val heapAfter = runtime.totalMemory() - runtime.freeMemory()
+
+        val keystrokes = listOf("t", "to", "top", "topi", "topic", "topic 1", "topic 12", "s", "si", "site1")
+        val start = System.nanoTime()
+        repeat(BENCHMARK_ROUNDS) { keystrokes.forEach { urls(it) } }
+        val perQueryMicros = (System.nanoTime() - start) / 1000 / (BENCHMARK_ROUNDS * keystrokes.size)
+        println("History suggestion index: ${(heapAfter - heapBefore) / 1024}KB for ${index.size} entries, " +
+                "${perQueryMicros}us per keystroke")
+    }
+
+    private fun urls(query: String) = index.search(query, 4).map { it.url }
+
+    companion object {
+        private const val BENCHMARK_ROUNDS = 20
+    }
+}
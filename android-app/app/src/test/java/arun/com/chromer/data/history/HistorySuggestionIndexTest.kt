@@ -0,0 +1,131 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.data.history
+
+import arun.com.chromer.ChromerRobolectricSuite
+import arun.com.chromer.data.history.model.HistoryTable.*
+import arun.com.chromer.data.website.model.Website
+import dev.arunkumar.android.rxschedulers.SchedulerProvider
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import javax.inject.Inject
+
+class HistorySuggestionIndexTest : ChromerRobolectricSuite() {
+    @Inject
+    lateinit var schedulerProvider: SchedulerProvider
+
+    private lateinit var historyStore: HistorySqlDiskStore
+    private lateinit var index: HistorySuggestionIndex
+
+    @Before
+    fun setUp() {
+        testAppComponent.inject(this)
+        application.deleteDatabase(TABLE_NAME)
+        historyStore = HistorySqlDiskStore(application)
+        index = HistorySuggestionIndex(historyStore, schedulerProvider)
+    }
+
+    @After
+    fun tearDown() {
+        historyStore.close()
+        application.deleteDatabase(TABLE_NAME)
+    }
+
+    @Test
+    fun prefixesOfHostAndTitleTermsMatch() {
+        val now = System.currentTimeMillis()
+        insertRows(listOf(
+                Row("https://github.com/", "GitHub", 20, now),
+                Row("https://gitlab.com/", "GitLab", 2, now - DAY_MS),
+                Row("https://news.ycombinator.com/item", "Hacker News", 50, now),
+                Row("https://example.com/github", "Mirror", 1, now)
+        ))
+
+        assertEquals(listOf("https://github.com/", "https://gitlab.com/"), urls("git"))
+        assertEquals(listOf("https://news.ycombinator.com/item"), urls("hacker n"))
+        assertEquals(listOf("https://github.com/"), urls("github.c"))
+        assertTrue(urls("item").isEmpty())
+    }
+
+    @Test
+    fun followsHistoryChanges() {
+        assertTrue(urls("kotlin").isEmpty())
+        val website = Website("https://kotlinlang.org/docs/")
+        website.title = "Kotlin docs"
+        historyStore.insert(website).toBlocking().first()
+        eventually { urls("kot") == listOf(website.url) }
+
+        historyStore.delete(website).toBlocking().first()
+        eventually { urls("kot").isEmpty() }
+
+        historyStore.insert(website).toBlocking().first()
+        eventually { urls("docs") == listOf(website.url) }
+        historyStore.deleteAll().toBlocking().first()
+        eventually { index.size == 0 }
+    }
+
+    @Test
+    fun keepsAtMostMaxEntries() {
+        val now = System.currentTimeMillis()
+        insertRows((0 until HistorySuggestionIndex.MAX_ENTRIES + 2_000).map { i ->
+            Row("https://site$i.example.com/", "Page $i", 1 + i % 7, now - i * 1000L)
+        })
+        urls("page")
+        assertEquals(HistorySuggestionIndex.MAX_ENTRIES, index.size)
+    }
+
+    private fun urls(query: String) = index.search(query, 4).map { it.url }
+
+    private fun eventually(condition: () -> Boolean) {
+        val deadline = System.currentTimeMillis() + 5_000
+        while (!condition()) {
+            assertTrue(System.currentTimeMillis() < deadline)
+            Thread.sleep(10)
+        }
+    }
+
+    private data class Row(val url: String, val title: String, val visits: Int, val created: Long)
+
+    private fun insertRows(rows: List<Row>) {
+        val db = historyStore.writableDatabase
+        db.beginTransaction()
+        try {
+            db.compileStatement("INSERT INTO $TABLE_NAME ($COLUMN_URL, $COLUMN_TITLE, $COLUMN_VISITED, $COLUMN_CREATED_AT) VALUES (?, ?, ?, ?)").use { statement ->
+                for (row in rows) {
+                    statement.bindString(1, row.url)
+                    statement.bindString(2, row.title)
+                    statement.bindLong(3, row.visits.toLong())
+                    statement.bindLong(4, row.created)
+                    statement.executeInsert()
+                }
+            }
+            db.setTransactionSuccessful()
+        } finally {
+            db.endTransaction()
+        }
+    }
+
+    companion object {
+        private const val DAY_MS = 24 * 60 * 60 * 1000L
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.data.history
+
+import arun.com.chromer.data.website.model.Website
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.Executors
+
+class HistoryWriteQueueTest {
+    private val executor = Executors.newSingleThreadScheduledExecutor()
+    private val batches = CopyOnWriteArrayList<Map<String, Int>>()
+
+    private fun queue(maxBatchSize: Int = 64, commit: (Collection<HistoryWriteQueue.Visit>) -> Unit = { visits ->
+        batches += visits.associate { it.website.url to it.count }
+    }) = HistoryWriteQueue(50, maxBatchSize, executor, commit)
+
+    @After
+    fun tearDown() {
+        executor.shutdownNow()
+    }
+
+    @Test
+    fun burstIsMergedIntoOneBatch() {
+        val queue = queue()
+        val results = (0 until 9).map { i -> queue.enqueue(Website("https://example.com/${i % 3}")) }
+        results.forEach { it.toBlocking().first() }
+
+        assertEquals(1, batches.size)
+        assertEquals(mapOf("https://example.com/0" to 3, "https://example.com/1" to 3, "https://example.com/2" to 3), batches[0])
+    }
+
+    @Test
+    fun fullBatchIsWrittenWithoutWaitingForWindow() {
+        val queue = queue(maxBatchSize = 2)
+        queue.enqueue(Website("a"))
+        queue.enqueue(Website("b")).toBlocking().first()
+        queue.enqueue(Website("c")).toBlocking().first()
+
+        assertEquals(listOf(mapOf("a" to 1, "b" to 1), mapOf("c" to 1)), batches)
+    }
+
+    @Test(expected = IllegalStateException::class)
+    fun commitErrorReachesCallers() {
+        val queue = queue { throw IllegalStateException("disk full") }
+        queue.enqueue(Website("a")).toBlocking().first()
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.data.history.paging
+
+import arun.com.chromer.data.history.HistoryChange
+import arun.com.chromer.data.history.HistoryChange.Type.DELETED
+import arun.com.chromer.data.history.HistoryChange.Type.INSERTED
+import arun.com.chromer.data.history.HistoryChange.Type.UPDATED
+import arun.com.chromer.data.website.model.Website
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class LoadedWindowTest {
+
+    private fun website(url: String, createdAt: Long) = Website(url).apply { this.createdAt = createdAt }
+
+    @Test
+    fun everyChangeCountsBeforeTheFirstLoad() {
+        assertTrue(PagedHistoryDataSource.LoadedWindow().contains(HistoryChange(DELETED, "a", 1)))
+    }
+
+    @Test
+    fun changesOutsideTheLoadedRangeAreIgnored() {
+        // Loaded from the head down to the entry at 50, more history is older.
+        val window = PagedHistoryDataSource.LoadedWindow()
+        window.add(listOf(website("c", 100), website("b", 70), website("a", 50)), reachedNewest = true)
+
+        assertTrue(window.contains(HistoryChange(INSERTED, "d", 4, 200)))
+        assertTrue(window.contains(HistoryChange(UPDATED, "e", 5, 60)))
+        assertTrue(window.contains(HistoryChange(DELETED, "b", 2)))
+        assertTrue(window.contains(HistoryChange(UPDATED, "a", 1, 200)))
+        assertTrue(window.contains(HistoryChange.deletedAll()))
+
+        assertFalse(window.contains(HistoryChange(DELETED, "old", 9)))
+        assertFalse(window.contains(HistoryChange(UPDATED, "old", 9, 10)))
+    }
+
+    @Test
+    fun newerRowsAreOutsideUntilTheHeadIsLoaded() {
+        val window = PagedHistoryDataSource.LoadedWindow()
+        window.add(listOf(website("b", 70), website("a", 50)), reachedOldest = true)
+
+        assertFalse(window.contains(HistoryChange(INSERTED, "d", 4, 200)))
+        assertTrue(window.contains(HistoryChange(INSERTED, "old", 9, 10)))
+
+        window.add(emptyList(), reachedNewest = true)
+        assertTrue(window.contains(HistoryChange(INSERTED, "d", 4, 200)))
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.data.website
+
+import arun.com.chromer.ChromerRobolectricSuite
+import arun.com.chromer.data.history.HistoryRepository
+import arun.com.chromer.data.website.model.Website
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import javax.inject.Inject
+
+class DefaultWebsiteRepositoryTest : ChromerRobolectricSuite() {
+    @Inject
+    lateinit var historyRepository: HistoryRepository
+
+    private val cacheStore = MockWebsiteStore()
+    private val networkStore = MockWebsiteStore()
+    private lateinit var websiteRepository: DefaultWebsiteRepository
+
+    @Before
+    fun setUp() {
+        testAppComponent.inject(this)
+        websiteRepository = DefaultWebsiteRepository(cacheStore, networkStore, historyRepository)
+    }
+
+    @Test
+    fun staleWebsitesAreReturnedThenRevalidated() {
+        val cached = cachedWebsite(System.currentTimeMillis() - 2 * DAY_MS)
+
+        assertEquals(listOf(cached), websiteRepository.getWebsiteReadOnly(URL).test()
+                .awaitTerminalEvent()
+                .onNextEvents)
+        assertEquals(listOf(ETAG), networkStore.refreshed.map { it.etag })
+        assertEquals(cached, cacheStore.websites[URL])
+        assertTrue(cacheStore.websites[URL]!!.fetchedAt > cached.fetchedAt)
+    }
+
+    @Test
+    fun failedRevalidationsWaitUntilStaleAgain() {
+        networkStore.refreshFails = true
+        val cached = cachedWebsite(System.currentTimeMillis() - 2 * DAY_MS)
+
+        websiteRepository.getWebsiteReadOnly(URL).test().awaitTerminalEvent()
+        assertEquals(1, networkStore.refreshed.size)
+        assertEquals(cached, cacheStore.websites[URL])
+        assertEquals(ETAG, cacheStore.websites[URL]!!.etag)
+        assertTrue(cacheStore.websites[URL]!!.fetchedAt > cached.fetchedAt)
+
+        websiteRepository.getWebsiteReadOnly(URL).test().awaitTerminalEvent()
+        assertEquals(1, networkStore.refreshed.size)
+    }
+
+    @Test
+    fun freshWebsitesAreNotRevalidated() {
+        val cached = cachedWebsite(System.currentTimeMillis())
+
+        assertEquals(listOf(cached), websiteRepository.getWebsiteReadOnly(URL).test()
+                .awaitTerminalEvent()
+                .onNextEvents)
+        assertTrue(networkStore.refreshed.isEmpty())
+    }
+
+    private fun cachedWebsite(fetchedAt: Long) = Website(URL).apply {
+        title = "Example"
+        etag = ETAG
+        this.fetchedAt = fetchedAt
+        cacheStore.websites[URL] = this
+    }
+
+    companion object {
+        private const val URL = "https://example.com/"
+        private const val ETAG = "\"v1\""
+        private const val DAY_MS = 24 * 60 * 60 * 1000L
+    }
+}
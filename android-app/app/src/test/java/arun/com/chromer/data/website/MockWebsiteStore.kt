@@ -0,0 +1,78 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.data.website
+
+import android.graphics.Bitmap
+import android.graphics.drawable.Drawable
+import android.util.Pair
+import arun.com.chromer.data.website.model.WebColor
+import arun.com.chromer.data.website.model.Website
+import arun.com.chromer.data.website.stores.WebsiteStore
+import arun.com.chromer.shared.Constants.NO_COLOR
+import rx.Observable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+
+/**
+ * In memory [WebsiteStore] that records the websites it is asked to refresh. Refreshes come back
+ * empty while [refreshFails] is set.
+ */
+class MockWebsiteStore : WebsiteStore {
+    val websites = ConcurrentHashMap<String, Website>()
+    val refreshed = CopyOnWriteArrayList<Website>()
+    @Volatile
+    var refreshFails = false
+
+    override fun getWebsite(url: String): Observable<Website> = Observable.fromCallable<Website> { websites[url] }
+
+    override fun refreshWebsite(website: Website): Observable<Website> = Observable.defer {
+        refreshed += website
+        if (refreshFails) {
+            Observable.empty<Website>()
+        } else {
+            Observable.just(Website(website.title, website.url, website.faviconUrl, website.canonicalUrl,
+                    website.themeColor, website.ampUrl, website.bookmarked, website.createdAt, website.count).apply {
+                etag = website.etag
+                lastModified = website.lastModified
+                fetchedAt = System.currentTimeMillis()
+            })
+        }
+    }
+
+    override fun clearCache(): Observable<Void> = Observable.fromCallable<Void> {
+        websites.clear()
+        null
+    }
+
+    override fun saveWebsite(website: Website): Observable<Website> = Observable.fromCallable {
+        websites[website.url] = website
+        website
+    }
+
+    override fun getWebsiteColor(url: String): Observable<WebColor> = Observable.empty()
+
+    override fun saveWebsiteColor(host: String, color: Int): Observable<WebColor> = Observable.empty()
+
+    override fun getWebsiteIconAndColor(website: Website): Pair<Bitmap, Int> = Pair(null, NO_COLOR)
+
+    override fun getWebsiteRoundIconAndColor(website: Website): Pair<Drawable, Int> = Pair(null, NO_COLOR)
+
+    override fun getWebsiteIconWithPlaceholderAndColor(website: Website): Pair<Bitmap, Int> = Pair(null, NO_COLOR)
+}
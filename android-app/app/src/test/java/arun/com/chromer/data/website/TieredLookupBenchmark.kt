@@ -0,0 +1,78 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.data.website
+
+import arun.com.chromer.data.website.TieredLookup.Mode
+import org.junit.After
+import org.junit.Test
+import rx.Observable
+import rx.schedulers.Schedulers
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Average latency of website lookups in each [Mode], with and without a cache hit. Run with
+ * `-Pbenchmark`.
+ */
+class TieredLookupBenchmark {
+    private val executor = Executors.newCachedThreadPool()
+    private val scheduler = Schedulers.from(executor)
+    private val fetches = AtomicInteger()
+
+    @After
+    fun tearDown() {
+        executor.shutdownNow()
+    }
+
+    @Test
+    fun lookupLatency() {
+        for ((name, cache) in listOf("warm" to "cached", "cold" to null)) {
+            for (mode in Mode.values()) {
+                val lookup = TieredLookup<String?>(mode, SPECULATIVE_FETCH_DELAY_MS, scheduler)
+                val start = System.nanoTime()
+                repeat(BENCHMARK_ROUNDS) {
+                    lookup.lookup(URL, tier(cache, CACHE_MS), tier(null, HISTORY_MS), network("fetched", NETWORK_MS))
+                            .toBlocking().single()
+                }
+                val averageMs = (System.nanoTime() - start) / 1_000_000 / BENCHMARK_ROUNDS
+                println("Website lookup, $name, $mode: ${averageMs}ms, ${fetches.getAndSet(0)} fetches; ${lookup.stats()}")
+            }
+        }
+    }
+
+    private fun tier(value: String?, latencyMs: Long): Observable<String?> {
+        return Observable.just(value).delay(latencyMs, TimeUnit.MILLISECONDS, scheduler)
+    }
+
+    private fun network(value: String?, latencyMs: Long): Observable<String?> {
+        return tier(value, latencyMs).doOnSubscribe { fetches.incrementAndGet() }
+    }
+
+    companion object {
+        private const val URL = "https://example.com/"
+        private const val BENCHMARK_ROUNDS = 10
+        private const val SPECULATIVE_FETCH_DELAY_MS = 50L
+        // Disk cache unmarshal, SQLite query and network fetch on a slow device.
+        private const val CACHE_MS = 30L
+        private const val HISTORY_MS = 60L
+        private const val NETWORK_MS = 300L
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.data.website
+
+import arun.com.chromer.data.website.TieredLookup.Mode
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import rx.Observable
+import rx.observers.TestSubscriber
+import rx.schedulers.Schedulers
+import rx.schedulers.TestScheduler
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Tier latencies are simulated on a [TestScheduler], so races are decided by virtual time alone.
+ */
+class TieredLookupTest {
+    private val executor = Executors.newCachedThreadPool()
+    private val scheduler = TestScheduler()
+    private val fetches = AtomicInteger()
+
+    @After
+    fun tearDown() {
+        executor.shutdownNow()
+    }
+
+    @Test
+    fun fastLocalHitsNeverFetch() {
+        val lookup = TieredLookup<String?>(Mode.RACE, 200, scheduler)
+        val result = subscribe(lookup.lookup(URL, tier("cached", 5), tier(null, 5), network("fetched", 100)))
+        advanceBy(5)
+        result.assertValue("cached")
+
+        advanceBy(1_000)
+        assertEquals(0, fetches.get())
+    }
+
+    @Test
+    fun localMissesFetchWithoutWaitingForTheDelay() {
+        val lookup = TieredLookup<String?>(Mode.RACE, 5_000, scheduler)
+        val result = subscribe(lookup.lookup(URL, tier(null, 5), tier(null, 10), network("fetched", 20)))
+        advanceBy(10)
+        assertEquals(1, fetches.get())
+
+        advanceBy(20)
+        result.assertValue("fetched")
+    }
+
+    @Test
+    fun slowLocalLookupsRaceTheFetch() {
+        val lookup = TieredLookup<String?>(Mode.RACE, 20, scheduler)
+        val cached = subscribe(lookup.lookup(URL, tier("cached", 150), tier(null, 5), network("fetched", 1_000)))
+        advanceBy(20)
+        assertEquals(1, fetches.get())
+        advanceBy(130)
+        cached.assertValue("cached")
+        assertTrue(lookup.stats(), lookup.stats().contains("NETWORK: hits=0, misses=0, cancelled=1"))
+
+        val fetched = subscribe(lookup.lookup(URL, tier("cached", 1_000), tier(null, 5), network("fetched", 20)))
+        advanceBy(40)
+        fetched.assertValue("fetched")
+        assertTrue(lookup.stats(), lookup.stats().contains("CACHE: hits=1, misses=0, cancelled=1"))
+    }
+
+    @Test
+    fun cacheHitsWinOverFasterHistoryHits() {
+        val historyAnswered = CountDownLatch(1)
+        val cache = Observable.fromCallable {
+            historyAnswered.await()
+            "cached"
+        }
+        val history = Observable.just("history").doOnCompleted { historyAnswered.countDown() }
+        // The cache blocks until history has answered, so the tiers need threads of their own.
+        val lookup = TieredLookup<String?>(Mode.RACE, 0, Schedulers.from(executor))
+        assertEquals("cached", lookup.lookup(URL, cache, history, Observable.never()).toBlocking().single())
+        assertTrue(lookup.stats(), lookup.stats().contains("HISTORY: hits=1"))
+    }
+
+    @Test
+    fun sequentialLookupsReadOneTierAtATime() {
+        val lookup = TieredLookup<String?>(Mode.SEQUENTIAL, 0, scheduler)
+        val result = subscribe(lookup.lookup(URL, tier(null, 5), tier("history", 5), network("fetched", 5)))
+        advanceBy(10)
+        result.assertValue("history")
+        assertEquals(0, fetches.get())
+    }
+
+    private fun subscribe(lookup: Observable<String?>) = TestSubscriber<String?>().also { lookup.subscribe(it) }
+
+    private fun advanceBy(ms: Long) = scheduler.advanceTimeBy(ms, TimeUnit.MILLISECONDS)
+
+    private fun tier(value: String?, latencyMs: Long): Observable<String?> {
+        return Observable.just(value).delay(latencyMs, TimeUnit.MILLISECONDS, scheduler)
+    }
+
+    private fun network(value: String?, latencyMs: Long): Observable<String?> {
+        return tier(value, latencyMs).doOnSubscribe { fetches.incrementAndGet() }
+    }
+
+    companion object {
+        private const val URL = "https://example.com/"
+    }
+}
@@ -19,8 +19,10 @@
 
 package arun.com.chromer.data.website.model
 
+import android.os.Parcel
 import arun.com.chromer.ChromerRobolectricSuite
 import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
 import org.junit.Test
 
 class WebsiteTest : ChromerRobolectricSuite() {
@@ -38,4 +40,46 @@ class WebsiteTest : ChromerRobolectricSuite() {
         assertEquals(website.ampUrl, ampified.url)
         assertEquals(website.ampUrl, ampified.canonicalUrl)
     }
-}
\ No newline at end of file
+
+    @Test
+    fun validatorsSurviveParcelling() {
+        val website = Website("https://example.com/").apply {
+            title = "Example"
+            etag = "\"v1\""
+            lastModified = "Wed, 21 Oct 2015 07:28:00 GMT"
+            fetchedAt = 42
+        }
+        val parcelled = unparcel { website.writeToParcel(it, 0) }
+
+        assertEquals(website.toString(), parcelled.toString())
+    }
+
+    @Test
+    fun websitesParcelledWithoutValidatorsStillRead() {
+        val parcelled = unparcel {
+            // Fields as written before validators were added.
+            it.writeString("Example")
+            it.writeString("https://example.com/")
+            repeat(4) { _ -> it.writeString(null) }
+            it.writeByte(0)
+            it.writeLong(1)
+            it.writeInt(2)
+        }
+
+        assertEquals("https://example.com/", parcelled.url)
+        assertEquals(2, parcelled.count)
+        assertNull(parcelled.etag)
+        assertEquals(0, parcelled.fetchedAt)
+    }
+
+    private fun unparcel(write: (Parcel) -> Unit): Website {
+        val parcel = Parcel.obtain()
+        try {
+            write(parcel)
+            parcel.setDataPosition(0)
+            return Website.CREATOR.createFromParcel(parcel)
+        } finally {
+            parcel.recycle()
+        }
+    }
+}
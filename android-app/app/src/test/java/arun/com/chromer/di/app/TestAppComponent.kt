@@ -21,8 +21,13 @@ package arun.com.chromer.di.app
 
 import arun.com.chromer.ChromerRobolectricSuite
 import arun.com.chromer.data.apps.DefaultAppRepositoryTest
+import arun.com.chromer.data.history.HistorySuggestionIndexBenchmark
+import arun.com.chromer.data.history.HistorySuggestionIndexTest
+import arun.com.chromer.data.website.DefaultWebsiteRepositoryTest
 import arun.com.chromer.di.data.TestDataModule
 import arun.com.chromer.home.HomeActivity
+import arun.com.chromer.search.suggestion.SuggestionsEngineBenchmark
+import arun.com.chromer.search.suggestion.SuggestionsEngineTest
 import arun.com.chromer.tabs.DefaultTabsManagerTest
 import arun.com.chromer.tabs.TabsModule
 import dagger.Component
@@ -44,4 +49,14 @@ interface TestAppComponent : AppComponent {
     fun inject(defaultTabsManagerTest: DefaultTabsManagerTest)
 
     fun inject(defaultAppRepositoryTest: DefaultAppRepositoryTest)
+
+    fun inject(historySuggestionIndexTest: HistorySuggestionIndexTest)
+
+    fun inject(historySuggestionIndexBenchmark: HistorySuggestionIndexBenchmark)
+
+    fun inject(suggestionsEngineTest: SuggestionsEngineTest)
+
+    fun inject(suggestionsEngineBenchmark: SuggestionsEngineBenchmark)
+
+    fun inject(defaultWebsiteRepositoryTest: DefaultWebsiteRepositoryTest)
 }
\ No newline at end of file
@@ -0,0 +1,71 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.search.suggestion
+
+import com.sun.net.httpserver.HttpServer
+import org.json.JSONArray
+import java.net.InetAddress
+import java.net.InetSocketAddress
+import java.net.URLDecoder
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.Executors
+
+/**
+ * Local stand-in for a suggest endpoint, answering in the format GoogleSuggestionSource reads after
+ * [latencyMs], so that suggestions can be tested and measured offline.
+ */
+class SuggestionServer(
+        @Volatile var latencyMs: Long = 0,
+        @Volatile var status: Int = 200,
+        private val completions: (String) -> List<String> = { query -> (1..5).map { "$query $it" } }
+) : AutoCloseable {
+    /**
+     * Queries received, in order.
+     */
+    val queries: MutableList<String> = CopyOnWriteArrayList()
+
+    private val executor = Executors.newCachedThreadPool()
+    private val server = HttpServer.create(InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0).apply {
+        executor = this@SuggestionServer.executor
+        createContext(PATH) { exchange ->
+            val query = URLDecoder.decode(exchange.requestURI.rawQuery.substringAfter("q="), "UTF-8")
+            queries += query
+            Thread.sleep(latencyMs)
+            val body = JSONArray().put(query).put(JSONArray(completions(query))).toString().toByteArray()
+            exchange.sendResponseHeaders(status, body.size.toLong())
+            exchange.responseBody.use { it.write(body) }
+        }
+        start()
+    }
+
+    /**
+     * Endpoint to append an encoded query to.
+     */
+    val endpoint get() = "http://127.0.0.1:${server.address.port}$PATH?q="
+
+    override fun close() {
+        server.stop(0)
+        executor.shutdownNow()
+    }
+
+    companion object {
+        private const val PATH = "/complete/search"
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.search.suggestion
+
+import android.content.ClipData
+import android.content.ClipboardManager
+import android.content.Context
+import arun.com.chromer.ChromerRobolectricSuite
+import arun.com.chromer.data.history.HistorySqlDiskStore
+import arun.com.chromer.data.history.HistorySuggestionIndex
+import arun.com.chromer.data.history.model.HistoryTable.TABLE_NAME
+import arun.com.chromer.data.website.model.Website
+import arun.com.chromer.search.suggestion.items.SuggestionType
+import arun.com.chromer.search.suggestion.source.GoogleSuggestionSource
+import dev.arunkumar.android.rxschedulers.SchedulerProvider
+import io.reactivex.processors.PublishProcessor
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import java.util.Collections
+import javax.inject.Inject
+
+/**
+ * Replays keystroke traces against the engine, with the stand-in server as the remote source,
+ * and reports per source how long after a keystroke its first suggestions arrived, and how long
+ * after the last keystroke its final ones did. Run with `-Pbenchmark`.
+ */
+class SuggestionsEngineBenchmark : ChromerRobolectricSuite() {
+    @Inject
+    lateinit var schedulerProvider: SchedulerProvider
+
+    private lateinit var server: SuggestionServer
+    private lateinit var historyStore: HistorySqlDiskStore
+
+    @Before
+    fun setUp() {
+        testAppComponent.inject(this)
+        server = SuggestionServer()
+        application.deleteDatabase(TABLE_NAME)
+        historyStore = HistorySqlDiskStore(application)
+    }
+
+    @After
+    fun tearDown() {
+        server.close()
+        historyStore.close()
+        application.deleteDatabase(TABLE_NAME)
+    }
+
+    @Test
+    fun keystrokeTraceLatency() {
+        server.latencyMs = SERVER_LATENCY_MS
+        (0 until 500).forEach { i ->
+            historyStore.insert(Website("https://site$i.example.com/").apply { title = "Page $i" }).toBlocking().first()
+        }
+        val clipboard = application.getSystemService(Context.CLIPBOARD_SERVICE) as ClipboardManager
+        clipboard.setPrimaryClip(ClipData.newPlainText("copied", "see https://example.com/page"))
+        val engine = SuggestionsEngine(
+                application,
+                HistorySuggestionIndex(historyStore, schedulerProvider),
+                GoogleSuggestionSource(server.endpoint),
+                schedulerProvider
+        )
+
+        for (trace in TRACES) {
+            val emissions = Collections.synchronizedList(ArrayList<Pair<Long, SuggestionType>>())
+            val queries = PublishProcessor.create<String>()
+            val subscription = queries.compose(engine.suggestionsTransformer())
+                    .subscribe { emissions += System.nanoTime() to it.first }
+            val sentAt = ArrayList<Long>()
+            for (keystroke in trace) {
+                Thread.sleep(keystroke.delayMs)
+                sentAt += System.nanoTime()
+                queries.onNext(keystroke.text)
+            }
+            Thread.sleep(SETTLE_MS)
+            subscription.dispose()
+
+            for (type in SuggestionType.values()) {
+                val times = synchronized(emissions) { emissions.filter { it.second == type }.map { it.first } }
+                val firsts = sentAt.indices.mapNotNull { i ->
+                    val next = sentAt.getOrElse(i + 1) { Long.MAX_VALUE }
+                    times.firstOrNull { it >= sentAt[i] && it < next }?.let { it - sentAt[i] }
+                }
+                val final = times.lastOrNull { it >= sentAt.last() }?.let { (it - sentAt.last()) / 1_000_000 }
+                println("Trace \"${trace.last().text}\", $type: answered ${firsts.size}/${trace.size} keystrokes, " +
+                        "time-to-first=${median(firsts) / 1_000_000}ms, time-to-final=${final ?: "-"}ms")
+            }
+        }
+    }
+
+    private fun median(values: List<Long>) = if (values.isEmpty()) 0L else values.sorted()[values.size / 2]
+
+    private class Keystroke(val delayMs: Long, val text: String)
+
+    companion object {
+        private const val SERVER_LATENCY_MS = 80L
+        private const val SETTLE_MS = 2_500L
+
+        /**
+         * Recorded as the query after each keystroke and the time since the previous one.
+         */
+        private val TRACES = listOf(
+                trace(0 to "g", 180 to "gi", 140 to "git", 160 to "gith", 120 to "githu", 210 to "github"),
+                trace(0 to "p", 150 to "pa", 130 to "pag", 170 to "page", 400 to "page ", 220 to "page 1",
+                        90 to "page 12", 260 to "page 1", 180 to "page 14"),
+                trace(0 to "h", 60 to "ht", 70 to "htt", 55 to "http", 80 to "https", 900 to "https:", 65 to "https:/",
+                        70 to "https://", 130 to "https://e", 95 to "https://ex")
+        )
+
+        private fun trace(vararg keystrokes: Pair<Int, String>) = keystrokes.map { Keystroke(it.first.toLong(), it.second) }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.search.suggestion
+
+import android.content.ClipData
+import android.content.ClipboardManager
+import android.content.Context
+import arun.com.chromer.ChromerRobolectricSuite
+import arun.com.chromer.data.history.HistorySqlDiskStore
+import arun.com.chromer.data.history.HistorySuggestionIndex
+import arun.com.chromer.data.history.model.HistoryTable.TABLE_NAME
+import arun.com.chromer.search.suggestion.SuggestionsEngine.Companion.GOOGLE_DEADLINE_MS
+import arun.com.chromer.search.suggestion.SuggestionsEngine.Companion.GOOGLE_DELAY_MS
+import arun.com.chromer.search.suggestion.items.SuggestionItem
+import arun.com.chromer.search.suggestion.items.SuggestionType
+import arun.com.chromer.search.suggestion.items.SuggestionType.*
+import arun.com.chromer.search.suggestion.source.GoogleSuggestionSource
+import arun.com.chromer.search.suggestion.source.SuggestionSource
+import dev.arunkumar.android.rxschedulers.SchedulerProvider
+import io.reactivex.processors.PublishProcessor
+import io.reactivex.schedulers.TestScheduler
+import io.reactivex.subscribers.TestSubscriber
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.io.IOException
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.TimeUnit.MILLISECONDS
+import javax.inject.Inject
+
+class SuggestionsEngineTest : ChromerRobolectricSuite() {
+    @Inject
+    lateinit var schedulerProvider: SchedulerProvider
+
+    private lateinit var server: SuggestionServer
+    private lateinit var historyStore: HistorySqlDiskStore
+
+    // The engine's schedulers, advanced by hand so that delays and deadlines pass in virtual time.
+    private val pool = TestScheduler()
+    private val io = TestScheduler()
+    private val ui = TestScheduler()
+    private val source = FakeSuggestionSource()
+
+    @Before
+    fun setUp() {
+        testAppComponent.inject(this)
+        server = SuggestionServer()
+        application.deleteDatabase(TABLE_NAME)
+        historyStore = HistorySqlDiskStore(application)
+    }
+
+    @After
+    fun tearDown() {
+        server.close()
+        historyStore.close()
+        application.deleteDatabase(TABLE_NAME)
+    }
+
+    @Test
+    fun googleSourceReadsCompletions() {
+        val source = GoogleSuggestionSource(server.endpoint)
+        assertEquals(listOf("kotlin flow 1", "kotlin flow 2"), source.suggestions("kotlin flow", 2))
+        assertEquals(listOf("kotlin flow"), server.queries)
+    }
+
+    @Test(expected = IOException::class)
+    fun googleSourceFailsOnServerErrors() {
+        server.status = 503
+        GoogleSuggestionSource(server.endpoint).suggestions("kotlin", 5)
+    }
+
+    @Test
+    fun cachedPrefixSuggestionsComeBeforeTheRemote() {
+        source.completions["fo"] = listOf("foo bar", "fox")
+        source.completions["foo"] = listOf("foo bar", "foo baz")
+        val (queries, suggestions) = subscribe()
+
+        queries.onNext("fo")
+        advanceBy(GOOGLE_DELAY_MS)
+        assertEquals(listOf("foo bar", "fox"), titles(suggestions, GOOGLE).last())
+
+        queries.onNext("foo")
+        settle()
+        assertEquals(listOf("foo bar"), titles(suggestions, GOOGLE).last())
+        assertEquals(listOf("fo"), source.queries)
+
+        advanceBy(GOOGLE_DELAY_MS)
+        assertEquals(listOf("foo bar", "foo baz"), titles(suggestions, GOOGLE).last())
+        assertEquals(listOf("fo", "foo"), source.queries)
+    }
+
+    @Test
+    fun queriesTypedOverAreNeverSent() {
+        val (queries, _) = subscribe()
+
+        queries.onNext("k")
+        advanceBy(GOOGLE_DELAY_MS - 1)
+        queries.onNext("ko")
+        advanceBy(GOOGLE_DELAY_MS)
+        assertEquals(listOf("ko"), source.queries)
+    }
+
+    @Test
+    fun slowSourcesEndEmptyAtTheirDeadline() {
+        copy("see https://example.com/page")
+        val (queries, suggestions) = subscribe()
+
+        // The remote is never answered, as nothing runs on the io scheduler.
+        queries.onNext("kotlin")
+        pool.triggerActions()
+        ui.triggerActions()
+        pool.advanceTimeBy(GOOGLE_DEADLINE_MS, MILLISECONDS)
+        assertEquals(listOf(emptyList<String>()), titles(suggestions, GOOGLE))
+        assertEquals(listOf(emptyList<String>()), titles(suggestions, HISTORY))
+        assertTrue(titles(suggestions, COPY).single().contains("https://example.com/page"))
+        assertTrue(source.queries.isEmpty())
+    }
+
+    @Test
+    fun clipboardIsReadOncePerChange() {
+        copy("see https://example.com/page")
+        val (queries, suggestions) = subscribe()
+
+        queries.onNext("a")
+        settle()
+        assertEquals(1, titles(suggestions, COPY).size)
+
+        // A read on the ui scheduler is only needed once the clipboard changes.
+        queries.onNext("b")
+        pool.triggerActions()
+        assertEquals(2, titles(suggestions, COPY).size)
+
+        copy("https://example.org/")
+        queries.onNext("c")
+        pool.triggerActions()
+        assertEquals(2, titles(suggestions, COPY).size)
+        ui.triggerActions()
+        pool.triggerActions()
+        assertEquals(listOf("https://example.org/"), titles(suggestions, COPY).last())
+    }
+
+    private fun subscribe(): Pair<PublishProcessor<String>, TestSubscriber<Pair<SuggestionType, List<SuggestionItem>>>> {
+        val engine = SuggestionsEngine(
+                application,
+                HistorySuggestionIndex(historyStore, schedulerProvider),
+                source,
+                object : SchedulerProvider by schedulerProvider {
+                    override val pool = this@SuggestionsEngineTest.pool
+                    override val io = this@SuggestionsEngineTest.io
+                    override val ui = this@SuggestionsEngineTest.ui
+                }
+        )
+        val queries = PublishProcessor.create<String>()
+        return queries to queries.compose(engine.suggestionsTransformer()).test()
+    }
+
+    private fun copy(text: String) {
+        val clipboard = application.getSystemService(Context.CLIPBOARD_SERVICE) as ClipboardManager
+        clipboard.setPrimaryClip(ClipData.newPlainText("copied", text))
+    }
+
+    private fun titles(suggestions: TestSubscriber<Pair<SuggestionType, List<SuggestionItem>>>, type: SuggestionType) =
+            suggestions.values().filter { it.first == type }.map { pair -> pair.second.map { it.title } }
+
+    private fun advanceBy(ms: Long) {
+        settle()
+        listOf(pool, io, ui).forEach { it.advanceTimeBy(ms, MILLISECONDS) }
+        settle()
+    }
+
+    /**
+     * Runs the work due on every scheduler, including work that hops between them.
+     */
+    private fun settle() {
+        repeat(4) { listOf(ui, pool, io).forEach { it.triggerActions() } }
+    }
+
+    private class FakeSuggestionSource : SuggestionSource {
+        val completions = HashMap<String, List<String>>()
+        val queries: MutableList<String> = CopyOnWriteArrayList()
+
+        override fun suggestions(query: String, limit: Int): List<String> {
+            queries += query
+            return completions[query].orEmpty().take(limit)
+        }
+    }
+}
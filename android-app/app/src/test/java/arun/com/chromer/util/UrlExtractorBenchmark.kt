@@ -0,0 +1,50 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.util
+
+import org.junit.Test
+
+/**
+ * Time taken to find the urls in a text by [UrlExtractor] and by the regex it replaced. Runs only
+ * with -Pbenchmark.
+ */
+class UrlExtractorBenchmark {
+
+    @Test
+    fun extractionThroughput() {
+        val text = (0 until 200).joinToString(" ") { i ->
+            if (i % 10 == 0) "https://example.com/page/$i?q=(x)" else "word$i, (aside) www-ish text."
+        }
+        val regexMicros = timeMicros { UrlExtractorTest.regexFindUrls(text) }
+        val extractorMicros = timeMicros { UrlExtractor.findUrls(text) }
+        println("URL extraction over ${text.length} chars: regex=${regexMicros}us, extractor=${extractorMicros}us")
+    }
+
+    private fun timeMicros(block: () -> Unit): Long {
+        repeat(BENCHMARK_ROUNDS) { block() }
+        val start = System.nanoTime()
+        repeat(BENCHMARK_ROUNDS) { block() }
+        return (System.nanoTime() - start) / 1000 / BENCHMARK_ROUNDS
+    }
+
+    companion object {
+        private const val BENCHMARK_ROUNDS = 200
+    }
+}
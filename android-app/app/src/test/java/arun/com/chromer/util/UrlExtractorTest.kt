@@ -0,0 +1,122 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.util
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.Random
+import java.util.regex.Pattern
+
+class UrlExtractorTest {
+
+    @Test
+    fun findsUrlsInText() {
+        assertEquals(listOf("https://example.com/a?b=c"), UrlExtractor.findUrls("See https://example.com/a?b=c."))
+        assertEquals(listOf("http://www.example.com", "http://example.org/xy"),
+                UrlExtractor.findUrls("www.example.com, or example.org/xy!"))
+        assertEquals(listOf("https://en.wikipedia.org/wiki/Java_(programming_language)"),
+                UrlExtractor.findUrls("(https://en.wikipedia.org/wiki/Java_(programming_language))"))
+        assertEquals(listOf("https://example.com/"), UrlExtractor.findUrls("“https://example.com/”"))
+        assertTrue(UrlExtractor.findUrls("no links here, just example.com").isEmpty())
+        assertTrue(UrlExtractor.findUrls(null).isEmpty())
+    }
+
+    @Test
+    fun matchesTheRegexOnFuzzedText() {
+        val random = Random(42)
+        var compared = 0
+        repeat(FUZZ_CASES) {
+            val text = buildString {
+                repeat(random.nextInt(FUZZ_MAX_FRAGMENTS)) { append(FUZZ_FRAGMENTS[random.nextInt(FUZZ_FRAGMENTS.size)]) }
+            }
+            val expected = try {
+                regexFindUrls(BudgetedText(text))
+            } catch (e: BudgetedText.Exhausted) {
+                // The regex backtracks for too long on this text, which is what the extractor fixes.
+                return@repeat
+            }
+            assertEquals(text, expected, UrlExtractor.findUrls(text))
+            compared++
+        }
+        assertTrue(compared > FUZZ_CASES * 9 / 10)
+    }
+
+    @Test
+    fun pathologicalTextIsLinear() {
+        // Doubling the text at most doubles the characters read, where the regex backtracked.
+        val reads = listOf(25_000, 50_000).map { n ->
+            val text = BudgetedText("www." + "!".repeat(n) + " http://" + "(a".repeat(n / 2))
+            assertTrue(UrlExtractor.findUrls(text).isEmpty())
+            text.reads
+        }
+        assertTrue(reads.toString(), reads[1] <= 2 * reads[0] + 100)
+    }
+
+    /**
+     * Text that counts its reads and fails them after a fixed budget, to bound how long the regex
+     * may backtrack.
+     */
+    private class BudgetedText(private val text: String) : CharSequence {
+        private var budget = 1_000_000
+        var reads = 0
+            private set
+
+        class Exhausted : RuntimeException()
+
+        override val length get() = text.length
+
+        override fun get(index: Int): Char {
+            if (--budget < 0) throw Exhausted()
+            reads++
+            return text[index]
+        }
+
+        override fun subSequence(startIndex: Int, endIndex: Int) = text.subSequence(startIndex, endIndex)
+
+        override fun toString() = text
+    }
+
+    companion object {
+        private const val FUZZ_CASES = 20_000
+        private const val FUZZ_MAX_FRAGMENTS = 14
+
+        private val FUZZ_FRAGMENTS = listOf("http", "://", ":", "/", "www", "www1.", ".", "com", "co", "x",
+                "A", "-", "_", "(", ")", "((a)", "))", "<", ">", " ", "\n", ",", "!", "?", "'", "\"", "`",
+                "«", "”", "[", "]", "{", "}", ";", "%", "1", "2", "ab", "W", "é", "́", "\u0085",
+                ".org/", "mailto:", "HTTPS://", "%20")
+
+        // The pattern Utils.findURLs used before UrlExtractor.
+        private val URL_PATTERN = Pattern.compile("\\b((?:[a-z][\\w-]+:(?:/{1,3}|[a-z0-9%])|www\\d{0,3}[.]|[a-z0-9.\\-]+[.][a-z]{2,4}/)(?:[^\\s()<>]+|\\(([^\\s()<>]+|(\\([^\\s()<>]+\\)))*\\))+(?:\\(([^\\s()<>]+|(\\([^\\s()<>]+\\)))*\\)|[^\\s`!()\\[\\]{};:'\".,<>?«»“”‘’]))", Pattern.CASE_INSENSITIVE)
+
+        internal fun regexFindUrls(text: CharSequence): List<String> {
+            val links = ArrayList<String>()
+            val m = URL_PATTERN.matcher(text)
+            while (m.find()) {
+                var url = m.group()
+                if (!url.toLowerCase().matches("^\\w+://.*".toRegex())) {
+                    url = "http://$url"
+                }
+                links.add(url)
+            }
+            return links
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.util.parser
+
+import com.sun.net.httpserver.HttpServer
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import java.net.InetAddress
+import java.net.InetSocketAddress
+import java.util.concurrent.Executors
+
+/**
+ * Time to open a short link before and after its redirect is remembered. Runs only with
+ * -Pbenchmark.
+ */
+class FetchClientBenchmark {
+    private val executor = Executors.newCachedThreadPool()
+    private lateinit var server: HttpServer
+    private lateinit var baseUrl: String
+
+    @Before
+    fun setUp() {
+        server = HttpServer.create(InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0).apply {
+            executor = this@FetchClientBenchmark.executor
+            createContext("/") { exchange ->
+                if (exchange.requestURI.path == "/short") {
+                    Thread.sleep(REDIRECT_LATENCY_MS)
+                    exchange.responseHeaders.add("Location", "/page")
+                    exchange.sendResponseHeaders(301, -1)
+                } else {
+                    Thread.sleep(PAGE_LATENCY_MS)
+                    val body = "<html><head><title>Page</title></head><body>${"text ".repeat(200)}</body></html>".toByteArray()
+                    exchange.responseHeaders.add("Content-Type", "text/html; charset=utf-8")
+                    exchange.sendResponseHeaders(200, body.size.toLong())
+                    exchange.responseBody.write(body)
+                }
+                exchange.close()
+            }
+            start()
+        }
+        baseUrl = "http://127.0.0.1:${server.address.port}"
+    }
+
+    @After
+    fun tearDown() {
+        server.stop(0)
+        executor.shutdownNow()
+    }
+
+    @Test
+    fun redirectResolutionSavedPerOpen() {
+        val redirectCache = RedirectCache(null, TTL_MS, 10)
+        val client = FetchClient(redirectCache)
+        val opens = (0 until BENCHMARK_OPENS).map {
+            val start = System.nanoTime()
+            client.headMetadata("$baseUrl/short").toBlocking().single()
+            (System.nanoTime() - start) / 1_000_000
+        }
+        println("Short link opens: first=${opens.first()}ms, cached=${opens.drop(1).average().toLong()}ms; ${redirectCache.stats()}")
+    }
+
+    companion object {
+        private const val PAGE_LATENCY_MS = 300L
+        private const val REDIRECT_LATENCY_MS = 100L
+        private const val TTL_MS = 60_000L
+        private const val BENCHMARK_OPENS = 5
+    }
+}
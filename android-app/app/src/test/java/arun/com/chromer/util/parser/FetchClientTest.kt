@@ -0,0 +1,209 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.util.parser
+
+import com.sun.net.httpserver.HttpServer
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import rx.schedulers.Schedulers
+import java.net.InetAddress
+import java.net.InetSocketAddress
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.Executors
+
+class FetchClientTest {
+    private val requests = CopyOnWriteArrayList<String>()
+    private val clientPorts = CopyOnWriteArrayList<Int>()
+    private val executor = Executors.newCachedThreadPool()
+    private lateinit var server: HttpServer
+    private lateinit var baseUrl: String
+
+    @Before
+    fun setUp() {
+        server = HttpServer.create(InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0).apply {
+            executor = this@FetchClientTest.executor
+            createContext("/") { exchange ->
+                val path = exchange.requestURI.path
+                requests += "${exchange.requestMethod} $path"
+                clientPorts += exchange.remoteAddress.port
+                val body = when (path) {
+                    "/short" -> {
+                        exchange.responseHeaders.add("Location", "/page")
+                        exchange.sendResponseHeaders(301, -1)
+                        null
+                    }
+                    "/moved" -> {
+                        exchange.responseHeaders.add("Location", "/page")
+                        exchange.sendResponseHeaders(302, -1)
+                        null
+                    }
+                    "/gone" -> {
+                        exchange.sendResponseHeaders(404, -1)
+                        null
+                    }
+                    "/validated" -> {
+                        exchange.responseHeaders.add("ETag", ETAG)
+                        if (exchange.requestHeaders.getFirst("If-None-Match") == ETAG) {
+                            exchange.sendResponseHeaders(304, -1)
+                            null
+                        } else {
+                            exchange.responseHeaders.add("Content-Type", "text/html")
+                            "<html><head><title>Validated</title></head></html>".toByteArray()
+                        }
+                    }
+                    "/image.png" -> {
+                        exchange.responseHeaders.add("Content-Type", "image/png")
+                        ByteArray(256)
+                    }
+                    else -> {
+                        Thread.sleep(PAGE_LATENCY_MS)
+                        exchange.responseHeaders.add("Content-Type", "text/html; charset=utf-8")
+                        "<html><head><title>Page</title></head><body>${"text ".repeat(200)}</body></html>".toByteArray()
+                    }
+                }
+                if (body != null) {
+                    exchange.sendResponseHeaders(200, body.size.toLong())
+                    exchange.responseBody.write(body)
+                }
+                exchange.close()
+            }
+            start()
+        }
+        baseUrl = "http://127.0.0.1:${server.address.port}"
+    }
+
+    @After
+    fun tearDown() {
+        server.stop(0)
+        executor.shutdownNow()
+    }
+
+    @Test
+    fun redirectsAreFollowedAndConnectionsKeptAlive() {
+        val metadata = WebsiteUtilities.headMetadata("$baseUrl/short")!!
+        assertEquals("Page", metadata.title)
+        assertEquals("$baseUrl/page", metadata.url)
+        assertEquals(listOf("GET /short", "GET /page"), requests)
+
+        // The JVM's HttpURLConnection drops connections after a redirect, unlike Android's, so only
+        // reuse after a page whose head was read is checked.
+        WebsiteUtilities.headMetadata("$baseUrl/page")
+        assertEquals(clientPorts[1], clientPorts[2])
+    }
+
+    @Test
+    fun nonHtmlResponsesHaveNoMetadata() {
+        assertNull(client().headMetadata("$baseUrl/image.png").toBlocking().firstOrDefault(null))
+    }
+
+    @Test
+    fun concurrentFetchesOfOnePageShareOneRequest() {
+        val client = client()
+        val urls = listOf("$baseUrl/page", "$baseUrl/page#comments", "HTTP://127.0.0.1:${server.address.port}/page")
+        val fetches = urls.map { client.headMetadata(it).subscribeOn(Schedulers.io()).toBlocking().toFuture() }
+
+        assertEquals(List(urls.size) { "Page" }, fetches.map { it.get().title })
+        assertEquals(listOf("GET /page"), requests)
+        eventually { client.inFlightCount() == 0 }
+
+        client.headMetadata("$baseUrl/page").toBlocking().single()
+        assertEquals(2, requests.size)
+    }
+
+    @Test
+    fun fetchesAreSharedOnlyOnceSubscribed() {
+        val client = client()
+        val unsubscribed = client.headMetadata("$baseUrl/page")
+        assertEquals(0, client.inFlightCount())
+
+        client.headMetadata("$baseUrl/page").toBlocking().single()
+        unsubscribed.toBlocking().single()
+        assertEquals(listOf("GET /page", "GET /page"), requests)
+        assertEquals(0, client.inFlightCount())
+    }
+
+    @Test
+    fun permanentRedirectsAreRemembered() {
+        val redirectCache = RedirectCache(null, TTL_MS, 10)
+        WebsiteUtilities.headMetadata("$baseUrl/short", redirectCache, null, null)
+        WebsiteUtilities.headMetadata("$baseUrl/moved", redirectCache, null, null)
+        assertEquals("$baseUrl/page", redirectCache.get("$baseUrl/short"))
+        assertNull(redirectCache.get("$baseUrl/moved"))
+
+        requests.clear()
+        assertEquals("Page", WebsiteUtilities.headMetadata("$baseUrl/short", redirectCache, null, null)!!.title)
+        assertEquals(listOf("GET /page"), requests)
+    }
+
+    @Test
+    fun staleRedirectsFallBackToTheOriginalUrl() {
+        val redirectCache = RedirectCache(null, TTL_MS, 10)
+        redirectCache.put("$baseUrl/short", "$baseUrl/gone", 0)
+
+        assertEquals("Page", WebsiteUtilities.headMetadata("$baseUrl/short", redirectCache, null, null)!!.title)
+        assertEquals(listOf("GET /gone", "GET /short", "GET /page"), requests)
+        assertEquals("$baseUrl/page", redirectCache.get("$baseUrl/short"))
+    }
+
+    @Test
+    fun unchangedPagesAreNotReadAgain() {
+        val client = client()
+        val fetched = client.headMetadata("$baseUrl/validated").toBlocking().single()
+        assertEquals("Validated", fetched.title)
+        assertEquals(ETAG, fetched.etag)
+
+        val revalidated = client.headMetadata("$baseUrl/validated", ETAG, null).toBlocking().single()
+        assertTrue(revalidated.notModified)
+        assertEquals(ETAG, revalidated.etag)
+        assertNull(revalidated.title)
+
+        val changed = client.headMetadata("$baseUrl/validated", "\"v0\"", null).toBlocking().single()
+        assertFalse(changed.notModified)
+        assertEquals("Validated", changed.title)
+    }
+
+    @Test
+    fun urlsOfOnePageNormalizeAlike() {
+        assertEquals("http://example.com/", FetchClient.normalize("HTTP://Example.COM:80#top"))
+        assertEquals("https://example.com:8443/a?b=c", FetchClient.normalize("https://EXAMPLE.com:8443/a?b=c#d"))
+        assertEquals("not a url", FetchClient.normalize("not a url"))
+    }
+
+    private fun client() = FetchClient(RedirectCache(null, TTL_MS, 10))
+
+    private fun eventually(condition: () -> Boolean) {
+        val deadline = System.currentTimeMillis() + 5_000
+        while (!condition()) {
+            assertTrue(System.currentTimeMillis() < deadline)
+            Thread.sleep(10)
+        }
+    }
+
+    companion object {
+        private const val PAGE_LATENCY_MS = 300L
+        private const val TTL_MS = 60_000L
+        private const val ETAG = "\"v1\""
+    }
+}
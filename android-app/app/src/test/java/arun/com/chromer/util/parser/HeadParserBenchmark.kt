@@ -0,0 +1,98 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.util.parser
+
+import com.chimbori.crux.articles.ArticleExtractor
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.InputStream
+import java.lang.management.ManagementFactory
+
+/**
+ * Bytes read, memory allocated and time taken to read website metadata. Runs only with
+ * -Pbenchmark.
+ */
+class HeadParserBenchmark {
+
+    /**
+     * Reads each page of the corpus, followed by a typical body, with the parser and with the
+     * previous path of reading the head line by line and extracting it with Crux, and prints the
+     * bytes each read, what each allocated and how long each took.
+     */
+    @Test
+    fun corpus() {
+        val threads = ManagementFactory.getThreadMXBean() as? com.sun.management.ThreadMXBean
+        val body = ("<div class=\"row\"><p>" + "Lorem ipsum dolor sit amet. ".repeat(20) + "</p></div>\n")
+                .repeat(BENCHMARK_BODY_BYTES / 600).toByteArray()
+        for (name in CORPUS) {
+            val page = resource(name) + body
+            val parser = measure(threads, page) { HeadParser.parse(it, BASE_URL, null, HeadParser.DEFAULT_BYTE_BUDGET) }
+            val previous = measure(threads, page) { input ->
+                ArticleExtractor.with(BASE_URL, lineByLineHead(input)).extractMetadata().article()
+            }
+            println("$name (${page.size} bytes): parser read ${parser.bytes}B, allocated ${parser.allocatedKb}KB " +
+                    "in ${parser.micros}us; previous read ${previous.bytes}B, allocated ${previous.allocatedKb}KB " +
+                    "in ${previous.micros}us")
+        }
+    }
+
+    private class Measurement(val bytes: Long, val allocatedKb: Long, val micros: Long)
+
+    private fun measure(threads: com.sun.management.ThreadMXBean?, page: ByteArray, read: (InputStream) -> Any): Measurement {
+        repeat(BENCHMARK_ROUNDS) { read(ByteArrayInputStream(page)) }
+        val thread = Thread.currentThread().id
+        val allocatedBefore = threads?.getThreadAllocatedBytes(thread) ?: 0
+        val start = System.nanoTime()
+        var bytes = 0L
+        repeat(BENCHMARK_ROUNDS) {
+            val input = HeadParserTest.CountingInputStream(ByteArrayInputStream(page))
+            read(input)
+            bytes = input.count
+        }
+        val micros = (System.nanoTime() - start) / 1000 / BENCHMARK_ROUNDS
+        val allocated = (threads?.getThreadAllocatedBytes(thread) ?: 0) - allocatedBefore
+        return Measurement(bytes, allocated / 1024 / BENCHMARK_ROUNDS, micros)
+    }
+
+    // How WebsiteUtilities read the head before HeadParser.
+    private fun lineByLineHead(input: InputStream): String {
+        val head = StringBuilder()
+        var insideHead = false
+        input.bufferedReader(Charsets.ISO_8859_1).use { reader ->
+            while (true) {
+                val line = reader.readLine() ?: break
+                if (line.contains("<head")) insideHead = true
+                if (insideHead) head.append(line)
+                if (line.contains("</head>")) break
+            }
+        }
+        return head.toString()
+    }
+
+    private fun resource(name: String) = javaClass.getResourceAsStream("/pages/$name").use { it.readBytes() }
+
+    companion object {
+        private const val BASE_URL = "https://site.example.com"
+        private const val BENCHMARK_BODY_BYTES = 300 * 1024
+        private const val BENCHMARK_ROUNDS = 50
+        // Pages whose head ends the way the previous path expects, as it fails on the others.
+        private val CORPUS = listOf("news-article.html", "legacy-blog.html", "single-page-app.html")
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.util.parser
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.FilterInputStream
+import java.io.InputStream
+
+class HeadParserTest {
+
+    @Test
+    fun readsHeadMetadata() {
+        val metadata = parse("news-article.html")
+        assertEquals("City council approves new cycling lanes & wider pavements | The Daily Example", metadata.title)
+        assertEquals("#052962", metadata.themeColor)
+        assertEquals("$BASE_URL/static/icons/apple-touch-icon-152.png", metadata.iconUrl())
+        assertEquals("$BASE_URL/static/icons/favicon.ico", metadata.faviconUrl)
+        assertEquals("https://news.example.com/uk/2019/oct/12/city-council-cycling-lanes", metadata.canonicalUrl)
+        assertEquals("https://amp.example.com/uk/2019/oct/12/city-council-cycling-lanes", metadata.ampUrl)
+        assertEquals("https://i.example.com/img/media/cycling/master/1200.jpg?width=1200&quality=85", metadata.openGraph["image"])
+        assertEquals("The Daily Example", metadata.openGraph["site_name"])
+    }
+
+    @Test
+    fun decodesWithDeclaredCharsetAndResolvesAgainstBase() {
+        val metadata = parse("legacy-blog.html")
+        assertEquals("Café reviews – Renée's blog", metadata.title)
+        assertEquals("Notes on espresso, naïvely rated.", metadata.description)
+        assertEquals("https://blog.example.org/renee/favicon.png", metadata.iconUrl())
+        assertNull(metadata.canonicalUrl)
+    }
+
+    @Test
+    fun stopsAtBodyWithoutHeadEnd() {
+        val metadata = parse("no-head-end.html")
+        assertEquals("Shop – Example Store", metadata.title)
+        assertEquals("#FF5722", metadata.themeColor)
+        assertEquals("https://cdn.example.net/touch.png", metadata.iconUrl())
+        assertEquals("$BASE_URL/products/42", metadata.canonicalUrl)
+        assertNull(metadata.ampUrl)
+    }
+
+    @Test
+    fun fallsBackToFaviconOfHost() {
+        val metadata = HeadParser.parse(ByteArrayInputStream("<head><title>x</title></head>".toByteArray()),
+                "https://example.com/a/b", null, HeadParser.DEFAULT_BYTE_BUDGET)
+        assertEquals("https://example.com/favicon.ico", metadata.iconUrl())
+    }
+
+    @Test
+    fun readsNoFurtherThanHeadOrBudget() {
+        val page = resource("single-page-app.html")
+        val padded = CountingInputStream(ByteArrayInputStream(page + ByteArray(1 shl 20) { 'x'.toByte() }))
+        val metadata = HeadParser.parse(padded, BASE_URL, null, HeadParser.DEFAULT_BYTE_BUDGET)
+        assertEquals("Dashboard — Example App", metadata.title)
+        assertTrue(padded.count <= page.size + 8 * 1024)
+
+        val endless = CountingInputStream(ByteArrayInputStream("<head><script>".toByteArray() + ByteArray(1 shl 20) { ';'.toByte() }))
+        HeadParser.parse(endless, BASE_URL, null, 4096)
+        assertEquals(4096, endless.count)
+    }
+
+    private fun parse(name: String) = HeadParser.parse(ByteArrayInputStream(resource(name)), BASE_URL, null,
+            HeadParser.DEFAULT_BYTE_BUDGET)
+
+    private fun resource(name: String) = javaClass.getResourceAsStream("/pages/$name").use { it.readBytes() }
+
+    internal class CountingInputStream(input: InputStream) : FilterInputStream(input) {
+        var count = 0L
+
+        override fun read(): Int {
+            val c = super.read()
+            if (c >= 0) count++
+            return c
+        }
+
+        override fun read(b: ByteArray, off: Int, len: Int): Int {
+            val n = super.read(b, off, len)
+            if (n > 0) count += n
+            return n
+        }
+    }
+
+    companion object {
+        private const val BASE_URL = "https://site.example.com"
+    }
+}
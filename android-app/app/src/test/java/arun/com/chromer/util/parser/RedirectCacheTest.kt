@@ -0,0 +1,66 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package arun.com.chromer.util.parser
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class RedirectCacheTest {
+
+    @Test
+    fun expiredRedirectsAreForgotten() {
+        val redirectCache = RedirectCache(null, 0, 10)
+        redirectCache.put("https://t.co/a", "https://example.com/a", 120)
+        assertNull(redirectCache.get("https://t.co/a"))
+        assertEquals("hits=0, misses=1, saved=0 ms, size=0/10", redirectCache.stats())
+    }
+
+    @Test
+    fun leastRecentlyResolvedRedirectsAreEvicted() {
+        val redirectCache = RedirectCache(null, 60_000, 2)
+        for (i in 0 until 3) {
+            redirectCache.put("https://bit.ly/$i", "https://example.com/$i", 100)
+            Thread.sleep(2)
+        }
+        assertNull(redirectCache.get("https://bit.ly/0"))
+        assertEquals("https://example.com/1", redirectCache.get("https://bit.ly/1"))
+        assertEquals("https://example.com/2", redirectCache.get("https://bit.ly/2"))
+        assertEquals("hits=2, misses=1, saved=200 ms, size=2/2", redirectCache.stats())
+    }
+
+    @Test
+    fun clearForgetsAllRedirects() {
+        val redirectCache = RedirectCache(null, 60_000, 10)
+        redirectCache.put("https://t.co/a", "https://example.com/a", 120)
+        redirectCache.clear()
+        assertNull(redirectCache.get("https://t.co/a"))
+    }
+
+    @Test
+    fun shortenersAreKnownByHost() {
+        assertTrue(RedirectCache.isShortener("https://t.co/abc"))
+        assertTrue(RedirectCache.isShortener("http://BIT.LY/abc"))
+        assertFalse(RedirectCache.isShortener("https://example.com/t.co"))
+        assertFalse(RedirectCache.isShortener("not a url"))
+    }
+}
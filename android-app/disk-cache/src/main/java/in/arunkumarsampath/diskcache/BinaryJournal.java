@@ -0,0 +1,379 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.arunkumarsampath.diskcache;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary form of the {@link DiskLruCache} journal.
+ * <p>
+ * The header is the magic bytes {@code D1 4C 52 55}, a format version byte, the application
+ * version as a big endian int, the value count as a varint and a CRC32 of the preceding header
+ * bytes.
+ * <p>
+ * Each record is an op byte, a key id varint, op specific data and a big endian CRC32 of the
+ * record bytes before it. Keys are interned: the first record that uses a key gives it the next
+ * free id and is followed by the key's length and ASCII bytes, later records only carry the id.
+ * CLEAN records end with one varint length per value. A record that is cut short or fails its
+ * CRC ends the journal, like an unterminated line does in the text format.
+ */
+final class BinaryJournal {
+    static final byte VERSION = 2;
+    static final int OP_CLEAN = 1;
+    static final int OP_DIRTY = 2;
+    static final int OP_REMOVE = 3;
+    static final int OP_READ = 4;
+    /**
+     * Returned by {@link Reader#next()} when there are no more records.
+     */
+    static final int END = -1;
+
+    private static final byte[] MAGIC = {(byte) 0xD1, 'L', 'R', 'U'};
+    private static final int MAX_KEY_LENGTH = 120;
+    private static final int MAX_VARINT_LENGTH = 10;
+    private static final int CRC_LENGTH = 4;
+
+    private BinaryJournal() {
+    }
+
+    /**
+     * Returns true if {@code file} starts with the binary journal magic.
+     */
+    static boolean isBinary(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            for (byte expected : MAGIC) {
+                if (in.read() != (expected & 0xff)) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static int maxRecordLength(int valueCount) {
+        return 1 + MAX_VARINT_LENGTH + MAX_VARINT_LENGTH + MAX_KEY_LENGTH
+                + valueCount * MAX_VARINT_LENGTH + CRC_LENGTH;
+    }
+
+    static final class Writer extends JournalWriter {
+        private final OutputStream out;
+        private final Map<String, Integer> keyIds;
+        private final CRC32 crc = new CRC32();
+        private byte[] record = new byte[64];
+        private int count;
+
+        /**
+         * @param keyIds ids of the keys already present in {@code file} when appending. New keys
+         *               are added to it as they are written.
+         */
+        Writer(File file, boolean append, Map<String, Integer> keyIds) throws IOException {
+            this.out = new BufferedOutputStream(new FileOutputStream(file, append));
+            this.keyIds = keyIds;
+        }
+
+        @Override
+        void writeHeader(int appVersion, int valueCount) throws IOException {
+            begin(MAGIC.length + 1 + 4 + MAX_VARINT_LENGTH);
+            for (byte b : MAGIC) {
+                record[count++] = b;
+            }
+            record[count++] = VERSION;
+            record[count++] = (byte) (appVersion >>> 24);
+            record[count++] = (byte) (appVersion >>> 16);
+            record[count++] = (byte) (appVersion >>> 8);
+            record[count++] = (byte) appVersion;
+            putVarint(valueCount);
+            end();
+        }
+
+        @Override
+        void writeDirty(String key) throws IOException {
+            writeKeyRecord(OP_DIRTY, key, null);
+        }
+
+        @Override
+        void writeClean(String key, long[] lengths) throws IOException {
+            writeKeyRecord(OP_CLEAN, key, lengths);
+        }
+
+        @Override
+        void writeRemove(String key) throws IOException {
+            writeKeyRecord(OP_REMOVE, key, null);
+        }
+
+        @Override
+        void writeRead(String key) throws IOException {
+            writeKeyRecord(OP_READ, key, null);
+        }
+
+        private void writeKeyRecord(int op, String key, long[] lengths) throws IOException {
+            begin(maxRecordLength(lengths == null ? 0 : lengths.length) + key.length());
+            record[count++] = (byte) op;
+            Integer id = keyIds.get(key);
+            if (id == null) {
+                id = keyIds.size();
+                keyIds.put(key, id);
+                putVarint(id);
+                putVarint(key.length());
+                for (int i = 0; i < key.length(); i++) {
+                    record[count++] = (byte) key.charAt(i);
+                }
+            } else {
+                putVarint(id);
+            }
+            if (lengths != null) {
+                for (long length : lengths) {
+                    putVarint(length);
+                }
+            }
+            end();
+        }
+
+        private void begin(int maxLength) {
+            if (record.length < maxLength) {
+                record = new byte[maxLength];
+            }
+            count = 0;
+        }
+
+        private void putVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                record[count++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            record[count++] = (byte) value;
+        }
+
+        private void end() throws IOException {
+            crc.reset();
+            crc.update(record, 0, count);
+            long checksum = crc.getValue();
+            record[count++] = (byte) (checksum >>> 24);
+            record[count++] = (byte) (checksum >>> 16);
+            record[count++] = (byte) (checksum >>> 8);
+            record[count++] = (byte) checksum;
+            out.write(record, 0, count);
+        }
+
+        @Override
+        void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads records one at a time. After {@link #next()} returns an op, {@link #key()} and, for
+     * CLEAN records, {@link #lengths()} describe the record.
+     */
+    static final class Reader implements Closeable {
+        private final InputStream in;
+        private final int valueCount;
+        private final int maxRecordLength;
+        private final CRC32 crc = new CRC32();
+        private final List<String> keys = new ArrayList<>();
+        private final Map<String, Integer> keyIds = new HashMap<>();
+        private final long[] lengths;
+        private final byte[] buf = new byte[64 * 1024];
+        private int pos;
+        private int limit;
+        private boolean eof;
+        private boolean truncated;
+        private String key;
+
+        Reader(File file, int valueCount) throws IOException {
+            this.in = new FileInputStream(file);
+            this.valueCount = valueCount;
+            this.maxRecordLength = maxRecordLength(valueCount);
+            this.lengths = new long[valueCount];
+        }
+
+        /**
+         * Reads and checks the header, throwing if it is damaged or written for another app
+         * version or value count.
+         */
+        void readHeader(int appVersion) throws IOException {
+            fill(MAGIC.length + 1 + 4 + MAX_VARINT_LENGTH + CRC_LENGTH);
+            int start = pos;
+            try {
+                for (byte b : MAGIC) {
+                    if (buf[pos++] != b) {
+                        throw new IOException("unexpected journal magic");
+                    }
+                }
+                int version = buf[pos++];
+                int storedAppVersion = ((buf[pos++] & 0xff) << 24) | ((buf[pos++] & 0xff) << 16)
+                        | ((buf[pos++] & 0xff) << 8) | (buf[pos++] & 0xff);
+                long storedValueCount = readVarint();
+                checkCrc(start);
+                if (version != VERSION || storedAppVersion != appVersion || storedValueCount != valueCount) {
+                    throw new IOException("unexpected journal header: [" + version + ", "
+                            + storedAppVersion + ", " + storedValueCount + "]");
+                }
+            } catch (EOFException | ArrayIndexOutOfBoundsException e) {
+                throw new IOException("truncated journal header");
+            }
+        }
+
+        /**
+         * Returns the op of the next record, or {@link #END} at the end of the journal or at the
+         * first damaged record.
+         */
+        int next() throws IOException {
+            fill(maxRecordLength);
+            if (pos == limit) {
+                return END;
+            }
+            int start = pos;
+            try {
+                int op = buf[pos++];
+                if (op < OP_CLEAN || op > OP_READ) {
+                    throw new EOFException("unknown op " + op);
+                }
+                long id = readVarint();
+                if (id == keys.size()) {
+                    int length = (int) readVarint();
+                    if (length <= 0 || length > MAX_KEY_LENGTH || pos + length > limit) {
+                        throw new EOFException("bad key length " + length);
+                    }
+                    key = new String(buf, pos, length, DiskCacheUtil.US_ASCII);
+                    pos += length;
+                } else if (id >= 0 && id < keys.size()) {
+                    key = keys.get((int) id);
+                } else {
+                    throw new EOFException("unknown key id " + id);
+                }
+                if (op == OP_CLEAN) {
+                    for (int i = 0; i < valueCount; i++) {
+                        lengths[i] = readVarint();
+                    }
+                }
+                checkCrc(start);
+                if (id == keys.size()) {
+                    keyIds.put(key, keys.size());
+                    keys.add(key);
+                }
+                return op;
+            } catch (EOFException e) {
+                truncated = true;
+                return END;
+            }
+        }
+
+        String key() {
+            return key;
+        }
+
+        long[] lengths() {
+            return lengths;
+        }
+
+        /**
+         * Returns true if reading stopped at a record that was cut short or corrupt.
+         */
+        boolean isTruncated() {
+            return truncated;
+        }
+
+        /**
+         * Returns the key table read so far, for a writer that appends to the same file.
+         */
+        Map<String, Integer> keyIds() {
+            return keyIds;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private long readVarint() throws EOFException {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (pos >= limit) {
+                    throw new EOFException();
+                }
+                byte b = buf[pos++];
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new EOFException("malformed varint");
+        }
+
+        private void checkCrc(int start) throws EOFException {
+            if (pos + CRC_LENGTH > limit) {
+                throw new EOFException();
+            }
+            crc.reset();
+            crc.update(buf, start, pos - start);
+            long expected = ((buf[pos] & 0xffL) << 24) | ((buf[pos + 1] & 0xffL) << 16)
+                    | ((buf[pos + 2] & 0xffL) << 8) | (buf[pos + 3] & 0xffL);
+            pos += CRC_LENGTH;
+            if (crc.getValue() != expected) {
+                throw new EOFException("record checksum mismatch");
+            }
+        }
+
+        /**
+         * Makes at least {@code length} bytes available from {@code pos}, unless the file ends.
+         */
+        private void fill(int length) throws IOException {
+            if (limit - pos >= length || eof) {
+                return;
+            }
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+            while (limit < buf.length) {
+                int read = in.read(buf, limit, buf.length - limit);
+                if (read == -1) {
+                    eof = true;
+                    break;
+                }
+                limit += read;
+                if (limit >= length) {
+                    break;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.arunkumarsampath.diskcache;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Holds a {@link DiskLruCache} that may still be opening on another thread. Callers either wait
+ * for the journal to be loaded or, for reads under {@link ParcelDiskCache.LoadPolicy#MISS}, get
+ * no cache and treat the lookup as a miss.
+ */
+final class CacheLoader {
+    private final CountDownLatch loaded = new CountDownLatch(1);
+    private final ParcelDiskCache.LoadPolicy loadPolicy;
+    private volatile DiskLruCache cache;
+
+    CacheLoader(ParcelDiskCache.LoadPolicy loadPolicy) {
+        this.loadPolicy = loadPolicy;
+    }
+
+    /**
+     * Opens the cache with {@code opener} and releases every waiting caller, also when opening
+     * fails. Must be called once.
+     */
+    void load(Opener opener) throws IOException {
+        try {
+            cache = opener.open();
+        } finally {
+            loaded.countDown();
+        }
+    }
+
+    boolean isLoaded() {
+        return loaded.getCount() == 0;
+    }
+
+    /**
+     * Returns the cache for a write, waiting for it to load. Returns null if opening failed or the
+     * wait was interrupted.
+     */
+    DiskLruCache forWrite() {
+        try {
+            loaded.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        return cache;
+    }
+
+    /**
+     * Returns the cache for a read. While loading, waits under {@link ParcelDiskCache.LoadPolicy#BLOCK}
+     * and returns null under {@link ParcelDiskCache.LoadPolicy#MISS}.
+     */
+    DiskLruCache forRead() {
+        if (loadPolicy == ParcelDiskCache.LoadPolicy.MISS && !isLoaded()) {
+            return null;
+        }
+        return forWrite();
+    }
+
+    interface Opener {
+        DiskLruCache open() throws IOException;
+    }
+}
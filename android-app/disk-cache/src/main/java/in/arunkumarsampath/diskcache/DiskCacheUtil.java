@@ -19,9 +19,12 @@
 
 package in.arunkumarsampath.diskcache;
 
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
 import java.io.StringWriter;
 import java.nio.charset.Charset;
@@ -50,6 +53,51 @@ final class DiskCacheUtil {
         }
     }
 
+    /**
+     * Reads {@code is} to the end by copying it in chunks through a growing buffer. Used when the
+     * length of the stream is not known up front.
+     */
+    static byte[] readBytes(InputStream is) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try {
+            byte[] data = new byte[1024];
+            int count;
+            while ((count = is.read(data, 0, data.length)) != -1) {
+                buffer.write(data, 0, count);
+            }
+            return buffer.toByteArray();
+        } finally {
+            is.close();
+        }
+    }
+
+    /**
+     * Reads exactly {@code length} bytes from {@code is} into a single buffer allocated up front.
+     * Throws an IOException if the stream ends early or holds more than {@code length} bytes.
+     */
+    static byte[] readBytes(InputStream is, long length) throws IOException {
+        if (length < 0 || length > Integer.MAX_VALUE - 8) {
+            return readBytes(is);
+        }
+        try {
+            byte[] data = new byte[(int) length];
+            int offset = 0;
+            while (offset < data.length) {
+                int count = is.read(data, offset, data.length - offset);
+                if (count == -1) {
+                    throw new EOFException("expected " + length + " bytes but read " + offset);
+                }
+                offset += count;
+            }
+            if (is.read() != -1) {
+                throw new IOException("stream is longer than " + length + " bytes");
+            }
+            return data;
+        } finally {
+            is.close();
+        }
+    }
+
     /**
      * Deletes the contents of {@code dir}. Throws an IOException if any file
      * could not be deleted, or if {@code dir} is not a readable directory.
@@ -20,8 +20,8 @@
 package in.arunkumarsampath.diskcache;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
-import java.io.BufferedWriter;
 import java.io.Closeable;
 import java.io.EOFException;
 import java.io.File;
@@ -36,11 +36,20 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
@@ -94,15 +103,16 @@ public final class DiskLruCache implements Closeable {
     static final String JOURNAL_FILE = "journal";
     static final String JOURNAL_FILE_TEMP = "journal.tmp";
     static final String JOURNAL_FILE_BACKUP = "journal.bkp";
+    static final String JOURNAL_FILE_GROUP_COMMIT = "journal.gc";
     static final String MAGIC = "libcore.io.DiskLruCache";
     static final String VERSION_1 = "1";
     static final long ANY_SEQUENCE_NUMBER = -1;
     static final String STRING_KEY_PATTERN = "[a-z0-9_-]{1,120}";
     static final Pattern LEGAL_KEY_PATTERN = Pattern.compile(STRING_KEY_PATTERN);
-    private static final String CLEAN = "CLEAN";
-    private static final String DIRTY = "DIRTY";
-    private static final String REMOVE = "REMOVE";
-    private static final String READ = "READ";
+    static final String CLEAN = "CLEAN";
+    static final String DIRTY = "DIRTY";
+    static final String REMOVE = "REMOVE";
+    static final String READ = "READ";
 
     /*
      * This cache uses a journal file named "journal". A typical journal file
@@ -142,21 +152,57 @@ public final class DiskLruCache implements Closeable {
      * occasionally be compacted by dropping redundant lines. A temporary file named
      * "journal.tmp" will be used during compaction; that file should be deleted if
      * it exists when the cache is opened.
+     *
+     * In group commit mode (see setGroupCommit) journal lines are buffered and
+     * written out together, so a crash may lose the most recent lines or leave a
+     * torn last line. A torn line is unterminated and is ignored when reading.
+     * While the mode is on, a marker file named "journal.gc" exists; if it is
+     * still present on open, the previous session may have lost lines and files
+     * that the journal does not track are deleted.
+     *
+     * New journals are written in the compact binary format described in
+     * BinaryJournal, which interns keys and protects every record with a CRC32.
+     * The format is detected from the first bytes of the file; a text journal is
+     * read as above and rewritten in the binary format on open.
      */
 
     private final File directory;
     private final File journalFile;
     private final File journalFileTmp;
     private final File journalFileBackup;
+    private final File journalFileGroupCommit;
     private final int appVersion;
     private long maxSize;
     private final int valueCount;
     private long size = 0;
-    private Writer journalWriter;
+    private final boolean binaryJournal;
+    private JournalWriter journalWriter;
+    /**
+     * True when the journal read on open ended in a torn or corrupt record.
+     */
+    private boolean journalTruncated;
     private final LinkedHashMap<String, Entry> lruEntries =
             new LinkedHashMap<>(0, 0.75f, true);
+    /**
+     * The entries of {@link #lruEntries} sorted by key, so that prefix queries only visit matching
+     * keys and do not disturb the access order.
+     */
+    private final TreeMap<String, Entry> sortedEntries = new TreeMap<>();
     private int redundantOpCount;
 
+    /**
+     * Group commit settings. When {@code groupCommitDelayMs} is positive, journal lines are
+     * flushed at most that long after being written, or once {@code groupCommitMaxOps} lines are
+     * pending, instead of after every edit.
+     */
+    private long groupCommitDelayMs = 0;
+    private int groupCommitMaxOps;
+    private int pendingJournalOps;
+    private boolean journalFlushScheduled;
+    private ScheduledExecutorService journalFlushExecutor;
+    // Whether journalFlushExecutor was created by this cache, and so is shut down with it.
+    private boolean ownsJournalFlushExecutor;
+
     /**
      * To differentiate between old and current snapshots, each entry is given
      * a sequence number each time an edit is committed. A snapshot is stale if
@@ -169,6 +215,29 @@ public final class DiskLruCache implements Closeable {
      */
     final ThreadPoolExecutor executorService =
             new ThreadPoolExecutor(0, 1, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+    private static final ThreadFactory JOURNAL_FLUSH_THREAD_FACTORY = new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            final Thread thread = new Thread(runnable, "DiskLruCache journal flush");
+            // Pending lines are written by close, so the thread need not keep the process alive.
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+    private final Runnable journalFlushRunnable = new Runnable() {
+        public void run() {
+            synchronized (DiskLruCache.this) {
+                journalFlushScheduled = false;
+                if (journalWriter == null) {
+                    return; // Closed.
+                }
+                try {
+                    writeJournal();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    };
     private final Callable<Void> cleanupCallable = new Callable<Void>() {
         public Void call() throws Exception {
             synchronized (DiskLruCache.this) {
@@ -185,12 +254,14 @@ public final class DiskLruCache implements Closeable {
         }
     };
 
-    private DiskLruCache(File directory, int appVersion, int valueCount, long maxSize) {
+    private DiskLruCache(File directory, int appVersion, int valueCount, long maxSize, boolean binaryJournal) {
         this.directory = directory;
+        this.binaryJournal = binaryJournal;
         this.appVersion = appVersion;
         this.journalFile = new File(directory, JOURNAL_FILE);
         this.journalFileTmp = new File(directory, JOURNAL_FILE_TEMP);
         this.journalFileBackup = new File(directory, JOURNAL_FILE_BACKUP);
+        this.journalFileGroupCommit = new File(directory, JOURNAL_FILE_GROUP_COMMIT);
         this.valueCount = valueCount;
         this.maxSize = maxSize;
     }
@@ -206,6 +277,16 @@ public final class DiskLruCache implements Closeable {
      */
     public static DiskLruCache open(File directory, int appVersion, int valueCount, long maxSize)
             throws IOException {
+        return open(directory, appVersion, valueCount, maxSize, true);
+    }
+
+    /**
+     * Like {@link #open(File, int, int, long)}, writing the journal in the binary format when
+     * {@code binaryJournal} is true and in the original text format otherwise. An existing journal
+     * in the other format is read and rewritten.
+     */
+    static DiskLruCache open(File directory, int appVersion, int valueCount, long maxSize,
+                             boolean binaryJournal) throws IOException {
         if (maxSize <= 0) {
             throw new IllegalArgumentException("maxSize <= 0");
         }
@@ -227,11 +308,14 @@ public final class DiskLruCache implements Closeable {
         }
 
         // Prefer to pick up where we left off.
-        DiskLruCache cache = new DiskLruCache(directory, appVersion, valueCount, maxSize);
+        DiskLruCache cache = new DiskLruCache(directory, appVersion, valueCount, maxSize, binaryJournal);
         if (cache.journalFile.exists()) {
             try {
                 cache.readJournal();
                 cache.processJournal();
+                if (cache.journalTruncated || cache.journalFileGroupCommit.exists()) {
+                    cache.deleteUntrackedFiles();
+                }
                 return cache;
             } catch (IOException journalIsCorrupt) {
                 System.out
@@ -247,12 +331,69 @@ public final class DiskLruCache implements Closeable {
         // Create a new empty cache.
         //noinspection ResultOfMethodCallIgnored
         directory.mkdirs();
-        cache = new DiskLruCache(directory, appVersion, valueCount, maxSize);
+        cache = new DiskLruCache(directory, appVersion, valueCount, maxSize, binaryJournal);
         cache.rebuildJournal();
         return cache;
     }
 
     private void readJournal() throws IOException {
+        if (BinaryJournal.isBinary(journalFile)) {
+            readBinaryJournal();
+        } else {
+            readTextJournal();
+        }
+    }
+
+    private void readBinaryJournal() throws IOException {
+        BinaryJournal.Reader reader = new BinaryJournal.Reader(journalFile, valueCount);
+        try {
+            reader.readHeader(appVersion);
+
+            int recordCount = 0;
+            int op;
+            while ((op = reader.next()) != BinaryJournal.END) {
+                readJournalRecord(op, reader.key(), reader.lengths());
+                recordCount++;
+            }
+            redundantOpCount = recordCount - lruEntries.size();
+            journalTruncated = reader.isTruncated();
+
+            // Rewrite the journal if it ended on a damaged record or a text journal was asked for.
+            if (journalTruncated || !binaryJournal) {
+                rebuildJournal();
+            } else {
+                journalWriter = new BinaryJournal.Writer(journalFile, true, reader.keyIds());
+            }
+        } finally {
+            DiskCacheUtil.closeQuietly(reader);
+        }
+    }
+
+    private void readJournalRecord(int op, String key, long[] lengths) {
+        if (op == BinaryJournal.OP_REMOVE) {
+            lruEntries.remove(key);
+            sortedEntries.remove(key);
+            return;
+        }
+
+        Entry entry = lruEntries.get(key);
+        if (entry == null) {
+            entry = new Entry(key);
+            lruEntries.put(key, entry);
+            sortedEntries.put(key, entry);
+        }
+
+        if (op == BinaryJournal.OP_CLEAN) {
+            entry.readable = true;
+            entry.currentEditor = null;
+            System.arraycopy(lengths, 0, entry.lengths, 0, valueCount);
+        } else if (op == BinaryJournal.OP_DIRTY) {
+            entry.currentEditor = new Editor(entry);
+        }
+        // READ: this work was already done by calling lruEntries.get().
+    }
+
+    private void readTextJournal() throws IOException {
         StrictLineReader reader = new StrictLineReader(new FileInputStream(journalFile), DiskCacheUtil.US_ASCII);
         try {
             String magic = reader.readLine();
@@ -280,12 +421,13 @@ public final class DiskLruCache implements Closeable {
             }
             redundantOpCount = lineCount - lruEntries.size();
 
-            // If we ended on a truncated line, rebuild the journal before appending to it.
-            if (reader.hasUnterminatedLine()) {
+            // If we ended on a truncated line, rebuild the journal before appending to it. Text
+            // journals are also rebuilt to migrate them to the binary format.
+            journalTruncated = reader.hasUnterminatedLine();
+            if (journalTruncated || binaryJournal) {
                 rebuildJournal();
             } else {
-                journalWriter = new BufferedWriter(new OutputStreamWriter(
-                        new FileOutputStream(journalFile, true), DiskCacheUtil.US_ASCII));
+                journalWriter = new JournalWriter.Text(journalFile, true);
             }
         } finally {
             DiskCacheUtil.closeQuietly(reader);
@@ -305,6 +447,7 @@ public final class DiskLruCache implements Closeable {
             key = line.substring(keyBegin);
             if (firstSpace == REMOVE.length() && line.startsWith(REMOVE)) {
                 lruEntries.remove(key);
+                sortedEntries.remove(key);
                 return;
             }
         } else {
@@ -315,6 +458,7 @@ public final class DiskLruCache implements Closeable {
         if (entry == null) {
             entry = new Entry(key);
             lruEntries.put(key, entry);
+            sortedEntries.put(key, entry);
         }
 
         if (secondSpace != -1 && firstSpace == CLEAN.length() && line.startsWith(CLEAN)) {
@@ -350,6 +494,30 @@ public final class DiskLruCache implements Closeable {
                     deleteIfExists(entry.getDirtyFile(t));
                 }
                 i.remove();
+                sortedEntries.remove(entry.key);
+            }
+        }
+    }
+
+    /**
+     * Deletes files that no journal entry accounts for. They are left behind when a crash loses
+     * buffered journal lines of entries that were being created.
+     */
+    private void deleteUntrackedFiles() throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.equals(JOURNAL_FILE) || name.equals(JOURNAL_FILE_TEMP)
+                    || name.equals(JOURNAL_FILE_BACKUP) || name.equals(JOURNAL_FILE_GROUP_COMMIT)) {
+                continue;
+            }
+            int dot = name.indexOf('.');
+            String key = dot == -1 ? name : name.substring(0, dot);
+            if (name.endsWith(".tmp") || !sortedEntries.containsKey(key)) {
+                deleteIfExists(file);
             }
         }
     }
@@ -363,24 +531,15 @@ public final class DiskLruCache implements Closeable {
             journalWriter.close();
         }
 
-        Writer writer = new BufferedWriter(
-                new OutputStreamWriter(new FileOutputStream(journalFileTmp), DiskCacheUtil.US_ASCII));
+        Map<String, Integer> keyIds = new HashMap<>();
+        JournalWriter writer = newJournalWriter(journalFileTmp, false, keyIds);
         try {
-            writer.write(MAGIC);
-            writer.write("\n");
-            writer.write(VERSION_1);
-            writer.write("\n");
-            writer.write(Integer.toString(appVersion));
-            writer.write("\n");
-            writer.write(Integer.toString(valueCount));
-            writer.write("\n");
-            writer.write("\n");
-
+            writer.writeHeader(appVersion, valueCount);
             for (Entry entry : lruEntries.values()) {
                 if (entry.currentEditor != null) {
-                    writer.write(DIRTY + ' ' + entry.key + '\n');
+                    writer.writeDirty(entry.key);
                 } else {
-                    writer.write(CLEAN + ' ' + entry.key + entry.getLengths() + '\n');
+                    writer.writeClean(entry.key, entry.lengths);
                 }
             }
         } finally {
@@ -394,8 +553,18 @@ public final class DiskLruCache implements Closeable {
         //noinspection ResultOfMethodCallIgnored
         journalFileBackup.delete();
 
-        journalWriter = new BufferedWriter(
-                new OutputStreamWriter(new FileOutputStream(journalFile, true), DiskCacheUtil.US_ASCII));
+        journalWriter = newJournalWriter(journalFile, true, keyIds);
+        pendingJournalOps = 0;
+    }
+
+    /**
+     * @param keyIds key ids already written to {@code file}, shared with the binary writer
+     */
+    private JournalWriter newJournalWriter(File file, boolean append, Map<String, Integer> keyIds)
+            throws IOException {
+        return binaryJournal
+                ? new BinaryJournal.Writer(file, append, keyIds)
+                : new JournalWriter.Text(file, append);
     }
 
     private static void deleteIfExists(File file) throws IOException {
@@ -451,12 +620,14 @@ public final class DiskLruCache implements Closeable {
         }
 
         redundantOpCount++;
-        journalWriter.append(READ + ' ').append(key).append('\n');
+        journalWriter.writeRead(key);
         if (journalRebuildRequired()) {
             executorService.submit(cleanupCallable);
         }
 
-        return new Snapshot(key, entry.sequenceNumber, ins, entry.lengths);
+        // Copy the lengths: later edits and removals of this entry update them in place, while the
+        // streams opened above keep reading the files as they were published.
+        return new Snapshot(key, entry.sequenceNumber, ins, entry.lengths.clone());
     }
 
     /**
@@ -478,6 +649,7 @@ public final class DiskLruCache implements Closeable {
         if (entry == null) {
             entry = new Entry(key);
             lruEntries.put(key, entry);
+            sortedEntries.put(key, entry);
         } else if (entry.currentEditor != null) {
             return null; // Another edit is in progress.
         }
@@ -485,12 +657,128 @@ public final class DiskLruCache implements Closeable {
         Editor editor = new Editor(entry);
         entry.currentEditor = editor;
 
-        // Flush the journal before creating files to prevent file leaks.
-        journalWriter.write(DIRTY + ' ' + key + '\n');
-        journalWriter.flush();
+        // Flush the journal before creating files to prevent file leaks. In group commit mode,
+        // leaked files are deleted on the next open instead.
+        journalWriter.writeDirty(key);
+        flushJournal();
         return editor;
     }
 
+    /**
+     * Returns the keys of all readable entries in ascending order. The returned list is a copy and
+     * does not change as the cache is modified. Listing keys does not affect LRU order.
+     */
+    public List<String> keys() {
+        return keys(null);
+    }
+
+    /**
+     * Returns the keys of readable entries that start with {@code prefix} in ascending order, or
+     * all keys if {@code prefix} is null or empty. Only keys in the matching range are visited.
+     */
+    public synchronized List<String> keys(String prefix) {
+        checkNotClosed();
+        final SortedMap<String, Entry> range = prefix == null || prefix.isEmpty()
+                ? sortedEntries
+                : sortedEntries.subMap(prefix, prefix + Character.MAX_VALUE);
+        if (range.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final List<String> keys = new ArrayList<>(range.size());
+        for (Entry entry : range.values()) {
+            if (entry.readable) {
+                keys.add(entry.key);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Enables group commit of journal writes. Lines written by edits are flushed together at most
+     * {@code delayMs} after being written, or as soon as {@code maxPendingOps} lines are waiting,
+     * rather than once per edit. Passing a {@code delayMs} of zero or less flushes after every
+     * edit again.
+     * <p>
+     * This trades the last {@code delayMs} of journal history on a crash for fewer writes. The
+     * cache stays consistent: lost lines only drop recent entries, and their files are deleted
+     * the next time the cache is opened.
+     * <p>
+     * Delayed flushes run on a daemon thread of this cache, see
+     * {@link #setGroupCommit(long, int, ScheduledExecutorService)} to run them on a shared one.
+     */
+    public void setGroupCommit(long delayMs, int maxPendingOps) throws IOException {
+        setGroupCommit(delayMs, maxPendingOps, null);
+    }
+
+    /**
+     * {@link #setGroupCommit(long, int)} with delayed flushes run on {@code scheduler}, which
+     * this cache does not shut down. A null {@code scheduler} gives the cache a thread of its own.
+     */
+    public synchronized void setGroupCommit(long delayMs, int maxPendingOps,
+                                            @Nullable ScheduledExecutorService scheduler) throws IOException {
+        checkNotClosed();
+        if (delayMs > 0 && maxPendingOps <= 0) {
+            throw new IllegalArgumentException("maxPendingOps <= 0");
+        }
+        this.groupCommitDelayMs = delayMs;
+        this.groupCommitMaxOps = maxPendingOps;
+        if (delayMs > 0) {
+            if (scheduler == null ? !ownsJournalFlushExecutor : scheduler != journalFlushExecutor) {
+                // A flush scheduled on the previous executor may never run, so write now.
+                shutdownJournalFlushExecutor();
+                writeJournal();
+                if (scheduler == null) {
+                    journalFlushExecutor = new ScheduledThreadPoolExecutor(1, JOURNAL_FLUSH_THREAD_FACTORY);
+                    ownsJournalFlushExecutor = true;
+                } else {
+                    journalFlushExecutor = scheduler;
+                }
+            }
+            if (!journalFileGroupCommit.exists() && !journalFileGroupCommit.createNewFile()) {
+                throw new IOException("failed to create " + journalFileGroupCommit);
+            }
+        } else {
+            writeJournal();
+        }
+    }
+
+    /**
+     * Called after each journal line of an edit. Writes the journal out now, or in group commit
+     * mode once enough lines are pending or the group commit delay has passed.
+     */
+    private void flushJournal() throws IOException {
+        if (groupCommitDelayMs <= 0) {
+            journalWriter.flush();
+            return;
+        }
+        pendingJournalOps++;
+        if (pendingJournalOps >= groupCommitMaxOps) {
+            writeJournal();
+        } else if (!journalFlushScheduled) {
+            try {
+                journalFlushExecutor.schedule(journalFlushRunnable, groupCommitDelayMs, TimeUnit.MILLISECONDS);
+                journalFlushScheduled = true;
+            } catch (RejectedExecutionException e) {
+                // A shared scheduler that was shut down first, so nothing will flush later.
+                writeJournal();
+            }
+        }
+    }
+
+    private void shutdownJournalFlushExecutor() {
+        if (ownsJournalFlushExecutor) {
+            journalFlushExecutor.shutdownNow();
+        }
+        journalFlushExecutor = null;
+        ownsJournalFlushExecutor = false;
+        journalFlushScheduled = false;
+    }
+
+    private void writeJournal() throws IOException {
+        pendingJournalOps = 0;
+        journalWriter.flush();
+    }
+
     /**
      * Returns the directory where this cache stores its data.
      */
@@ -565,15 +853,16 @@ public final class DiskLruCache implements Closeable {
         entry.currentEditor = null;
         if (entry.readable | success) {
             entry.readable = true;
-            journalWriter.write(CLEAN + ' ' + entry.key + entry.getLengths() + '\n');
+            journalWriter.writeClean(entry.key, entry.lengths);
             if (success) {
                 entry.sequenceNumber = nextSequenceNumber++;
             }
         } else {
             lruEntries.remove(entry.key);
-            journalWriter.write(REMOVE + ' ' + entry.key + '\n');
+            sortedEntries.remove(entry.key);
+            journalWriter.writeRemove(entry.key);
         }
-        journalWriter.flush();
+        flushJournal();
 
         if (size > maxSize || journalRebuildRequired()) {
             executorService.submit(cleanupCallable);
@@ -614,8 +903,9 @@ public final class DiskLruCache implements Closeable {
         }
 
         redundantOpCount++;
-        journalWriter.append(REMOVE + ' ').append(key).append('\n');
+        journalWriter.writeRemove(key);
         lruEntries.remove(key);
+        sortedEntries.remove(key);
 
         if (journalRebuildRequired()) {
             executorService.submit(cleanupCallable);
@@ -643,7 +933,7 @@ public final class DiskLruCache implements Closeable {
     public synchronized void flush() throws IOException {
         checkNotClosed();
         trimToSize();
-        journalWriter.flush();
+        writeJournal();
     }
 
     /**
@@ -661,6 +951,10 @@ public final class DiskLruCache implements Closeable {
         trimToSize();
         journalWriter.close();
         journalWriter = null;
+        shutdownJournalFlushExecutor();
+        // Every journal line is on disk now, so the next open need not look for leaked files.
+        //noinspection ResultOfMethodCallIgnored
+        journalFileGroupCommit.delete();
     }
 
     private void trimToSize() throws IOException {
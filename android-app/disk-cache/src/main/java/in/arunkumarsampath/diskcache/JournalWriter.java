@@ -0,0 +1,107 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.arunkumarsampath.diskcache;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Appends records to a {@link DiskLruCache} journal. Records are buffered until {@link #flush()}.
+ */
+abstract class JournalWriter implements Closeable {
+
+    /**
+     * Writes the journal header. Must be the first call on a writer for a new journal file.
+     */
+    abstract void writeHeader(int appVersion, int valueCount) throws IOException;
+
+    abstract void writeDirty(String key) throws IOException;
+
+    abstract void writeClean(String key, long[] lengths) throws IOException;
+
+    abstract void writeRemove(String key) throws IOException;
+
+    abstract void writeRead(String key) throws IOException;
+
+    abstract void flush() throws IOException;
+
+    /**
+     * Writer for the original line based text journal.
+     */
+    static final class Text extends JournalWriter {
+        private final Writer writer;
+
+        Text(File file, boolean append) throws IOException {
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, append), DiskCacheUtil.US_ASCII));
+        }
+
+        @Override
+        void writeHeader(int appVersion, int valueCount) throws IOException {
+            writer.write(DiskLruCache.MAGIC);
+            writer.write("\n");
+            writer.write(DiskLruCache.VERSION_1);
+            writer.write("\n");
+            writer.write(Integer.toString(appVersion));
+            writer.write("\n");
+            writer.write(Integer.toString(valueCount));
+            writer.write("\n");
+            writer.write("\n");
+        }
+
+        @Override
+        void writeDirty(String key) throws IOException {
+            writer.write(DiskLruCache.DIRTY + ' ' + key + '\n');
+        }
+
+        @Override
+        void writeClean(String key, long[] lengths) throws IOException {
+            StringBuilder line = new StringBuilder(DiskLruCache.CLEAN).append(' ').append(key);
+            for (long length : lengths) {
+                line.append(' ').append(length);
+            }
+            writer.write(line.append('\n').toString());
+        }
+
+        @Override
+        void writeRemove(String key) throws IOException {
+            writer.append(DiskLruCache.REMOVE + ' ').append(key).append('\n');
+        }
+
+        @Override
+        void writeRead(String key) throws IOException {
+            writer.append(DiskLruCache.READ + ' ').append(key).append('\n');
+        }
+
+        @Override
+        void flush() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.arunkumarsampath.diskcache;
+
+/**
+ * Fixed set of monitors that cache keys are hashed onto. Two writes to the same key always share
+ * a lock, while writes to different keys usually do not. Unlike locking on interned strings, the
+ * locks are private to one cache and the memory used does not grow with the number of keys.
+ */
+final class KeyLocks {
+    private final Object[] stripes;
+    private final int mask;
+
+    /**
+     * @param stripes number of locks, rounded up to a power of two.
+     */
+    KeyLocks(int stripes) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("stripes <= 0");
+        }
+        int size = Integer.highestOneBit(stripes);
+        if (size < stripes) {
+            size <<= 1;
+        }
+        this.stripes = new Object[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new Object();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Returns the lock guarding {@code key}.
+     */
+    Object lockFor(String key) {
+        int hash = key.hashCode();
+        // Spread the high bits down so that keys differing only in their tail still spread out.
+        hash ^= (hash >>> 16);
+        return stripes[hash & mask];
+    }
+}
@@ -25,23 +25,25 @@ import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.Parcel;
 import android.os.Parcelable;
-import android.text.TextUtils;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * Cache implementation to store {@link Parcelable} objects.
  * <p>
+ * Entries are stored under the SHA-1 of the caller's key, see {@link CacheKeys}. Entries stored
+ * under the earlier keys are not read: the cache is versioned by the app version, so they are
+ * dropped when the app that hashes keys is installed.
+ * <p>
+ * {@link #openInBackground} returns before the cache journal is read, see {@link LoadPolicy} for
+ * how calls made in the meantime are answered.
+ * <p>
  * Implementation modified from https://gist.github.com/VladSumtsov/c4af1f4b8fe5099ca809
  *
  * @param <T> Parcelable type.
@@ -50,61 +52,129 @@ public final class ParcelDiskCache<T extends Parcelable> implements DiskCache<T>
 
     private static final String LIST = "list";
     private static final String PARCELABLE = "parcelable";
-    private static final String VALIDATE_KEY_REGEX = "[a-z0-9_-]{1,5}";
-    private static final int MAX_KEY_SYMBOLS = 120;
+    // Write-behind tuning: distinct keys held before writers block, entries per batch and the
+    // delay given to a batch to collect more writes.
+    private static final int WRITE_QUEUE_CAPACITY = 64;
+    private static final int WRITE_BATCH_SIZE = 16;
+    private static final long WRITE_FLUSH_DELAY_MS = 100;
+    // Journal group commit used along with write-behind: how long journal lines may stay
+    // buffered and how many may pile up before they are written.
+    private static final long JOURNAL_GROUP_COMMIT_DELAY_MS = 1000;
+    private static final int JOURNAL_GROUP_COMMIT_MAX_OPS = 64;
+    // Number of locks that keys are striped across when writing or removing.
+    private static final int KEY_LOCK_STRIPES = 32;
     private final ClassLoader classLoader;
-    private final Executor storeExecutor;
-    private DiskLruCache cache;
-    private boolean saveInUI = true;
-
-    private ParcelDiskCache(Context context, ClassLoader classLoader, String name, long maxSize) throws IOException {
-        File cacheDir = context.getExternalCacheDir();
-        if (cacheDir == null) {
-            cacheDir = context.getCacheDir();
-        }
+    private final KeyLocks keyLocks = new KeyLocks(KEY_LOCK_STRIPES);
+    private final WriteBehindQueue writeQueue;
+    // Single background thread that opens the cache and then runs the write-behind queue, so
+    // queued writes always run after the journal is loaded.
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private final CacheLoader loader;
+    private volatile boolean saveInUI = true;
+    private ReadMode readMode = ReadMode.SIZED;
+
+    private ParcelDiskCache(ClassLoader classLoader, LoadPolicy loadPolicy) {
         this.classLoader = classLoader;
-        storeExecutor = Executors.newSingleThreadExecutor();
-        File dir = new File(cacheDir, name);
-        int version = getVersionCode(context) + Build.VERSION.SDK_INT;
-        this.cache = DiskLruCache.open(dir, version, 1, maxSize);
+        this.loader = new CacheLoader(loadPolicy);
+        writeQueue = new WriteBehindQueue(new WriteBehindQueue.Sink() {
+            @Override
+            public void write(String key, byte[] value) {
+                saveValue(loader.forWrite(), keyLocks, value, key);
+            }
+        }, executor, WRITE_QUEUE_CAPACITY, WRITE_BATCH_SIZE, WRITE_FLUSH_DELAY_MS);
     }
 
     public static <T extends Parcelable> ParcelDiskCache<T> open(Context context, ClassLoader classLoader, String name, long maxSize) throws IOException {
-        return new ParcelDiskCache<>(context, classLoader, name, maxSize);
+        final ParcelDiskCache<T> parcelDiskCache = new ParcelDiskCache<>(classLoader, LoadPolicy.BLOCK);
+        parcelDiskCache.loader.load(opener(context, name, maxSize));
+        return parcelDiskCache;
+    }
+
+    /**
+     * Like {@link #open(Context, ClassLoader, String, long)} but returns immediately and reads the
+     * cache journal on a background thread. If opening fails the cache behaves as empty.
+     *
+     * @param loadPolicy how reads made before the journal is loaded are answered. Writes always
+     *                   wait for it.
+     */
+    public static <T extends Parcelable> ParcelDiskCache<T> openInBackground(Context context, ClassLoader classLoader, String name, long maxSize, LoadPolicy loadPolicy) {
+        return openInBackground(classLoader, opener(context, name, maxSize), loadPolicy);
     }
 
-    private static void saveValue(DiskLruCache cache, Parcel value, String key) {
+    static <T extends Parcelable> ParcelDiskCache<T> openInBackground(ClassLoader classLoader, final CacheLoader.Opener opener, LoadPolicy loadPolicy) {
+        final ParcelDiskCache<T> parcelDiskCache = new ParcelDiskCache<>(classLoader, loadPolicy);
+        parcelDiskCache.executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    parcelDiskCache.loader.load(opener);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+        return parcelDiskCache;
+    }
+
+    private static CacheLoader.Opener opener(final Context context, final String name, final long maxSize) {
+        return new CacheLoader.Opener() {
+            @Override
+            public DiskLruCache open() throws IOException {
+                File cacheDir = context.getExternalCacheDir();
+                if (cacheDir == null) {
+                    cacheDir = context.getCacheDir();
+                }
+                File dir = new File(cacheDir, name);
+                int version = getVersionCode(context) + Build.VERSION.SDK_INT;
+                return DiskLruCache.open(dir, version, 1, maxSize);
+            }
+        };
+    }
+
+    static void saveValue(DiskLruCache cache, KeyLocks keyLocks, byte[] value, String key) {
         if (cache == null) return;
-        key = key.toLowerCase();
         try {
-            final String skey = key.intern();
-            synchronized (skey) {
+            synchronized (keyLocks.lockFor(key)) {
                 DiskLruCache.Editor editor = cache.edit(key);
+                if (editor == null) {
+                    return;
+                }
                 OutputStream outputStream = editor.newOutputStream(0);
-                writeBytesToStream(outputStream, value.marshall());
+                writeBytesToStream(outputStream, value);
                 editor.commit();
             }
         } catch (IOException e) {
             e.printStackTrace();
-        } finally {
-            value.recycle();
         }
     }
 
-    private static byte[] getBytesFromStream(InputStream is) throws IOException {
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    static boolean removeValue(DiskLruCache cache, KeyLocks keyLocks, String key) throws IOException {
+        if (cache == null) return false;
+        synchronized (keyLocks.lockFor(key)) {
+            return cache.remove(key);
+        }
+    }
+
+    static byte[] readValue(DiskLruCache cache, String key, ReadMode readMode) throws IOException {
+        DiskLruCache.Snapshot snapshot = cache.get(key);
+        if (snapshot == null) {
+            return null;
+        }
         try {
-            byte[] data = new byte[1024];
-            int count;
-            while ((count = is.read(data, 0, data.length)) != -1) {
-                buffer.write(data, 0, count);
+            if (readMode == ReadMode.SIZED) {
+                return DiskCacheUtil.readBytes(snapshot.getInputStream(0), snapshot.getLength(0));
             }
-            buffer.flush();
-            return buffer.toByteArray();
+            return DiskCacheUtil.readBytes(snapshot.getInputStream(0));
         } finally {
-            is.close();
-            buffer.close();
+            snapshot.close();
+        }
+    }
 
+    private static byte[] marshall(Parcel parcel) {
+        try {
+            return parcel.marshall();
+        } finally {
+            parcel.recycle();
         }
     }
 
@@ -126,33 +196,39 @@ public final class ParcelDiskCache<T extends Parcelable> implements DiskCache<T>
     }
 
     public T set(String key, T value) {
-        key = validateKey(key);
+        key = CacheKeys.hash(key);
         Parcel parcel = Parcel.obtain();
         parcel.writeString(PARCELABLE);
         parcel.writeParcelable(value, 0);
-        if (saveInUI) {
-            saveValue(cache, parcel, key);
-        } else {
-            storeExecutor.execute(new StoreParcelableValueTask(cache, parcel, key));
-        }
+        store(key, marshall(parcel));
         return value;
     }
 
     public void set(String key, List<T> values) {
-        key = validateKey(key);
+        key = CacheKeys.hash(key);
         Parcel parcel = Parcel.obtain();
         parcel.writeString(LIST);
         parcel.writeList(values);
-        if (saveInUI) {
-            saveValue(cache, parcel, key);
-        } else {
-            storeExecutor.execute(new StoreParcelableValueTask(cache, parcel, key));
+        store(key, marshall(parcel));
+    }
+
+    private void store(String key, byte[] value) {
+        if (!saveInUI) {
+            try {
+                writeQueue.enqueue(key, value);
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
         }
+        saveValue(loader.forWrite(), keyLocks, value, key);
     }
 
     public T get(String key) {
-        key = validateKey(key);
-        Parcel parcel = getParcel(key);
+        return readParcelable(getParcel(key));
+    }
+
+    private T readParcelable(Parcel parcel) {
         if (parcel != null) {
             try {
                 final String type = parcel.readString();
@@ -173,22 +249,35 @@ public final class ParcelDiskCache<T extends Parcelable> implements DiskCache<T>
     }
 
     private Parcel getParcel(String key) {
-        key = validateKey(key);
-        byte[] value = null;
-        DiskLruCache.Snapshot snapshot = null;
+        return getParcelByDiskKey(CacheKeys.hash(key));
+    }
+
+    private Parcel getParcelByDiskKey(String diskKey) {
+        byte[] value = writeQueue.peek(diskKey);
+        if (value != null) {
+            return unmarshall(value);
+        }
+        final DiskLruCache cache = loader.forRead();
+        if (cache == null) {
+            return null;
+        }
         try {
-            snapshot = cache.get(key);
-            if (snapshot == null) {
+            value = readValue(cache, diskKey, readMode);
+            if (value == null) {
                 return null;
             }
-            value = getBytesFromStream(snapshot.getInputStream(0));
         } catch (IOException e) {
             e.printStackTrace();
-        } finally {
-            if (snapshot != null) {
-                snapshot.close();
+            // The file no longer matches its journal record, drop it so it is rewritten.
+            try {
+                removeValue(cache, keyLocks, diskKey);
+            } catch (IOException ignored) {
             }
         }
+        return unmarshall(value);
+    }
+
+    private static Parcel unmarshall(byte[] value) {
         Parcel parcel = Parcel.obtain();
         if (value != null) {
             parcel.unmarshall(value, 0, value.length);
@@ -197,27 +286,7 @@ public final class ParcelDiskCache<T extends Parcelable> implements DiskCache<T>
         return parcel;
     }
 
-    private String validateKey(String key) {
-        Matcher keyMatcher = getPattern(VALIDATE_KEY_REGEX).matcher(key);
-        StringBuilder newKey = new StringBuilder();
-        while (keyMatcher.find()) {
-            String group = keyMatcher.group();
-            if (newKey.length() + group.length() > MAX_KEY_SYMBOLS) {
-                break;
-            }
-
-            newKey.append(group);
-        }
-        return newKey.toString().toLowerCase();
-    }
-
-    public Pattern getPattern(String bodyRegex) {
-        int flags = Pattern.MULTILINE | Pattern.DOTALL | Pattern.CASE_INSENSITIVE;
-        return Pattern.compile(bodyRegex, flags);
-    }
-
     public List<T> getList(String key, Class itemClass) {
-        key = validateKey(key);
         ArrayList<T> res = new ArrayList<>();
         Parcel parcel = getParcel(key);
         if (parcel != null) {
@@ -244,51 +313,89 @@ public final class ParcelDiskCache<T extends Parcelable> implements DiskCache<T>
     }
 
     public boolean remove(String key) {
-        key = validateKey(key);
+        final String diskKey = CacheKeys.hash(key);
         try {
-            return cache.remove(key.toLowerCase());
+            writeQueue.discard(diskKey);
+            return removeValue(loader.forWrite(), keyLocks, diskKey);
         } catch (IOException e) {
             e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
         return false;
     }
 
     public List<T> getAll() {
-        return getAll(null);
-    }
-
-    public List<T> getAll(String prefix) {
-        List<T> list = new ArrayList<>(1);
-        File dir = cache.getDirectory();
-        File[] files = dir.listFiles();
-        if (files != null) {
-            list = new ArrayList<>(files.length);
-            for (File file : files) {
-                String fileName = file.getName();
-                if ((!TextUtils.isEmpty(prefix) && fileName.startsWith(prefix) && fileName.indexOf(".") > 0)
-                        || (TextUtils.isEmpty(prefix) && fileName.indexOf(".") > 0)) {
-                    String key = fileName.substring(0, fileName.indexOf("."));
-                    T value = get(key);
-                    list.add(value);
-                }
+        final List<T> list = new ArrayList<>();
+        forEach(new Visitor<T>() {
+            @Override
+            public boolean visit(T value) {
+                list.add(value);
+                return true;
             }
-        }
+        });
         return list;
     }
 
+    /**
+     * Decodes the entries one at a time, in stored key order, and hands them to {@code visitor}
+     * until it returns false. Unlike {@link #getAll()} only the entry being visited is held in
+     * memory.
+     */
+    public void forEach(Visitor<? super T> visitor) {
+        flush();
+        for (String key : keys()) {
+            final T value = readParcelable(getParcelByDiskKey(key));
+            if (value != null && !visitor.visit(value)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the stored keys, which are hashes of the keys values were set with, found through
+     * the cache index without listing the cache directory.
+     */
+    public List<String> keys() {
+        final DiskLruCache cache = loader.forRead();
+        if (cache == null) {
+            return new ArrayList<>();
+        }
+        try {
+            return cache.keys();
+        } catch (IllegalStateException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
     public void clear() {
         try {
-            cache.delete();
+            writeQueue.discardAll();
+            final DiskLruCache cache = loader.forWrite();
+            if (cache != null) {
+                cache.delete();
+            }
         } catch (IOException e) {
             e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
     public boolean exists(String key) {
-        key = validateKey(key);
+        final String diskKey = CacheKeys.hash(key);
+        final byte[] pendingValue = writeQueue.peek(diskKey);
+        if (pendingValue != null) {
+            return pendingValue.length > 0;
+        }
+        final DiskLruCache cache = loader.forRead();
+        if (cache == null) {
+            return false;
+        }
         DiskLruCache.Snapshot snapshot = null;
         try {
-            snapshot = cache.get(key.toLowerCase());
+            snapshot = cache.get(diskKey);
             return snapshot != null && snapshot.getLength(0) > 0;
         } catch (IOException e) {
             e.printStackTrace();
@@ -302,6 +409,13 @@ public final class ParcelDiskCache<T extends Parcelable> implements DiskCache<T>
 
     @Override
     public void close() {
+        flush();
+        final DiskLruCache cache = loader.forWrite();
+        // Nothing is queued after the final flush, so the open and write-behind thread can go.
+        executor.shutdown();
+        if (cache == null) {
+            return;
+        }
         try {
             cache.close();
         } catch (IOException e) {
@@ -313,21 +427,115 @@ public final class ParcelDiskCache<T extends Parcelable> implements DiskCache<T>
         this.saveInUI = true;
     }
 
-    private static class StoreParcelableValueTask implements Runnable {
-
-        private final DiskLruCache cache;
-        private final Parcel value;
-        private final String key;
-
-        StoreParcelableValueTask(DiskLruCache cache, Parcel value, String key) {
-            this.value = value;
-            this.key = key;
-            this.cache = cache;
+    /**
+     * Makes {@code set} return as soon as the value is marshalled. Values are then written to disk
+     * in batches by a background thread, and repeated writes to a key only write the last value.
+     * Reads see values that are still waiting to be written.
+     * <p>
+     * Journal writes are group committed as well, see {@link DiskLruCache#setGroupCommit}.
+     */
+    public void shouldSaveInBackground() {
+        this.saveInUI = false;
+        final Runnable enableGroupCommit = new Runnable() {
+            @Override
+            public void run() {
+                final DiskLruCache cache = loader.forWrite();
+                if (cache == null) {
+                    return;
+                }
+                try {
+                    // Delayed journal flushes share the open and write-behind thread.
+                    cache.setGroupCommit(JOURNAL_GROUP_COMMIT_DELAY_MS, JOURNAL_GROUP_COMMIT_MAX_OPS, executor);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        if (loader.isLoaded()) {
+            enableGroupCommit.run();
+        } else {
+            // Runs on the loading thread once the journal is read, without blocking the caller.
+            executor.execute(enableGroupCommit);
         }
+    }
 
-        @Override
-        public void run() {
-            saveValue(cache, value, key);
+    /**
+     * Writes every value queued by {@link #shouldSaveInBackground()} mode and blocks until they
+     * are on disk.
+     */
+    public void flush() {
+        try {
+            writeQueue.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
+
+    /**
+     * Blocks until the background writer has no pending values, without hurrying it.
+     */
+    public void awaitIdle() throws InterruptedException {
+        writeQueue.awaitIdle();
+    }
+
+    /**
+     * Returns the current counters of the background write queue.
+     */
+    public WriteQueueStats getWriteQueueStats() {
+        return writeQueue.stats();
+    }
+
+    /**
+     * Sets how cached values are read back from disk before being unmarshalled.
+     */
+    public void setReadMode(ReadMode readMode) {
+        this.readMode = readMode;
+    }
+
+    /**
+     * Returns true once the cache journal has been read, or opening it failed.
+     */
+    public boolean isLoaded() {
+        return loader.isLoaded();
+    }
+
+    /**
+     * Receives entries decoded by {@link #forEach(Visitor)}.
+     */
+    public interface Visitor<T> {
+        /**
+         * @return true to continue with the next entry, false to stop.
+         */
+        boolean visit(T value);
+    }
+
+    /**
+     * How a cache opened with {@link #openInBackground} answers reads made before its journal is
+     * loaded.
+     */
+    public enum LoadPolicy {
+        /**
+         * Reads wait until the journal is loaded.
+         */
+        BLOCK,
+        /**
+         * Reads return nothing, as if the entry was not cached.
+         */
+        MISS
+    }
+
+    /**
+     * Strategy used to load an entry's bytes on a cache hit.
+     */
+    public enum ReadMode {
+        /**
+         * Copies the entry in chunks through a growing buffer. Allocates the value several times.
+         */
+        STREAMED,
+        /**
+         * Allocates one buffer sized from the length recorded in the journal and reads the entry
+         * straight into it.
+         */
+        SIZED
+    }
 }
\ No newline at end of file
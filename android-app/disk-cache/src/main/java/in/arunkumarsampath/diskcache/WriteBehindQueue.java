@@ -0,0 +1,225 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.arunkumarsampath.diskcache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded write-behind queue that holds marshalled values until they are written to disk by a
+ * single background thread.
+ * <p>
+ * Repeated writes to the same key are merged so only the last value is written. Pending values
+ * are drained in batches of at most {@code batchSize} entries, {@code flushDelayMs} after the
+ * first write of a batch is queued. When {@code capacity} distinct keys are pending, callers block
+ * until the writer catches up.
+ */
+final class WriteBehindQueue {
+
+    /**
+     * Destination of drained values.
+     */
+    interface Sink {
+        void write(String key, byte[] value) throws Exception;
+    }
+
+    private final Sink sink;
+    private final ScheduledExecutorService executor;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushDelayMs;
+
+    /**
+     * Values waiting to be written, in insertion order.
+     */
+    private final LinkedHashMap<String, byte[]> pending = new LinkedHashMap<>();
+    /**
+     * Values taken by the writer thread but not yet committed to disk. Reads consult these too so
+     * that a value never disappears between leaving {@link #pending} and reaching the disk.
+     */
+    private final Map<String, byte[]> inFlight = new HashMap<>();
+    private boolean drainScheduled;
+
+    private long enqueuedWrites;
+    private long coalescedWrites;
+    private long flushedWrites;
+    private long flushedBatches;
+    private long lastFlushLatencyNanos;
+    private long totalFlushLatencyNanos;
+    private int maxQueueDepth;
+
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    WriteBehindQueue(Sink sink, ScheduledExecutorService executor, int capacity, int batchSize, long flushDelayMs) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity <= 0");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize <= 0");
+        }
+        this.sink = sink;
+        this.executor = executor;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushDelayMs = flushDelayMs;
+    }
+
+    /**
+     * Queues {@code value} to be written for {@code key}, replacing any value still pending for
+     * the same key. Blocks while the queue is full.
+     */
+    synchronized void enqueue(String key, byte[] value) throws InterruptedException {
+        enqueuedWrites++;
+        if (pending.containsKey(key)) {
+            coalescedWrites++;
+            pending.put(key, value);
+            return;
+        }
+        while (pending.size() >= capacity) {
+            scheduleDrain(0);
+            wait();
+        }
+        pending.put(key, value);
+        maxQueueDepth = Math.max(maxQueueDepth, pending.size());
+        scheduleDrain(flushDelayMs);
+    }
+
+    /**
+     * Returns the value not yet written to disk for {@code key}, or null if there is none.
+     */
+    synchronized byte[] peek(String key) {
+        byte[] value = pending.get(key);
+        if (value == null) {
+            value = inFlight.get(key);
+        }
+        return value;
+    }
+
+    /**
+     * Drops the pending value for {@code key} and waits until any write of it already in progress
+     * has finished, so that the caller can safely remove it from disk.
+     */
+    synchronized void discard(String key) throws InterruptedException {
+        pending.remove(key);
+        while (inFlight.containsKey(key)) {
+            wait();
+        }
+    }
+
+    /**
+     * Drops every pending value and waits for the batch in progress, if any, to finish.
+     */
+    synchronized void discardAll() throws InterruptedException {
+        pending.clear();
+        notifyAll();
+        while (!inFlight.isEmpty()) {
+            wait();
+        }
+    }
+
+    /**
+     * Starts writing all pending values immediately and blocks until the queue is empty.
+     */
+    synchronized void flush() throws InterruptedException {
+        if (!pending.isEmpty()) {
+            scheduleDrain(0);
+        }
+        awaitIdle();
+    }
+
+    /**
+     * Blocks until there are no pending or in-flight values.
+     */
+    synchronized void awaitIdle() throws InterruptedException {
+        while (!pending.isEmpty() || !inFlight.isEmpty()) {
+            wait();
+        }
+    }
+
+    synchronized WriteQueueStats stats() {
+        return new WriteQueueStats(pending.size() + inFlight.size(), maxQueueDepth, enqueuedWrites,
+                coalescedWrites, flushedWrites, flushedBatches,
+                TimeUnit.NANOSECONDS.toMillis(lastFlushLatencyNanos),
+                TimeUnit.NANOSECONDS.toMillis(totalFlushLatencyNanos));
+    }
+
+    private void scheduleDrain(long delayMs) {
+        if (drainScheduled && delayMs > 0) {
+            return;
+        }
+        drainScheduled = true;
+        executor.schedule(drainTask, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void drain() {
+        while (true) {
+            final List<Map.Entry<String, byte[]>> batch;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    drainScheduled = false;
+                    notifyAll();
+                    return;
+                }
+                batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+                Iterator<Map.Entry<String, byte[]>> iterator = pending.entrySet().iterator();
+                while (iterator.hasNext() && batch.size() < batchSize) {
+                    Map.Entry<String, byte[]> entry = iterator.next();
+                    iterator.remove();
+                    inFlight.put(entry.getKey(), entry.getValue());
+                    batch.add(entry);
+                }
+                // Room was made in the queue, wake up blocked writers.
+                notifyAll();
+            }
+
+            long start = System.nanoTime();
+            for (Map.Entry<String, byte[]> entry : batch) {
+                try {
+                    sink.write(entry.getKey(), entry.getValue());
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+            long latency = System.nanoTime() - start;
+
+            synchronized (this) {
+                for (Map.Entry<String, byte[]> entry : batch) {
+                    inFlight.remove(entry.getKey());
+                }
+                flushedWrites += batch.size();
+                flushedBatches++;
+                lastFlushLatencyNanos = latency;
+                totalFlushLatencyNanos += latency;
+                notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.arunkumarsampath.diskcache;
+
+/**
+ * Point in time counters of a {@link ParcelDiskCache} write-behind queue.
+ */
+public final class WriteQueueStats {
+    private final int queueDepth;
+    private final int maxQueueDepth;
+    private final long enqueuedWrites;
+    private final long coalescedWrites;
+    private final long flushedWrites;
+    private final long flushedBatches;
+    private final long lastFlushLatencyMs;
+    private final long totalFlushLatencyMs;
+
+    WriteQueueStats(int queueDepth, int maxQueueDepth, long enqueuedWrites, long coalescedWrites,
+                    long flushedWrites, long flushedBatches, long lastFlushLatencyMs, long totalFlushLatencyMs) {
+        this.queueDepth = queueDepth;
+        this.maxQueueDepth = maxQueueDepth;
+        this.enqueuedWrites = enqueuedWrites;
+        this.coalescedWrites = coalescedWrites;
+        this.flushedWrites = flushedWrites;
+        this.flushedBatches = flushedBatches;
+        this.lastFlushLatencyMs = lastFlushLatencyMs;
+        this.totalFlushLatencyMs = totalFlushLatencyMs;
+    }
+
+    /**
+     * Number of values not yet written to disk.
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Highest number of distinct keys that were pending at once.
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    /**
+     * Number of writes handed to the queue.
+     */
+    public long getEnqueuedWrites() {
+        return enqueuedWrites;
+    }
+
+    /**
+     * Number of writes that replaced a still pending value for the same key.
+     */
+    public long getCoalescedWrites() {
+        return coalescedWrites;
+    }
+
+    /**
+     * Number of values written to disk.
+     */
+    public long getFlushedWrites() {
+        return flushedWrites;
+    }
+
+    /**
+     * Number of batches written to disk.
+     */
+    public long getFlushedBatches() {
+        return flushedBatches;
+    }
+
+    /**
+     * Time taken to write the most recent batch.
+     */
+    public long getLastFlushLatencyMs() {
+        return lastFlushLatencyMs;
+    }
+
+    /**
+     * Time spent writing all batches so far.
+     */
+    public long getTotalFlushLatencyMs() {
+        return totalFlushLatencyMs;
+    }
+
+    @Override
+    public String toString() {
+        return "WriteQueueStats{" +
+                "queueDepth=" + queueDepth +
+                ", maxQueueDepth=" + maxQueueDepth +
+                ", enqueuedWrites=" + enqueuedWrites +
+                ", coalescedWrites=" + coalescedWrites +
+                ", flushedWrites=" + flushedWrites +
+                ", flushedBatches=" + flushedBatches +
+                ", lastFlushLatencyMs=" + lastFlushLatencyMs +
+                ", totalFlushLatencyMs=" + totalFlushLatencyMs +
+                '}';
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.arunkumarsampath.diskcache;
+
+import android.os.Parcelable;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+/**
+ * How long opening blocks the caller with and without {@link ParcelDiskCache#openInBackground}.
+ * Runs only with {@code -Pbenchmark}.
+ */
+public class BackgroundOpenBenchmark {
+    private static final int BENCHMARK_ENTRIES = 20_000;
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Test
+    public void callerBlockingTime() throws Exception {
+        final File dir = tempDir.newFolder("benchmark");
+        BackgroundOpenTest.populate(dir, BENCHMARK_ENTRIES);
+
+        long start = System.nanoTime();
+        DiskLruCache.open(dir, 1, 1, Long.MAX_VALUE).close();
+        long syncNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        ParcelDiskCache<Parcelable> cache = ParcelDiskCache.openInBackground(null,
+                BackgroundOpenTest.opener(dir), ParcelDiskCache.LoadPolicy.MISS);
+        long backgroundNanos = System.nanoTime() - start;
+        BackgroundOpenTest.awaitLoaded(cache);
+        long loadedNanos = System.nanoTime() - start;
+        cache.close();
+
+        System.out.println("Caller blocked opening " + BENCHMARK_ENTRIES + " entries: open="
+                + syncNanos / 1_000_000 + "ms, openInBackground="
+                + backgroundNanos / 1_000 + "us (loaded after " + loadedNanos / 1_000_000 + "ms)");
+    }
+}
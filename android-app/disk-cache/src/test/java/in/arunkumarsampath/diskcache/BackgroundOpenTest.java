@@ -0,0 +1,148 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.arunkumarsampath.diskcache;
+
+import android.os.Parcelable;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Reads made while {@link ParcelDiskCache#openInBackground} is still loading the journal.
+ */
+public class BackgroundOpenTest {
+    private static final String KEY = "https://example.com/";
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Test
+    public void missPolicyAnswersReadsAsMissesUntilLoaded() throws Exception {
+        final File dir = populatedCache("miss", 1);
+        final CountDownLatch release = new CountDownLatch(1);
+        ParcelDiskCache<Parcelable> cache = ParcelDiskCache.openInBackground(null,
+                gatedOpener(dir, release), ParcelDiskCache.LoadPolicy.MISS);
+
+        assertFalse(cache.isLoaded());
+        assertFalse(cache.exists(KEY));
+        assertTrue(cache.keys().isEmpty());
+
+        release.countDown();
+        awaitLoaded(cache);
+        assertTrue(cache.exists(KEY));
+        assertEquals(1, cache.keys().size());
+        cache.close();
+    }
+
+    @Test
+    public void blockPolicyWaitsForLoad() throws Exception {
+        final File dir = populatedCache("block", 1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ParcelDiskCache<Parcelable> cache = ParcelDiskCache.openInBackground(null,
+                gatedOpener(dir, release), ParcelDiskCache.LoadPolicy.BLOCK);
+
+        final AtomicBoolean exists = new AtomicBoolean();
+        final CountDownLatch read = new CountDownLatch(1);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                exists.set(cache.exists(KEY));
+                read.countDown();
+            }
+        }).start();
+
+        assertFalse(read.await(200, TimeUnit.MILLISECONDS));
+        release.countDown();
+        assertTrue(read.await(5, TimeUnit.SECONDS));
+        assertTrue(exists.get());
+        cache.close();
+    }
+
+    @Test
+    public void failedOpenBehavesAsEmpty() throws Exception {
+        ParcelDiskCache<Parcelable> cache = ParcelDiskCache.openInBackground(null, new CacheLoader.Opener() {
+            @Override
+            public DiskLruCache open() throws IOException {
+                throw new IOException("unreadable");
+            }
+        }, ParcelDiskCache.LoadPolicy.BLOCK);
+
+        assertFalse(cache.exists(KEY));
+        assertTrue(cache.keys().isEmpty());
+        assertTrue(cache.isLoaded());
+        cache.close();
+    }
+
+    private File populatedCache(String name, int entries) throws IOException {
+        File dir = tempDir.newFolder(name);
+        populate(dir, entries);
+        return dir;
+    }
+
+    static void populate(File dir, int entries) throws IOException {
+        DiskLruCache cache = DiskLruCache.open(dir, 1, 1, Long.MAX_VALUE);
+        KeyLocks keyLocks = new KeyLocks(1);
+        ParcelDiskCache.saveValue(cache, keyLocks, new byte[]{1}, CacheKeys.hash(KEY));
+        for (int i = 1; i < entries; i++) {
+            ParcelDiskCache.saveValue(cache, keyLocks, new byte[]{1}, CacheKeys.hash(KEY + i));
+        }
+        cache.close();
+    }
+
+    static CacheLoader.Opener opener(final File dir) {
+        return new CacheLoader.Opener() {
+            @Override
+            public DiskLruCache open() throws IOException {
+                return DiskLruCache.open(dir, 1, 1, Long.MAX_VALUE);
+            }
+        };
+    }
+
+    private static CacheLoader.Opener gatedOpener(final File dir, final CountDownLatch release) {
+        return new CacheLoader.Opener() {
+            @Override
+            public DiskLruCache open() throws IOException {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return DiskLruCache.open(dir, 1, 1, Long.MAX_VALUE);
+            }
+        };
+    }
+
+    static void awaitLoaded(ParcelDiskCache<?> cache) throws InterruptedException {
+        while (!cache.isLoaded()) {
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.arunkumarsampath.diskcache;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Cache open time with text and binary journals. Runs only with {@code -Pbenchmark}.
+ */
+public class BinaryJournalBenchmark {
+    private static final int[] BENCHMARK_ENTRIES = {1_000, 10_000, 50_000};
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Test
+    public void openTime() throws IOException {
+        for (int entries : BENCHMARK_ENTRIES) {
+            File textDir = tempDir.newFolder("text-" + entries);
+            File binaryDir = tempDir.newFolder("binary-" + entries);
+            BinaryJournalTest.writeJournal(textDir, entries, false);
+            BinaryJournalTest.writeJournal(binaryDir, entries, true);
+
+            // Warm up both read paths before timing them.
+            openAndClose(textDir, false);
+            openAndClose(binaryDir, true);
+            long textNanos = openAndClose(textDir, false);
+            long binaryNanos = openAndClose(binaryDir, true);
+
+            System.out.println("Open with " + entries + " entries: text="
+                    + textNanos / 1_000_000 + "ms (" + BinaryJournalTest.journalSize(textDir) + " bytes), binary="
+                    + binaryNanos / 1_000_000 + "ms (" + BinaryJournalTest.journalSize(binaryDir) + " bytes)");
+        }
+    }
+
+    private static long openAndClose(File dir, boolean binary) throws IOException {
+        long start = System.nanoTime();
+        DiskLruCache cache = DiskLruCache.open(dir, 1, 1, Long.MAX_VALUE, binary);
+        long elapsed = System.nanoTime() - start;
+        cache.close();
+        return elapsed;
+    }
+}
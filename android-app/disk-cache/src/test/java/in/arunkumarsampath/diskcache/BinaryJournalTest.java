@@ -0,0 +1,189 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.arunkumarsampath.diskcache;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Round trips and damage handling of the binary journal.
+ */
+public class BinaryJournalTest {
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Test
+    public void textJournalIsMigratedToBinary() throws IOException {
+        File dir = tempDir.newFolder("migrate");
+        DiskLruCache cache = DiskLruCache.open(dir, 1, 2, Long.MAX_VALUE, false);
+        set(cache, "a", "one", "1");
+        set(cache, "b", "two", "22");
+        cache.remove("a");
+        cache.close();
+        File journal = new File(dir, DiskLruCache.JOURNAL_FILE);
+        assertFalse(BinaryJournal.isBinary(journal));
+
+        cache = DiskLruCache.open(dir, 1, 2, Long.MAX_VALUE);
+        assertTrue(BinaryJournal.isBinary(journal));
+        assertEquals(Arrays.asList("b"), cache.keys());
+        assertEquals("22", cache.get("b").getString(1));
+        set(cache, "c", "three", "333");
+        cache.close();
+
+        cache = DiskLruCache.open(dir, 1, 2, Long.MAX_VALUE);
+        assertEquals(Arrays.asList("b", "c"), cache.keys());
+        assertEquals("three", cache.get("c").getString(0));
+        assertEquals(13, cache.size());
+        cache.close();
+    }
+
+    @Test
+    public void appendedRecordsReuseKeyIds() throws IOException {
+        File dir = tempDir.newFolder("append");
+        DiskLruCache cache = DiskLruCache.open(dir, 1, 1, Long.MAX_VALUE);
+        set(cache, "k", "v1");
+        cache.close();
+
+        cache = DiskLruCache.open(dir, 1, 1, Long.MAX_VALUE);
+        set(cache, "k", "v22");
+        set(cache, "other", "x");
+        cache.get("k").close();
+        cache.close();
+
+        cache = DiskLruCache.open(dir, 1, 1, Long.MAX_VALUE);
+        assertEquals(Arrays.asList("k", "other"), cache.keys());
+        assertEquals("v22", cache.get("k").getString(0));
+        cache.close();
+    }
+
+    @Test
+    public void corruptRecordEndsJournal() throws IOException {
+        File dir = tempDir.newFolder("corrupt");
+        DiskLruCache cache = DiskLruCache.open(dir, 1, 1, Long.MAX_VALUE);
+        set(cache, "first", "a");
+        File journal = new File(dir, DiskLruCache.JOURNAL_FILE);
+        long validLength = journal.length();
+        set(cache, "second", "b");
+        cache.close();
+
+        // Flip the last byte of the CRC of the final CLEAN record of "second".
+        RandomAccessFile file = new RandomAccessFile(journal, "rw");
+        file.seek(file.length() - 1);
+        int last = file.read();
+        file.seek(file.length() - 1);
+        file.write(last ^ 0xff);
+        file.close();
+        assertTrue(journal.length() > validLength);
+
+        cache = DiskLruCache.open(dir, 1, 1, Long.MAX_VALUE);
+        assertEquals(Arrays.asList("first"), cache.keys());
+        assertNull(cache.get("second"));
+        assertFalse(new File(dir, "second.0").exists());
+        cache.close();
+    }
+
+    @Test
+    public void truncatedRecordEndsJournal() throws IOException {
+        File dir = tempDir.newFolder("truncated");
+        DiskLruCache cache = DiskLruCache.open(dir, 1, 1, Long.MAX_VALUE);
+        set(cache, "first", "a");
+        // 200 bytes, so the length in the CLEAN record of "second" is a two byte varint.
+        set(cache, "second", new String(new char[200]).replace('\0', 'b'));
+        cache.close();
+
+        // Cut the final CLEAN record of "second" after the first byte of its length varint,
+        // dropping the second byte and the CRC.
+        File journal = new File(dir, DiskLruCache.JOURNAL_FILE);
+        RandomAccessFile file = new RandomAccessFile(journal, "rw");
+        file.setLength(file.length() - 5);
+        file.seek(file.length() - 1);
+        assertTrue((file.read() & 0x80) != 0);
+        file.close();
+
+        cache = DiskLruCache.open(dir, 1, 1, Long.MAX_VALUE);
+        assertEquals(Arrays.asList("first"), cache.keys());
+        assertEquals("a", cache.get("first").getString(0));
+        assertNull(cache.get("second"));
+        set(cache, "third", "c");
+        cache.close();
+
+        cache = DiskLruCache.open(dir, 1, 1, Long.MAX_VALUE);
+        assertEquals(Arrays.asList("first", "third"), cache.keys());
+        cache.close();
+    }
+
+    @Test
+    public void binaryJournalIsSmallerThanText() throws IOException {
+        File textDir = tempDir.newFolder("text");
+        File binaryDir = tempDir.newFolder("binary");
+        writeJournal(textDir, 1_000, false);
+        writeJournal(binaryDir, 1_000, true);
+        assertTrue(journalSize(binaryDir) < journalSize(textDir));
+    }
+
+    /**
+     * Writes a journal for {@code entries} clean entries plus a read of each, with the value files
+     * present so that opening keeps them.
+     */
+    static void writeJournal(File dir, int entries, boolean binary) throws IOException {
+        File journal = new File(dir, DiskLruCache.JOURNAL_FILE);
+        JournalWriter writer = binary
+                ? new BinaryJournal.Writer(journal, false, new HashMap<String, Integer>())
+                : new JournalWriter.Text(journal, false);
+        try {
+            writer.writeHeader(1, 1);
+            long[] lengths = {0};
+            for (int i = 0; i < entries; i++) {
+                String key = CacheKeys.hash("https://example.com/article/" + i);
+                writer.writeDirty(key);
+                writer.writeClean(key, lengths);
+                writer.writeRead(key);
+                //noinspection ResultOfMethodCallIgnored
+                new File(dir, key + ".0").createNewFile();
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    static long journalSize(File dir) {
+        return new File(dir, DiskLruCache.JOURNAL_FILE).length();
+    }
+
+    private static void set(DiskLruCache cache, String key, String... values) throws IOException {
+        DiskLruCache.Editor editor = cache.edit(key);
+        for (int i = 0; i < values.length; i++) {
+            editor.set(i, values[i]);
+        }
+        editor.commit();
+    }
+}
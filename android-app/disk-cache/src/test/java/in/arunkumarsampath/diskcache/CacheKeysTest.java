@@ -0,0 +1,43 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.arunkumarsampath.diskcache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CacheKeysTest {
+    @Test
+    public void hashIsLegalAndDistinguishesLongSharedPrefixes() {
+        StringBuilder prefix = new StringBuilder("https://example.com/");
+        for (int i = 0; i < 30; i++) {
+            prefix.append("abcdef");
+        }
+        String first = CacheKeys.hash(prefix + "/first");
+        String second = CacheKeys.hash(prefix + "/second");
+
+        assertEquals(40, first.length());
+        assertTrue(DiskLruCache.LEGAL_KEY_PATTERN.matcher(first).matches());
+        assertFalse(first.equals(second));
+        assertEquals(first, CacheKeys.hash(prefix + "/first"));
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.arunkumarsampath.diskcache;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class DiskLruCacheKeysTest {
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private DiskLruCache cache;
+
+    @After
+    public void tearDown() throws IOException {
+        if (cache != null) {
+            cache.delete();
+        }
+    }
+
+    @Test
+    public void prefixQueryReturnsSortedReadableKeys() throws IOException {
+        File dir = tempDir.newFolder("keys");
+        cache = DiskLruCache.open(dir, 1, 1, Long.MAX_VALUE);
+        for (String key : Arrays.asList("web_b", "web_a", "article_a", "web_c")) {
+            set(key, key);
+        }
+        // An entry being created is not readable and must not be listed.
+        DiskLruCache.Editor pending = cache.edit("web_pending");
+        cache.remove("web_c");
+
+        assertEquals(Arrays.asList("web_a", "web_b"), cache.keys("web"));
+        assertEquals(Arrays.asList("article_a", "web_a", "web_b"), cache.keys());
+        assertEquals(Collections.<String>emptyList(), cache.keys("zzz"));
+        pending.abort();
+    }
+
+    @Test
+    public void indexIsRestoredFromJournal() throws IOException {
+        File dir = tempDir.newFolder("journal");
+        cache = DiskLruCache.open(dir, 1, 1, Long.MAX_VALUE);
+        set("web_a", "a");
+        set("web_b", "b");
+        cache.remove("web_a");
+        cache.close();
+
+        cache = DiskLruCache.open(dir, 1, 1, Long.MAX_VALUE);
+        assertEquals(Collections.singletonList("web_b"), cache.keys("web"));
+    }
+
+    private void set(String key, String value) throws IOException {
+        DiskLruCache.Editor editor = cache.edit(key);
+        editor.set(0, value);
+        editor.commit();
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.arunkumarsampath.diskcache;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Sequential edits per second with and without {@link DiskLruCache#setGroupCommit}. Runs only with
+ * {@code -Pbenchmark}.
+ */
+public class GroupCommitBenchmark {
+    private static final int BENCHMARK_EDITS = 2000;
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Test
+    public void sequentialEdits() throws IOException {
+        // Warm up.
+        editsPerSecond(tempDir.newFolder("warmup"), false);
+
+        double perEdit = editsPerSecond(tempDir.newFolder("flush-per-edit"), false);
+        double grouped = editsPerSecond(tempDir.newFolder("group-commit"), true);
+        System.out.println("Sequential edits/sec: flush per edit=" + (long) perEdit
+                + ", group commit=" + (long) grouped);
+        assertTrue(perEdit > 0 && grouped > 0);
+    }
+
+    private static double editsPerSecond(File dir, boolean groupCommit) throws IOException {
+        DiskLruCache cache = DiskLruCache.open(dir, 1, 1, Long.MAX_VALUE);
+        try {
+            if (groupCommit) {
+                cache.setGroupCommit(50, 256);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < BENCHMARK_EDITS; i++) {
+                set(cache, "key" + (i % 200), "value" + i);
+            }
+            cache.flush();
+            return BENCHMARK_EDITS / ((System.nanoTime() - start) / 1e9);
+        } finally {
+            cache.delete();
+        }
+    }
+
+    private static void set(DiskLruCache cache, String key, String value) throws IOException {
+        DiskLruCache.Editor editor = cache.edit(key);
+        editor.set(0, value);
+        editor.commit();
+    }
+}
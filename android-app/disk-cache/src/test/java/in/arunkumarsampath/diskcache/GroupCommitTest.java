@@ -0,0 +1,117 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.arunkumarsampath.diskcache;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Crash safety of {@link DiskLruCache#setGroupCommit}.
+ */
+public class GroupCommitTest {
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Test
+    public void lostJournalLinesDropEntriesAndTheirFiles() throws IOException {
+        File dir = tempDir.newFolder("crash");
+        DiskLruCache cache = DiskLruCache.open(dir, 1, 1, Long.MAX_VALUE);
+        cache.setGroupCommit(60_000, Integer.MAX_VALUE);
+        set(cache, "durable", "a");
+        cache.flush();
+        set(cache, "lost", "b");
+        // Simulate a crash: the cache is never closed and its buffered lines are never written.
+
+        DiskLruCache reopened = DiskLruCache.open(dir, 1, 1, Long.MAX_VALUE);
+        assertEquals(Collections.singletonList("durable"), reopened.keys());
+        assertEquals("a", reopened.get("durable").getString(0));
+        assertFalse(new File(dir, "lost.0").exists());
+        reopened.close();
+        assertFalse(new File(dir, DiskLruCache.JOURNAL_FILE_GROUP_COMMIT).exists());
+    }
+
+    @Test
+    public void tornLastJournalLineIsIgnored() throws IOException {
+        File dir = tempDir.newFolder("torn");
+        // A text journal, as only text lines can be torn mid-line.
+        DiskLruCache cache = DiskLruCache.open(dir, 1, 1, Long.MAX_VALUE, false);
+        cache.setGroupCommit(60_000, Integer.MAX_VALUE);
+        set(cache, "first", "a");
+        set(cache, "second", "b");
+        cache.flush();
+
+        File journalFile = new File(dir, DiskLruCache.JOURNAL_FILE);
+        assertFalse(BinaryJournal.isBinary(journalFile));
+        OutputStream journal = new FileOutputStream(journalFile, true);
+        journal.write("CLEAN thi".getBytes(DiskCacheUtil.US_ASCII));
+        journal.close();
+
+        DiskLruCache reopened = DiskLruCache.open(dir, 1, 1, Long.MAX_VALUE, false);
+        assertEquals(Arrays.asList("first", "second"), reopened.keys());
+        assertEquals("b", reopened.get("second").getString(0));
+        reopened.close();
+        cache.close();
+    }
+
+    @Test
+    public void delayedFlushesRunOnASharedScheduler() throws Exception {
+        File dir = tempDir.newFolder("shared");
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        DiskLruCache cache = DiskLruCache.open(dir, 1, 1, Long.MAX_VALUE);
+        cache.setGroupCommit(10, Integer.MAX_VALUE, scheduler);
+        set(cache, "shared", "a");
+        cache.close();
+        assertFalse(scheduler.isShutdown());
+
+        cache = DiskLruCache.open(dir, 1, 1, Long.MAX_VALUE);
+        cache.setGroupCommit(10, Integer.MAX_VALUE, scheduler);
+        set(cache, "flushed", "b");
+        // Delayed tasks still run after shutdown, so termination means the flush has run.
+        scheduler.shutdown();
+        assertTrue(scheduler.awaitTermination(5, TimeUnit.SECONDS));
+
+        // The cache is never closed, so only the delayed flush wrote the journal.
+        DiskLruCache reopened = DiskLruCache.open(dir, 1, 1, Long.MAX_VALUE);
+        assertEquals(new HashSet<>(Arrays.asList("shared", "flushed")), new HashSet<>(reopened.keys()));
+        reopened.close();
+    }
+
+    private static void set(DiskLruCache cache, String key, String value) throws IOException {
+        DiskLruCache.Editor editor = cache.edit(key);
+        editor.set(0, value);
+        editor.commit();
+    }
+}
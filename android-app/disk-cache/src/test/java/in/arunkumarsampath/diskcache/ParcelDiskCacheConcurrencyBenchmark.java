@@ -0,0 +1,61 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.arunkumarsampath.diskcache;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Set, get and remove throughput of {@link ParcelDiskCache}'s striped-lock paths on one and on
+ * many threads. Runs only with {@code -Pbenchmark}.
+ */
+public class ParcelDiskCacheConcurrencyBenchmark {
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Test
+    public void throughputByThreads() throws Exception {
+        double single = opsPerSecond(1);
+        double multi = opsPerSecond(8);
+        System.out.println("set/get/remove ops/sec: 1 thread=" + (long) single
+                + ", 8 threads=" + (long) multi
+                + ", cores=" + Runtime.getRuntime().availableProcessors());
+        assertTrue(single > 0 && multi > 0);
+    }
+
+    private double opsPerSecond(int threads) throws Exception {
+        DiskLruCache cache = DiskLruCache.open(tempDir.newFolder("threads" + threads), 1, 1, Long.MAX_VALUE);
+        try {
+            long start = System.nanoTime();
+            List<Throwable> errors = ParcelDiskCacheConcurrencyTest.hammer(cache, new KeyLocks(32), threads);
+            long elapsed = System.nanoTime() - start;
+            assertEquals(0, errors.size());
+            return ParcelDiskCacheConcurrencyTest.TOTAL_OPS / (elapsed / 1e9);
+        } finally {
+            cache.delete();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.arunkumarsampath.diskcache;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Hammers the striped-lock write, read and remove paths of {@link ParcelDiskCache} from many
+ * threads and checks that every value read back is intact.
+ */
+public class ParcelDiskCacheConcurrencyTest {
+    private static final int KEYS = 48;
+    static final int TOTAL_OPS = 16_000;
+    private static final int PAYLOAD_SIZE = 2048;
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private DiskLruCache cache;
+
+    @After
+    public void tearDown() throws IOException {
+        if (cache != null) {
+            cache.delete();
+        }
+    }
+
+    @Test
+    public void concurrentSetGetRemoveNeverCorrupts() throws Exception {
+        cache = DiskLruCache.open(tempDir.newFolder("stress"), 1, 1, Long.MAX_VALUE);
+        List<Throwable> errors = hammer(cache, new KeyLocks(32), 8);
+        assertTrue("errors: " + errors, errors.isEmpty());
+    }
+
+    static List<Throwable> hammer(final DiskLruCache cache, final KeyLocks keyLocks, int threads)
+            throws InterruptedException {
+        final List<Throwable> errors = new CopyOnWriteArrayList<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final int opsPerThread = TOTAL_OPS / threads;
+        for (int t = 0; t < threads; t++) {
+            final int seed = t;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random random = new Random(seed);
+                    try {
+                        start.await();
+                        for (int i = 0; i < opsPerThread; i++) {
+                            int keyIndex = random.nextInt(KEYS);
+                            String key = "key" + keyIndex;
+                            int op = random.nextInt(100);
+                            if (op < 45) {
+                                ParcelDiskCache.saveValue(cache, keyLocks, value(keyIndex, random.nextInt()), key);
+                            } else if (op < 85) {
+                                byte[] value = ParcelDiskCache.readValue(cache, key, ParcelDiskCache.ReadMode.SIZED);
+                                if (value != null) {
+                                    verify(keyIndex, value);
+                                }
+                            } else {
+                                ParcelDiskCache.removeValue(cache, keyLocks, key);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        start.countDown();
+        done.await();
+        return errors;
+    }
+
+    /**
+     * Builds a value that records which key and which write produced it, padded with a pattern
+     * derived from both so that a torn or mixed value is detectable.
+     */
+    private static byte[] value(int keyIndex, int version) {
+        ByteBuffer buffer = ByteBuffer.allocate(8 + PAYLOAD_SIZE);
+        buffer.putInt(keyIndex).putInt(version);
+        for (int i = 0; i < PAYLOAD_SIZE; i++) {
+            buffer.put((byte) (keyIndex * 31 + version + i));
+        }
+        return buffer.array();
+    }
+
+    private static void verify(int keyIndex, byte[] value) {
+        if (value.length != 8 + PAYLOAD_SIZE) {
+            throw new AssertionError("torn value of length " + value.length + " for key" + keyIndex);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(value);
+        int storedKey = buffer.getInt();
+        int version = buffer.getInt();
+        if (storedKey != keyIndex) {
+            throw new AssertionError("read value of key" + storedKey + " for key" + keyIndex);
+        }
+        for (int i = 0; i < PAYLOAD_SIZE; i++) {
+            if (buffer.get() != (byte) (keyIndex * 31 + version + i)) {
+                throw new AssertionError("corrupt payload at " + i + " for key" + keyIndex);
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.arunkumarsampath.diskcache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Micro-benchmark comparing the bytes allocated per cache hit by the streamed and the sized read
+ * paths used by {@link ParcelDiskCache}. Runs only with {@code -Pbenchmark}.
+ */
+public class ReadPathBenchmark {
+    private static final int ENTRIES = 64;
+    private static final int VALUE_SIZE = 24 * 1024;
+    private static final int ROUNDS = 20;
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private DiskLruCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        cache = DiskLruCache.open(tempDir.getRoot(), 1, 1, Long.MAX_VALUE);
+        byte[] value = new byte[VALUE_SIZE];
+        new Random(42).nextBytes(value);
+        for (int i = 0; i < ENTRIES; i++) {
+            DiskLruCache.Editor editor = cache.edit("key" + i);
+            OutputStream out = editor.newOutputStream(0);
+            out.write(value);
+            out.close();
+            editor.commit();
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        cache.delete();
+    }
+
+    @Test
+    public void sizedReadAllocatesLessPerHit() throws IOException {
+        // Warm up both paths so class loading and JIT do not skew the numbers.
+        readAll(false);
+        readAll(true);
+
+        long streamed = allocatedPerHit(false);
+        long sized = allocatedPerHit(true);
+        System.out.println("Allocated bytes per hit: streamed=" + streamed + ", sized=" + sized
+                + " (value size " + VALUE_SIZE + ")");
+        if (streamed > 0) {
+            assertTrue("sized read should allocate less than streamed read", sized < streamed);
+        }
+    }
+
+    private long allocatedPerHit(boolean sized) throws IOException {
+        long before = allocatedBytes();
+        for (int i = 0; i < ROUNDS; i++) {
+            readAll(sized);
+        }
+        long after = allocatedBytes();
+        return before < 0 ? -1 : (after - before) / (ROUNDS * ENTRIES);
+    }
+
+    private void readAll(boolean sized) throws IOException {
+        for (int i = 0; i < ENTRIES; i++) {
+            DiskLruCache.Snapshot snapshot = cache.get("key" + i);
+            try {
+                byte[] bytes = sized
+                        ? DiskCacheUtil.readBytes(snapshot.getInputStream(0), snapshot.getLength(0))
+                        : DiskCacheUtil.readBytes(snapshot.getInputStream(0));
+                if (bytes.length != VALUE_SIZE) {
+                    throw new AssertionError("unexpected length " + bytes.length);
+                }
+            } finally {
+                snapshot.close();
+            }
+        }
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.arunkumarsampath.diskcache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class ReadPathTest {
+    private static final int VALUE_SIZE = 24 * 1024;
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private DiskLruCache cache;
+    private byte[] value;
+
+    @Before
+    public void setUp() throws IOException {
+        cache = DiskLruCache.open(tempDir.getRoot(), 1, 1, Long.MAX_VALUE);
+        value = new byte[VALUE_SIZE];
+        new Random(42).nextBytes(value);
+        DiskLruCache.Editor editor = cache.edit("key0");
+        OutputStream out = editor.newOutputStream(0);
+        out.write(value);
+        out.close();
+        editor.commit();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        cache.delete();
+    }
+
+    @Test
+    public void sizedReadReturnsSameBytes() throws IOException {
+        DiskLruCache.Snapshot snapshot = cache.get("key0");
+        byte[] sized = DiskCacheUtil.readBytes(snapshot.getInputStream(0), snapshot.getLength(0));
+        snapshot.close();
+        snapshot = cache.get("key0");
+        byte[] streamed = DiskCacheUtil.readBytes(snapshot.getInputStream(0));
+        snapshot.close();
+        assertArrayEquals(value, sized);
+        assertArrayEquals(streamed, sized);
+    }
+}
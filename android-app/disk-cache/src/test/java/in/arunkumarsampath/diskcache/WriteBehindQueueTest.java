@@ -0,0 +1,96 @@
+/*
+ * Lynket
+ *
+ * Copyright (C) 2019 Arunkumar
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.arunkumarsampath.diskcache;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class WriteBehindQueueTest {
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private final Map<String, byte[]> disk = new ConcurrentHashMap<>();
+    private final AtomicInteger writes = new AtomicInteger();
+    private final WriteBehindQueue.Sink sink = new WriteBehindQueue.Sink() {
+        @Override
+        public void write(String key, byte[] value) {
+            writes.incrementAndGet();
+            disk.put(key, value);
+        }
+    };
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void repeatedWritesToSameKeyAreCoalesced() throws Exception {
+        WriteBehindQueue queue = new WriteBehindQueue(sink, executor, 16, 4, 60_000);
+        queue.enqueue("a", new byte[]{1});
+        queue.enqueue("a", new byte[]{2});
+        queue.enqueue("b", new byte[]{3});
+        queue.enqueue("a", new byte[]{4});
+
+        assertArrayEquals(new byte[]{4}, queue.peek("a"));
+        queue.flush();
+
+        assertEquals(2, writes.get());
+        assertArrayEquals(new byte[]{4}, disk.get("a"));
+        assertArrayEquals(new byte[]{3}, disk.get("b"));
+        WriteQueueStats stats = queue.stats();
+        assertEquals(0, stats.getQueueDepth());
+        assertEquals(4, stats.getEnqueuedWrites());
+        assertEquals(2, stats.getCoalescedWrites());
+        assertEquals(2, stats.getFlushedWrites());
+        assertNull(queue.peek("a"));
+    }
+
+    @Test
+    public void fullQueueBlocksUntilDrained() throws Exception {
+        WriteBehindQueue queue = new WriteBehindQueue(sink, executor, 2, 1, 60_000);
+        for (int i = 0; i < 10; i++) {
+            queue.enqueue("key" + i, new byte[]{(byte) i});
+        }
+        queue.flush();
+
+        assertEquals(10, disk.size());
+        assertEquals(2, queue.stats().getMaxQueueDepth());
+    }
+
+    @Test
+    public void discardDropsPendingValue() throws Exception {
+        WriteBehindQueue queue = new WriteBehindQueue(sink, executor, 16, 4, 60_000);
+        queue.enqueue("a", new byte[]{1});
+        queue.discard("a");
+        queue.flush();
+
+        assertNull(queue.peek("a"));
+        assertEquals(0, writes.get());
+    }
+}